@@ -0,0 +1,95 @@
+package com.example.texteditor;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+
+/**
+ * A document, cursor and terminal set up the way the editor has them, for benchmarks that
+ * press keys and draw frames without a real terminal. Frames are captured in memory.
+ */
+final class BenchmarkEditor {
+
+    static final int ROWS = 50, COLUMNS = 120;
+
+    final Document document;
+    final Cursor cursor = new Cursor();
+    final CapturingTerminal terminal = new CapturingTerminal();
+
+    /**
+     * Constructs an editor showing a document, drawn once with the cursor at the start of a line.
+     *
+     * @param text The UTF-8 encoded text of the document.
+     * @param line The line to put the cursor on.
+     */
+    BenchmarkEditor(byte[] text, int line) {
+        document = new PieceTable(text);
+        terminal.initWindowSize();
+        terminal.refreshScreen(document, cursor);
+        goTo(line, 0);
+    }
+
+    /**
+     * Moves the cursor to a position, the way going to a line or a match does, and draws.
+     */
+    void goTo(int line, int column) {
+        terminal.handleKey(TextEditor.GOTO_LINE, cursor, document, line, column);
+        draw();
+    }
+
+    /**
+     * Handles a key the way the editor does, without drawing.
+     *
+     * @param key   The key code.
+     * @param typed The text of a typed key.
+     */
+    void press(int key, CharSequence typed) {
+        int columns = terminal.getColumns();
+        cursor.editContent(key, document, typed, columns, terminal);
+        cursor.moveCursor(key, document, terminal, terminal.getUsedRows(), columns);
+        cursor.scroll(key, document, terminal.getRows(), columns, terminal);
+    }
+
+    void press(int key) {
+        press(key, "");
+    }
+
+    /**
+     * Draws a frame.
+     *
+     * @return The number of bytes sent to the terminal.
+     */
+    int draw() {
+        terminal.captured.reset();
+        terminal.refreshScreen(document, cursor);
+        return terminal.captured.size();
+    }
+
+    /**
+     * A terminal that writes frames to memory and whose window can be resized.
+     */
+    static final class CapturingTerminal extends Terminal {
+
+        private final ByteArrayOutputStream captured;
+        int windowRows = ROWS, windowColumns = COLUMNS;
+
+        CapturingTerminal() {
+            this(new ByteArrayOutputStream());
+        }
+
+        private CapturingTerminal(ByteArrayOutputStream captured) {
+            super(Channels.newChannel(captured));
+            this.captured = captured;
+        }
+
+        @Override void enableRawMode() {}
+        @Override void disableRawMode() {}
+        @Override void setLocale() {}
+        @Override void exit() {}
+
+        @Override
+        void initWindowSize() {
+            setRows(windowRows - 2);
+            setColumns(windowColumns);
+        }
+    }
+}
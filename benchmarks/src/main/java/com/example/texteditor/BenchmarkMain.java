@@ -0,0 +1,25 @@
+package com.example.texteditor;
+
+import java.util.Arrays;
+
+/**
+ * Runs the benchmarks like the JMH launcher, but writes the results as JSON to
+ * {@code jmh-result.json} unless another result format is given with {@code -rf}, so the
+ * results of two commits can be compared with {@code scripts/compare_benchmarks.py}.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (!Arrays.asList(args).contains("-rf")) {
+            String[] json = new String[args.length + 2];
+            json[0] = "-rf";
+            json[1] = "json";
+            System.arraycopy(args, 0, json, 2, args.length);
+            args = json;
+        }
+        org.openjdk.jmh.Main.main(args);
+    }
+}
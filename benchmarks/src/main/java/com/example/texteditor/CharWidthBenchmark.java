@@ -0,0 +1,89 @@
+package com.example.texteditor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares measuring a line with the generated width table against calling the C library's
+ * {@code wcwidth} through JNA for every char, for ASCII, CJK and emoji-heavy lines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CharWidthBenchmark {
+
+    private static final int COLUMNS = 80;
+    private static final int LINE_LENGTH = 200;
+
+    @Param({ "ascii", "cjk", "emoji" })
+    public String text;
+
+    private Terminal terminal;
+    private String line;
+
+    @Setup
+    public void setUp() {
+        if (LibC.INSTANCE.setlocale(LibC.LC_ALL, "C.UTF-8") == null) {
+            LibC.INSTANCE.setlocale(LibC.LC_ALL, "");
+        }
+        terminal = new FrameBenchmark.DiscardingTerminal();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < LINE_LENGTH; i++) {
+            switch (text) {
+                case "ascii":
+                    builder.append((char) ('a' + i % 26));
+                    break;
+                case "cjk":
+                    builder.append(i % 4 == 0 ? ' ' : (char) (0x4E00 + i % 500));
+                    break;
+                default:
+                    if (i % 3 == 0) {
+                        builder.append("ok ");
+                    } else {
+                        builder.appendCodePoint(0x1F600 + i % 64);
+                    }
+            }
+        }
+        line = builder.toString();
+    }
+
+    /**
+     * Measures the line with the width table, as the editor does.
+     */
+    @Benchmark
+    public int table() {
+        return terminal.getLineWidth(line, COLUMNS);
+    }
+
+    /**
+     * Measures the line the way the editor did before the table, with a native call for every
+     * char that is not printable ASCII.
+     */
+    @Benchmark
+    public int jna() {
+        int lineWidth = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            int charWidth = c >= 0x20 && c < 0x7F ? 1 : Math.max(LibC.INSTANCE.wcwidth(c), 0);
+            if (lineWidth % COLUMNS + charWidth > COLUMNS) {
+                lineWidth += COLUMNS - lineWidth % COLUMNS;
+            }
+            lineWidth += charWidth;
+        }
+        return lineWidth;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.texteditor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures drawing the screen into a captured stream, with the cursor in the middle of a
+ * generated document. Each benchmark returns the number of bytes of the last frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DrawBenchmark {
+
+    @Param({ "ascii", "cjk", "long" })
+    public String kind;
+
+    @Param({ "1000", "100000", "10000000" })
+    public int lines;
+
+    private BenchmarkEditor editor;
+
+    @Setup
+    public void setUp() {
+        editor = new BenchmarkEditor(SyntheticText.generate(kind, lines), SyntheticText.middleLine(lines));
+    }
+
+    /**
+     * Draws a frame that is the same as the one shown, so only the cursor is sent.
+     */
+    @Benchmark
+    public int redraw() {
+        return editor.draw();
+    }
+
+    /**
+     * Makes the window narrower or wider again, then lays out and draws the whole screen for
+     * the new width.
+     */
+    @Benchmark
+    public int resize() {
+        BenchmarkEditor.CapturingTerminal terminal = editor.terminal;
+        terminal.windowColumns = terminal.windowColumns == BenchmarkEditor.COLUMNS ? BenchmarkEditor.COLUMNS - 30 : BenchmarkEditor.COLUMNS;
+        terminal.updateWindowSize(editor.document, editor.cursor);
+        return editor.draw();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.texteditor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures handling editing keys with {@link Cursor#editContent} and the cursor moves and
+ * scrolling that follow, at the start, middle or end of a line in the middle of a generated
+ * document. Each benchmark presses a key and then the keys that undo it, so every operation
+ * edits the same text; no frames are drawn.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EditBenchmark {
+
+    @Param({ "ascii", "cjk", "long" })
+    public String kind;
+
+    @Param({ "1000", "100000", "10000000" })
+    public int lines;
+
+    @Param({ "start", "middle", "end" })
+    public String position;
+
+    private BenchmarkEditor editor;
+    private String charAtCursor;        // Char deleted by DEL, empty at the end of the line
+    private String charBeforeCursor;    // Char deleted by backspace, empty at the start
+
+    @Setup
+    public void setUp() {
+        int line = SyntheticText.middleLine(lines);
+        editor = new BenchmarkEditor(SyntheticText.generate(kind, lines), line);
+        String text = editor.document.getLine(line);
+        int column = position.equals("start") ? 0 : position.equals("middle") ? text.length() / 2 : text.length();
+        editor.goTo(line, column);
+        charAtCursor = column < text.length() ? text.substring(column, column + 1) : "";
+        charBeforeCursor = column > 0 ? text.substring(column - 1, column) : "";
+    }
+
+    @Benchmark
+    public int typeAndBackspace() {
+        editor.press('x', "x");
+        editor.press(TextEditor.BACKSPACE);
+        return editor.cursor.getCursorX();
+    }
+
+    @Benchmark
+    public int enterAndBackspace() {
+        editor.press(TextEditor.ENTER);
+        editor.press(TextEditor.BACKSPACE);
+        return editor.cursor.getCursorX();
+    }
+
+    /**
+     * Deletes the char under the cursor and types it again, or at the end of the line joins
+     * the next line and splits it off again.
+     */
+    @Benchmark
+    public int deleteAndRetype() {
+        editor.press(TextEditor.DEL);
+        if (charAtCursor.isEmpty()) {
+            editor.press(TextEditor.ENTER);
+        } else {
+            editor.press(charAtCursor.charAt(0), charAtCursor);
+        }
+        editor.press(TextEditor.ARROW_LEFT);
+        return editor.cursor.getCursorX();
+    }
+
+    /**
+     * Deletes the char before the cursor and types it again, or at the start of the line joins
+     * it to the line before and splits it off again.
+     */
+    @Benchmark
+    public int backspaceAndRetype() {
+        editor.press(TextEditor.BACKSPACE);
+        if (charBeforeCursor.isEmpty()) {
+            editor.press(TextEditor.ENTER);
+        } else {
+            editor.press(charBeforeCursor.charAt(0), charBeforeCursor);
+        }
+        return editor.cursor.getCursorX();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.texteditor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures find in a generated document the way the editor runs it for each key typed at the
+ * find prompt: the query so far is searched for incrementally from the start, and the cursor
+ * is moved to the first match and the screen drawn. The only match is three quarters of the
+ * way through the document and nothing is indexed, so the search scans up to it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FindBenchmark {
+
+    private static final String QUERY = "needle";
+
+    @Param({ "ascii", "cjk", "long" })
+    public String kind;
+
+    @Param({ "1000", "100000", "10000000" })
+    public int lines;
+
+    private BenchmarkEditor editor;
+    private final IncrementalSearch search = new IncrementalSearch();
+    private final String[] prefixes = new String[QUERY.length()];
+
+    @Setup
+    public void setUp() {
+        editor = new BenchmarkEditor(SyntheticText.generate(kind, lines), 0);
+        int line = lines / 4 * 3;
+        editor.document.insert(line, 0, QUERY);
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = QUERY.substring(0, i + 1);
+        }
+    }
+
+    /**
+     * Types the query a char at a time, finding and showing the first match after each char.
+     */
+    @Benchmark
+    public long typeQuery() {
+        search.reset();
+        long offset = -1;
+        for (String prefix : prefixes) {
+            offset = search.find(editor.document, prefix, false, false);
+            show(offset);
+        }
+        return offset;
+    }
+
+    /**
+     * Searches for the whole query at once, as when it is pasted, and shows the match.
+     */
+    @Benchmark
+    public long findQuery() {
+        search.reset();
+        long offset = search.find(editor.document, QUERY, false, false);
+        show(offset);
+        return offset;
+    }
+
+    private void show(long offset) {
+        if (offset >= 0) {
+            Document document = editor.document;
+            int line = document.getLineAt(offset);
+            editor.goTo(line, search.getSearch().getColumn(document, line, offset));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.texteditor;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures drawing a frame after a keystroke. Run with {@code -prof gc} and look at
+ * {@code gc.alloc.rate.norm} to see the bytes allocated per keystroke.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameBenchmark {
+
+    private static final int ROWS = 80, COLUMNS = 300;
+
+    private Terminal terminal;
+    private Cursor cursor;
+    private Document document;
+
+    @Setup
+    public void setUp() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            text.append("line ").append(i).append(" of the benchmark document, long enough to fill part of a row\n");
+        }
+        document = new PieceTable(text.toString().getBytes(StandardCharsets.UTF_8));
+        terminal = new DiscardingTerminal();
+        terminal.setRows(ROWS - 2);
+        terminal.setColumns(COLUMNS);
+        cursor = new Cursor();
+        terminal.refreshScreen(document, cursor);
+    }
+
+    /**
+     * Moves the cursor right and back, drawing a frame after each move.
+     */
+    @Benchmark
+    public void moveCursor() {
+        terminal.handleKey(TextEditor.ARROW_RIGHT, cursor, document);
+        terminal.refreshScreen(document, cursor);
+        terminal.handleKey(TextEditor.ARROW_LEFT, cursor, document);
+        terminal.refreshScreen(document, cursor);
+    }
+
+    /**
+     * Types a char and deletes it again, drawing a frame after each edit.
+     */
+    @Benchmark
+    public void typeAndDelete() {
+        document.insert(0, 5, "x");
+        terminal.refreshScreen(document, cursor);
+        document.delete(0, 5, 1);
+        terminal.refreshScreen(document, cursor);
+    }
+
+    /**
+     * A terminal that lays frames out like a real one but throws the output away.
+     */
+    static final class DiscardingTerminal extends Terminal {
+
+        DiscardingTerminal() {
+            super(new WritableByteChannel() {
+                @Override
+                public int write(ByteBuffer source) {
+                    int written = source.remaining();
+                    source.position(source.limit());
+                    return written;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return true;
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+        }
+
+        @Override void enableRawMode() {}
+        @Override void disableRawMode() {}
+        @Override void initWindowSize() {}
+        @Override void setLocale() {}
+        @Override void exit() {}
+    }
+}
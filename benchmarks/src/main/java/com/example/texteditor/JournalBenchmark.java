@@ -0,0 +1,82 @@
+package com.example.texteditor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of a keystroke edit with and without the edit journal attached,
+ * to show that journaling stays off the keystroke path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+
+    private static final byte[] KEY = { 'a' };
+
+    @Param({ "false", "true" })
+    public boolean journaled;
+
+    private Path file;
+    private PieceTable document;
+    private EditJournal journal;
+    private long offset;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            text.append("line ").append(i).append(" of the benchmark document\n");
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        file = Files.createTempFile("journal-benchmark", ".txt");
+        Files.write(file, bytes);
+        document = new PieceTable(bytes);
+        if (journaled) {
+            journal = EditJournal.create(file);
+            document.addListener(journal);
+        }
+        offset = bytes.length / 2;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        if (journal != null) {
+            journal.delete(file);
+            journal = null;
+        }
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void typeCharacter() {
+        document.insert(offset, KEY);
+        offset++;
+    }
+
+    @Benchmark
+    public void typeAndBackspace() {
+        document.insert(offset, KEY);
+        document.delete(offset, 1);
+    }
+}
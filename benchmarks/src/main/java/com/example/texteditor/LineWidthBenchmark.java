@@ -0,0 +1,56 @@
+package com.example.texteditor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures laying lines of generated text out over the rows of the terminal with
+ * {@link Terminal#getLineWidth}. Each operation measures the lines around the middle of a
+ * 1,000 line document, which in {@code long} text include a long line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineWidthBenchmark {
+
+    private static final int LINES = 1000, MEASURED = 64;
+
+    @Param({ "ascii", "cjk", "long" })
+    public String kind;
+
+    private Terminal terminal;
+    private String[] lines;
+
+    @Setup
+    public void setUp() {
+        terminal = new FrameBenchmark.DiscardingTerminal();
+        String[] text = new String(SyntheticText.generate(kind, LINES), StandardCharsets.UTF_8).split("\n");
+        int first = SyntheticText.middleLine(LINES) - MEASURED / 2;
+        lines = new String[MEASURED];
+        System.arraycopy(text, first, lines, 0, MEASURED);
+    }
+
+    @Benchmark
+    public int getLineWidth() {
+        int width = 0;
+        for (String line : lines) {
+            width += terminal.getLineWidth(line, BenchmarkEditor.COLUMNS);
+        }
+        return width;
+    }
+}
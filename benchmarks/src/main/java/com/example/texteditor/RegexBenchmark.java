@@ -0,0 +1,79 @@
+package com.example.texteditor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares finding a regex with {@link RegexSearch} against compiling the pattern and creating
+ * a matcher for every decoded line, over a log where the only match is on the last line. The
+ * patterns are the kind used to grep logs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RegexBenchmark {
+
+    @Param({ "ERROR", "status=5\\d\\d", "took \\d{5,}ms", "^\\S+ \\S+ WARN ", "id=\\d*424242\\b", "timeout|refused" })
+    public String regex;
+
+    @Param({ "16" })
+    public int megabytes;
+
+    private PieceTable document;
+    private final RegexSearch search = new RegexSearch();
+
+    @Setup
+    public void setUp() {
+        StringBuilder log = new StringBuilder();
+        int size = megabytes << 20;
+        for (int i = 0; log.length() < size; i++) {
+            log.append("2024-05-17 12:34:56 INFO request id=").append(i)
+               .append(" status=200 took ").append(i % 997).append("ms\n");
+        }
+        log.append("2024-05-17 12:34:57 WARN request id=424242 status=503 took 12345ms ERROR timeout\n");
+        document = new PieceTable(log.toString().getBytes(StandardCharsets.UTF_8));
+        search.setQuery(regex, false, false);
+    }
+
+    /**
+     * Finds the match on the last line.
+     */
+    @Benchmark
+    public long regexSearch() {
+        search.setQuery(regex, false, false);
+        return search.findForward(document, 0);
+    }
+
+    /**
+     * Finds the match on the last line by compiling the pattern and matching every decoded line
+     * with a new matcher.
+     */
+    @Benchmark
+    public int compilePerSearch() {
+        Pattern pattern = Pattern.compile(regex);
+        for (int y = 0; y < document.getLineCount(); y++) {
+            Matcher matcher = pattern.matcher(document.getLine(y));
+            if (matcher.find()) {
+                return y * 1000 + matcher.start();
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.texteditor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures moving the cursor and scrolling a page at a time with {@link Cursor#scroll}, in the
+ * middle of a generated document. A page is as long as the last frame drawn, so a frame is
+ * drawn after each key, as the editor does; every row of it changes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ScrollBenchmark {
+
+    @Param({ "ascii", "cjk", "long" })
+    public String kind;
+
+    @Param({ "1000", "100000", "10000000" })
+    public int lines;
+
+    private BenchmarkEditor editor;
+
+    @Setup
+    public void setUp() {
+        editor = new BenchmarkEditor(SyntheticText.generate(kind, lines), SyntheticText.middleLine(lines));
+    }
+
+    @Benchmark
+    public int pageDownAndUp() {
+        editor.press(TextEditor.PAGE_DOWN);
+        editor.draw();
+        editor.press(TextEditor.PAGE_UP);
+        editor.draw();
+        return editor.cursor.getOffsetY();
+    }
+
+    @Benchmark
+    public int pageUpAndDown() {
+        editor.press(TextEditor.PAGE_UP);
+        editor.draw();
+        editor.press(TextEditor.PAGE_DOWN);
+        editor.draw();
+        return editor.cursor.getOffsetY();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.texteditor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares finding the next match with {@link TextSearch} against the line-by-line
+ * {@code indexOf} search find used before, over a document where the only match is at the far
+ * end from where the search starts. Run with {@code -p megabytes=1024} to search a 1 GB
+ * document, and with {@code -prof gc} to see that the search allocates nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchBenchmark {
+
+    private static final String QUERY = "needle";
+
+    @Param({ "64" })
+    public int megabytes;
+
+    private PieceTable document;
+    private long lastMatch;             // Offset of the match at the end
+    private int lastMatchLine;
+    private final TextSearch search = new TextSearch();
+
+    @Setup
+    public void setUp() {
+        byte[] line = "the quick brown fox jumps over the lazy dog, again and again and again\n".getBytes(StandardCharsets.UTF_8);
+        byte[] marker = (QUERY + "\n").getBytes(StandardCharsets.UTF_8);
+        int size = megabytes << 20;
+        byte[] text = new byte[size];
+        for (int i = marker.length; i + line.length <= size - marker.length; i += line.length) {
+            System.arraycopy(line, 0, text, i, line.length);
+        }
+        Arrays.fill(text, size - marker.length - (size - 2 * marker.length) % line.length, size - marker.length, (byte) ' ');
+        System.arraycopy(marker, 0, text, 0, marker.length);
+        System.arraycopy(marker, 0, text, size - marker.length, marker.length);
+        document = new PieceTable(text);
+        lastMatch = size - marker.length;
+        lastMatchLine = document.getLineAt(lastMatch);
+        search.setQuery(QUERY, false, false);
+    }
+
+    /**
+     * Finds the match at the end, searching forward from just after the one at the start.
+     */
+    @Benchmark
+    public long searchForward() {
+        return search.findForward(document, 1);
+    }
+
+    /**
+     * Finds the match at the start, searching backward from just before the one at the end.
+     */
+    @Benchmark
+    public long searchBackward() {
+        return search.findBackward(document, lastMatch);
+    }
+
+    /**
+     * Finds the match at the end the way find used to, decoding every line and searching it
+     * with {@code indexOf}.
+     */
+    @Benchmark
+    public int indexOfForward() {
+        for (int y = 1; y < document.getLineCount(); y++) {
+            String line = document.getLine(y);
+            if (line.contains(QUERY)) {
+                return y * 1000 + line.indexOf(QUERY);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the match at the start the way find used to, decoding every line and searching a
+     * copy of it with {@code lastIndexOf}.
+     */
+    @Benchmark
+    public int indexOfBackward() {
+        for (int y = lastMatchLine - 1; y >= 0; y--) {
+            String line = document.getLine(y).substring(0, document.getLineLength(y));
+            int x = line.lastIndexOf(QUERY);
+            if (x != -1) {
+                return y * 1000 + x;
+            }
+        }
+        return -1;
+    }
+}
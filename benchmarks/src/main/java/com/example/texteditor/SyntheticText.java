@@ -0,0 +1,93 @@
+package com.example.texteditor;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates the documents the editor benchmarks run on, so they need no files and every run
+ * measures the same text.
+ * <p>
+ * Lines are taken in turn from a small pool of lines of different lengths. The kinds of text
+ * are {@code ascii}, {@code cjk}, where most chars take two columns, and {@code long}, which is
+ * ASCII text where one line in every {@value #LONG_LINE_INTERVAL} is
+ * {@value #LONG_LINE_LENGTH} chars long, too long for its char widths to be cached.
+ */
+final class SyntheticText {
+
+    static final int LONG_LINE_INTERVAL = 10_000;
+    static final int LONG_LINE_LENGTH = 100_000;
+
+    private static final int LONG_LINE_OFFSET = 500;    // Where the long lines are in each interval
+    private static final int POOL_SIZE = 64;
+    private static final String[] WORDS = {
+        "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "editor", "buffer",
+        "cursor", "screen", "line", "wrap", "frame", "search", "piece", "table", "undo", "paste"
+    };
+
+    private SyntheticText() {
+    }
+
+    /**
+     * Generates a document.
+     *
+     * @param kind  The kind of text: {@code ascii}, {@code cjk} or {@code long}.
+     * @param lines The number of lines.
+     * @return The UTF-8 encoded text, with a line feed after every line.
+     */
+    static byte[] generate(String kind, int lines) {
+        byte[][] pool = new byte[POOL_SIZE][];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            pool[i] = (kind.equals("cjk") ? cjkLine(i) : asciiLine(i, 20 + i * 37 % 80)).getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] longLine = kind.equals("long") ? asciiLine(0, LONG_LINE_LENGTH).getBytes(StandardCharsets.UTF_8) : null;
+        long size = 0;
+        for (int i = 0; i < lines; i++) {
+            size += lineAt(i, pool, longLine).length + 1;
+        }
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many lines for one array: " + lines);
+        }
+        byte[] text = new byte[(int) size];
+        int position = 0;
+        for (int i = 0; i < lines; i++) {
+            byte[] line = lineAt(i, pool, longLine);
+            System.arraycopy(line, 0, text, position, line.length);
+            position += line.length;
+            text[position++] = '\n';
+        }
+        return text;
+    }
+
+    /**
+     * Gets a line near the middle of a document, which is a long line in {@code long} text.
+     *
+     * @param lines The number of lines of the document.
+     * @return The line index.
+     */
+    static int middleLine(int lines) {
+        return Math.min(lines / 2 / LONG_LINE_INTERVAL * LONG_LINE_INTERVAL + LONG_LINE_OFFSET, lines - 1);
+    }
+
+    private static byte[] lineAt(int line, byte[][] pool, byte[] longLine) {
+        if (longLine != null && line % LONG_LINE_INTERVAL == LONG_LINE_OFFSET) {
+            return longLine;
+        }
+        return pool[line % POOL_SIZE];
+    }
+
+    private static String asciiLine(int seed, int length) {
+        StringBuilder line = new StringBuilder(length + 8);
+        for (int i = seed; line.length() < length; i++) {
+            line.append(WORDS[i * 7 % WORDS.length]).append(' ');
+        }
+        line.setLength(length);
+        return line.toString();
+    }
+
+    private static String cjkLine(int seed) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 10 + seed * 37 % 40; i++) {
+            line.append(i % 8 == 7 ? ' ' : (char) (0x4E00 + (seed * 31 + i * 7) % 2000));
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,58 @@
+#!/usr/bin/env python3
+"""Compares two JMH result files written with -rf json, such as the runs of two commits.
+
+Each benchmark and set of parameters found in both files is printed with its score in each
+and the change, and marked when it got worse by more than the threshold. Lower is better for
+the time modes and higher for throughput.
+
+Usage: python3 scripts/compare_benchmarks.py BASELINE.json CURRENT.json [--threshold PERCENT]
+Exits with status 1 if any benchmark regressed.
+"""
+
+import argparse
+import json
+import math
+
+
+def load(path):
+    with open(path, encoding='utf-8') as f:
+        results = json.load(f)
+    scores = {}
+    for result in results:
+        name = result['benchmark'].rsplit('.', 2)
+        name = name[-2] + '.' + name[-1]
+        params = ','.join('%s=%s' % item for item in sorted(result.get('params', {}).items()))
+        metric = result['primaryMetric']
+        error = float(metric['scoreError'])   # NaN for a single measurement iteration
+        scores[(name, params)] = (result['mode'], metric['score'], 0.0 if math.isnan(error) else error,
+                                  metric['scoreUnit'])
+    return scores
+
+
+def main():
+    parser = argparse.ArgumentParser(description='Compares two JMH JSON result files.')
+    parser.add_argument('baseline')
+    parser.add_argument('current')
+    parser.add_argument('--threshold', type=float, default=10.0,
+                        help='percent change counted as a regression (default 10)')
+    args = parser.parse_args()
+
+    baseline, current = load(args.baseline), load(args.current)
+    regressed = 0
+    for key in sorted(baseline.keys() & current.keys()):
+        mode, before, _, unit = baseline[key]
+        _, after, error, _ = current[key]
+        change = (after - before) / before * 100 if before else 0.0
+        worse = change if mode != 'thrpt' else -change
+        mark = ' REGRESSION' if worse > args.threshold and abs(after - before) > error else ''
+        regressed += bool(mark)
+        print('%-40s %-40s %12.3f %12.3f %s %+7.1f%%%s' % (key[0], key[1], before, after, unit, change, mark))
+    for key in sorted(baseline.keys() ^ current.keys()):
+        print('%-40s %-40s only in %s' % (key[0], key[1], args.baseline if key in baseline else args.current))
+    if regressed:
+        print('%d regressed by more than %g%%' % (regressed, args.threshold))
+    return 1 if regressed else 0
+
+
+if __name__ == '__main__':
+    raise SystemExit(main())
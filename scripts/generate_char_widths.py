@@ -0,0 +1,93 @@
+#!/usr/bin/env python3
+"""Regenerates the width tables in CharWidth.java from the Unicode data bundled with Python.
+
+Widths follow the usual wcwidth rules, as in glibc: control chars, line and paragraph
+separators, non-spacing and enclosing marks, format chars (except the soft hyphen and the
+prepended concatenation marks) and Hangul medial vowels and final consonants take 0 columns;
+East Asian Wide and Fullwidth chars, and unassigned code points in the CJK ideograph ranges,
+take 2; everything else, including a lone surrogate (written out as "?"), takes 1.
+
+Usage: python3 scripts/generate_char_widths.py
+"""
+
+import base64
+import os
+import re
+import unicodedata
+
+BLOCK_SIZE = 256
+JAVA_FILE = os.path.join(os.path.dirname(__file__), '..', 'src', 'main', 'java',
+                         'com', 'example', 'texteditor', 'CharWidth.java')
+VISIBLE_FORMAT = [(0x0600, 0x0605), (0x06DD, 0x06DD), (0x070F, 0x070F), (0x0890, 0x0891),
+                  (0x08E2, 0x08E2), (0x110BD, 0x110BD), (0x110CD, 0x110CD)]
+HANGUL_JAMO = [(0x1160, 0x11FF), (0xD7B0, 0xD7FF)]
+# Wide in later Unicode versions than some Pythons bundle
+WIDE = [(0x3248, 0x324F), (0x4DC0, 0x4DFF)]
+WIDE_UNASSIGNED = [(0x3400, 0x4DBF), (0x4E00, 0x9FFF), (0xF900, 0xFAFF),
+                   (0x20000, 0x2FFFD), (0x30000, 0x3FFFD)]
+
+
+def within(cp, ranges):
+    return any(lo <= cp <= hi for lo, hi in ranges)
+
+
+def width(cp):
+    if cp < 0x20 or 0x7F <= cp < 0xA0:
+        return 0
+    c = chr(cp)
+    category = unicodedata.category(c)
+    if category in ('Mn', 'Me', 'Zl', 'Zp'):
+        return 0
+    if category == 'Cf' and cp != 0xAD and not within(cp, VISIBLE_FORMAT):
+        return 0
+    if within(cp, HANGUL_JAMO) or cp == 0x200B:
+        return 0
+    if unicodedata.east_asian_width(c) in ('W', 'F') or within(cp, WIDE):
+        return 2
+    if category == 'Cn' and within(cp, WIDE_UNASSIGNED):
+        return 2
+    return 1
+
+
+def main():
+    blocks = {}
+    stage1 = []
+    for block in range(0x110000 // BLOCK_SIZE):
+        widths = tuple(width(cp) for cp in range(block * BLOCK_SIZE, (block + 1) * BLOCK_SIZE))
+        stage1.append(blocks.setdefault(widths, len(blocks)))
+
+    runs = []
+    for block in stage1:
+        if runs and runs[-1][1] == block:
+            runs[-1][0] += 1
+        else:
+            runs.append([1, block])
+
+    stage2 = bytearray()
+    for widths in sorted(blocks, key=blocks.get):
+        for i in range(0, BLOCK_SIZE, 4):
+            stage2.append(widths[i] | widths[i + 1] << 2 | widths[i + 2] << 4 | widths[i + 3] << 6)
+
+    pairs = ['%d, %d' % (count, block) for count, block in runs]
+    lines = []
+    for i in range(0, len(pairs), 10):
+        lines.append('            ' + ', '.join(pairs[i:i + 10]) + ',')
+    encoded = base64.b64encode(bytes(stage2)).decode('ascii')
+    chunks = ['            + "%s"' % encoded[i:i + 96] for i in range(0, len(encoded), 96)]
+
+    generated = ('    // Generated by scripts/generate_char_widths.py from Unicode %s\n'
+                 '    private static final int[] BLOCK_RUNS = {\n%s\n    };\n'
+                 '    private static final String BLOCK_WIDTHS = ""\n%s;\n'
+                 % (unicodedata.unidata_version, '\n'.join(lines), '\n'.join(chunks)))
+
+    with open(JAVA_FILE) as f:
+        source = f.read()
+    source = re.sub(r'    // BEGIN GENERATED TABLES\n.*    // END GENERATED TABLES\n',
+                    lambda m: '    // BEGIN GENERATED TABLES\n' + generated + '    // END GENERATED TABLES\n',
+                    source, flags=re.S)
+    with open(JAVA_FILE, 'w') as f:
+        f.write(source)
+
+
+if __name__ == '__main__':
+    main()
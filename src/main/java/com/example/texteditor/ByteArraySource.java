@@ -0,0 +1,104 @@
+package com.example.texteditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Heap-backed {@link TextSource} that can grow by appending, used for small files and for the
+ * add buffer of a {@link PieceTable}.
+ */
+final class ByteArraySource implements TextSource {
+
+    private byte[] data;
+    private int size;
+
+    /**
+     * Constructs an empty source with room for the given number of bytes.
+     *
+     * @param capacity The initial capacity.
+     */
+    ByteArraySource(int capacity) {
+        this.data = new byte[capacity];
+        this.size = 0;
+    }
+
+    /**
+     * Constructs a source over an existing array, which must not be modified afterwards.
+     *
+     * @param data The bytes of the source.
+     */
+    ByteArraySource(byte[] data) {
+        this(data, data.length);
+    }
+
+    private ByteArraySource(byte[] data, int size) {
+        this.data = data;
+        this.size = size;
+    }
+
+    /**
+     * Gets a source over the bytes appended so far, which later appends leave untouched: they
+     * only write past its end or into a new array.
+     *
+     * @return A fixed-length view of this source.
+     */
+    ByteArraySource snapshot() {
+        return new ByteArraySource(data, size);
+    }
+
+    /**
+     * Appends bytes to the end of the source.
+     *
+     * @param bytes  The array to append from.
+     * @param offset The position in the array.
+     * @param length The number of bytes to append.
+     */
+    void append(byte[] bytes, int offset, int length) {
+        if (size + length > data.length) {
+            data = Arrays.copyOf(data, Math.max(size + length, data.length * 2));
+        }
+        System.arraycopy(bytes, offset, data, size, length);
+        size += length;
+    }
+
+    @Override
+    public long length() {
+        return size;
+    }
+
+    @Override
+    public byte byteAt(long offset) {
+        return data[(int) offset];
+    }
+
+    @Override
+    public void read(long offset, byte[] dst, int dstPos, int length) {
+        System.arraycopy(data, (int) offset, dst, dstPos, length);
+    }
+
+    @Override
+    public long indexOf(byte value, long from, long to) {
+        for (int i = (int) from; i < to; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void transferTo(long offset, long length, WritableByteChannel target, ByteBuffer buffer) throws IOException {
+        int position = (int) offset;
+        int end = (int) (offset + length);
+        while (position < end) {
+            if (!buffer.hasRemaining()) {
+                TextSource.flush(buffer, target);
+            }
+            int count = Math.min(buffer.remaining(), end - position);
+            buffer.put(data, position, count);
+            position += count;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.texteditor;
+
+import java.util.Base64;
+
+/**
+ * Looks up the number of terminal columns a char takes, without calling into the C library.
+ * <p>
+ * Widths come from a two-stage table generated from the Unicode data: the first stage maps
+ * each block of 256 code points to one of the distinct blocks, and the second stage holds the
+ * widths of each distinct block, packed four to a byte. Printable ASCII is answered before
+ * the table is looked at.
+ */
+final class CharWidth {
+
+    private static final byte[] STAGE1 = new byte[(Character.MAX_CODE_POINT + 1) >> 8];
+    private static final byte[] STAGE2;
+
+    // BEGIN GENERATED TABLES
+    // Generated by scripts/generate_char_widths.py from Unicode 14.0.0
+    private static final int[] BLOCK_RUNS = {
+            1, 0, 2, 1, 1, 2, 1, 3, 1, 4, 1, 5, 1, 6, 1, 7, 1, 8, 1, 9,
+            1, 10, 1, 11, 1, 12, 1, 13, 1, 14, 1, 15, 1, 16, 1, 17, 1, 18, 2, 1,
+            1, 19, 1, 20, 1, 21, 1, 22, 1, 23, 1, 24, 1, 25, 1, 26, 1, 1, 1, 27,
+            1, 28, 1, 29, 1, 1, 1, 30, 1, 31, 1, 32, 1, 33, 1, 34, 3, 1, 1, 35,
+            1, 36, 1, 37, 1, 38, 1, 39, 1, 40, 115, 39, 1, 41, 1, 1, 1, 42, 1, 43,
+            1, 44, 1, 45, 1, 46, 1, 47, 43, 39, 1, 48, 33, 1, 2, 39, 1, 49, 1, 1,
+            1, 50, 1, 51, 1, 52, 1, 53, 1, 54, 1, 55, 1, 56, 1, 57, 1, 58, 1, 1,
+            1, 59, 1, 60, 1, 61, 1, 62, 1, 63, 1, 64, 1, 65, 1, 66, 1, 67, 1, 68,
+            1, 69, 1, 70, 1, 71, 1, 72, 1, 73, 1, 74, 1, 75, 1, 76, 1, 77, 1, 78,
+            1, 39, 1, 79, 1, 80, 1, 81, 1, 82, 3, 1, 1, 83, 1, 84, 1, 85, 9, 39,
+            1, 86, 4, 1, 1, 87, 15, 39, 2, 1, 1, 88, 33, 39, 2, 1, 1, 89, 1, 90,
+            2, 39, 1, 91, 1, 92, 76, 39, 1, 93, 18, 39, 1, 94, 1, 95, 1, 96, 1, 97,
+            1, 98, 1, 99, 1, 100, 1, 101, 1, 102, 2, 1, 1, 103, 4, 39, 1, 104, 1, 105,
+            1, 106, 1, 107, 4, 39, 1, 108, 1, 109, 1, 110, 2, 39, 1, 111, 1, 112, 1, 113,
+            1, 39, 1, 114, 1, 115, 1, 39, 1, 116, 1, 117, 1, 118, 1, 119, 1, 120, 1, 121,
+            1, 122, 1, 123, 1, 124, 3076, 39, 1, 125, 1, 126, 254, 39, 255, 1, 1, 127, 255, 1,
+            1, 127,
+    };
+    private static final String BLOCK_WIDTHS = ""
+            + "AAAAAAAAAABVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVRUAAAAAAAAAAFVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVUAAAAAAAAAAAAAAAAAAAAA"
+            + "AAAAAAAAAAAAAAAAVVVaVapVlVlVVVVVZVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVV"
+            + "VVVVVVVVVVUVAFBVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVZVVVVVVVVVVZVWVVVVVVVVVVVV"
+            + "VVWVVgIAAAAAAAAAAAAAEEEQqqpVVVVVVVWValWpqqpVVVVVAABAVFVVVVVVVVVVVVUVAAAAAABVVVVVVFVVVVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVQUAFAAUBFBVVVVVVVVVZVFVVVVVVVVVAAAAAAAAgFZVVVVVVVVVVVVVVVVVVVVVVVVVVVUFAACkqqqq"
+            + "VVVVVVVVVVVVVRUAAFWVUlVVVVVVBRAAAAEBoFVVVZVVVVVVVVUBmlVVlapVVVVVVVVVlaWqAABVVVVVVVVVVVVVBQAAAAAA"
+            + "EAAAAAAAAABAVVVVVVVVVVVVVVVVVUVUAQBUUQEAVVUFVVVVVVVVVVFWVWlpVVVVVVVZVZlapVQBaGmRqmqqZQVaVVVVVVWF"
+            + "QlaVamlVVVVVVVlVWZalWIEqKKCiqlaZqlpVVVCRqqpCVlVlZVVVVVVVWVVZVqVUASBkoamqqqoFWlVVpaoGAFJWVWlpVVVV"
+            + "VVVZVVlWpRQBaGmhqkKqZQVaVVVVVaqqSlaVWlmllllqqZVaVVWlWpRaWaGpaqqqqlpVVVVVlapUVFVZWVVVVVVVWVVVVaUE"
+            + "VAkIoKqClaYFWlVVqmpVVVFVVVlZVVVVVVVZVVVWpRRVSVmgqpaqlgVaVVWWqqqqUFVVWVlVVVVVVVVVVVUVVAFYWVGqVVVV"
+            + "BVpVVVVVVVVSVlVVVZVaVVVVVVVlVVWmVZWKagWIVVWqWlVVWqmqqlZVVVVVVVVVVVVVVVEAgGpVFQBAVVVVqqqqqqqqqqqq"
+            + "llmVVVVVVVVVZlVVUQAApFWZAKBVVaVVqqqqqqqqqqpVVVVVVVVQVVVVVVVVEVFVVVVWVVVVVVVVVVWpAgAAQAAEVQEAAAIA"
+            + "AAAAAAAAAFhVRVVZVVWVqqqqqqqqqqqqVVVVVVVVVVVVVVUBBABBQVVVVVVVVVAFVFVVVQFUVVVFQVVRVVVVUVVVVVVVVVVV"
+            + "VWWqplVVVVVVVVVVVVVVVaqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqgAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA"
+            + "AAAAAAAAAABVVVVVVVVVVVVVVVVVVVVVVVVZpVWVWaVVVVVVVVVVVVVVWaVVVVVVVVVVVVmlVZVZpVVVVZVVVVVVVVVVVVVV"
+            + "VVVVVVmlVVVVVVVVVVVVVVVVVVVVVZUCVVVVVVVVValVVVVVVVWlqlVVVVVVVVVVVVVVVVVVVVVVVVVVVaVVpVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVValVVVVVVVVVVVVVVVVVVVVVVVVVVVVVqapVVVVVBaSqalVVVVUFlaqq"
+            + "VVVVVQWqqqpVVVVZCaqqqlVVVVVVVVVVVVVVVVUQAFBVRQEAAFVVoVVVpapVVaWqVVUVAFVVpapVVVVVVVVVVVVVVVVVVVVV"
+            + "VVVVVVVVqapVQVVVVVVVVVVVkapVVVVVVVVVVVVVVVVVVVVVVaWqqlVVVVVVVVWVQBVUqkVVAaqpVVVVVVVVVVVVVaVVqaqq"
+            + "VVVVVVVVVVVVVVWqVVVVVVVVpapVVZVaVVVVVVVVVVVVVVVVVRUUWlVVVVVVVVVVVVVVVVVFAIBEAQBUFQAAKFVVpapVVaWq"
+            + "VVVVpQAAAAAAAACAqqqqqqqqqqqqqqqqAFVVVVVVVVVVVVVVVQRAVEVVValVVVVVVVUVAABVVZVQVVVVVVVVVQVQEFBVVVVV"
+            + "VVVVVVVVVVVVRVARUKqqVVVVVVVVVVVVVVVVAAAFalVVVaVWVVVVVVVVVVVVVVVVVVWpqlVVVVVVVVVVVVWVVlVVqqpAAAAA"
+            + "BABUUVVUkKpVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVUAAAAAAAAAAAAAAAAAAAAA"
+            + "VVVVVVWlVaVVVVVVVVVVVVWlVaVVVWZmVVVVVVVVVaVVVVVVVVVVVVVVVVVVWVVVVVlVVVVaVVZVVVVVWllVlVVVFQBVVVVV"
+            + "VVUAQFVVVVVVVVVVVVVVVQAIAAClVVVVVVVVlVVVValVVVVVVVVVVamqqqoAAAAAAAAAAKiqqqpVVVVVVVVVVVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVVVVVVapVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVpVVVVWlVVVVVVVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVValWllVVVVVVVVVVVVVVVZWqqqqqqqpVVZWqqqqqqlVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVpVVVVVVVaVVVVVVVVVVVVVVVVqqqqVVVVVVVVVVVVVZVVVVVVlVVVVVlVpVVVVVVp"
+            + "VVpVZVVWVVVVVWVVpVllWVVZpVVVVVVVVVVWVVVVVVVVVVVmlZpVVVVVVVVVVVVVVVVVVVWpVVVVVVVVVlVVlVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVWVVlVVVVVVVVVVVVVVVVZZVVVVVVVVVVpVVVVVVVVVZVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVUVUKpWVVVVVVVVVVVV"
+            + "VWWqplVVVVVVVVVVVVVVVVVVqmqpqqoqVVVVVVWVqqpVlVWVVZVVlVWVVZVVlVWVAAAAAAAAAABVVVVVVVVVVVVVVVVVVVVV"
+            + "VVVVVVVVVaWqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqoKoKqqqmqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqgqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqqqqqqqqqVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVWqqqqqqlVVVVVVVVVVVVVVFUAAAFBVVVVVVVVVBVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVUFWqqlVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVlaplVqWq"
+            + "qqqqqlpVVVVFRRVVVVVVVVVBVahVVaWqVVVVVVVVVVVVVVVVVVWqqlVVVVVVVVVVVVVVVVVVVVVVoKpaVVWlqgAAAABQVVUV"
+            + "VVVVVVVVVVVVBQBQVVVVVVUVAABQqqpqqqqqqqqqqqpAVVVVVVVVVVVVVVUVBVBQVVVVZVVVpVpVUVVVVVVVlVVVVVVVVVVV"
+            + "VVUBQEGBqqoVVVWkVVWlVVVVVVVVVVVUVVVVVVVVVVVVVVVVBBRUBZGqqqqqqmpVVVVVUFWFqqpWlVaVVpWqqlWVVZVVVVVV"
+            + "VVVVVVVVVVVVVVWqVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVRVKFVVaWqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqqqqqqqqqqqqqqqqqqqoAAAAAAAAAAAAAAAAAAAAAAAAAAFWVqqpqVapGVVVVVVWVVZllWVVVVVVVVVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVVZWqqqpqVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVaVVVV"
+            + "VVVVVVVVVVVVVapqqqqqqqqqqqpVVVVVAAAAAKqqqqoAAAAAqqqqqqqqqqqqqqqqqqqqqlVZVVVVVVVVVVVVVVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVKaqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqlZVVVVVVVVVVVVVVVVVVVVVVVVVVVVVlVpVWlVaVVqp"
+            + "qqpVlaqqAqVVVVVWVVVVVVWVVVVVVZVlVVVVpVVVVaWqqqqqqqqqqlVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVZWq"
+            + "lWpVVVVVVVVVVVVVVWpVVVVVVVVVVVVVVVVVVVVVVVVVVVWVVVVVqamqqqqqqqqqqqqqqlVVVVVVVVVVVVVVoaqqqqqqqqqq"
+            + "qqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqVVVVVVVVValVVVVVVVVVVVVVVVWpqqqqVFVVVVVVVapVVVVVVVVVVVWqqlZVVVVV"
+            + "VVWVqlVVVVVVVVVVVQWAqlVVVVVVVVVlVVVVVVVVVVVVqlVVVaWqqqqqqqqqqqqqVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVpVVVpapVVVVVVVVVVVWqVVVVVVVVVVVVqlVVVVVVVVVVVVWqqlVVVVVVVVVVVVVVVVWqqmpVVZVV"
+            + "VVWVVZVlVVVlVVVVZVVlqaqqqqqqqqqqqqqqqqqqqqpVVVVVVVVVVVVVVVVVlaqqVVVVVVWlqqpVVaqqqqqqqlVlVVVVVVVV"
+            + "VVVVVVlVlaqqqqqqqqqqqqqqqqqqqqqqVaVZVVVVVVVVVVVVVWWpaVVVVVVVZVVVVVVVVVVVVVVVVVVVVVVVlapqVVWqqqqq"
+            + "qqqqqqqqqqpVVVVVlaVqVVVVVVVVVVVqVVVVVVVVpWqqqqqqqqqqqqqqqqqqqqqqVVVVVVVVVVVVVVVVVVWqVVVVVVVaVVVV"
+            + "VVVVVVVVVVUBgqoAVVZWVVVVVVVVpYAqVVWpqlVVqapVVVVVVVVVVVVVVVVVVVVVqqqqqqqqqqpVVVVVVVVVVVWBalVVlaqq"
+            + "VVVVVVVVVVVVVVVVVaVWVVVVVVVVpVVVVVVVVZWqVVVVVVVVpapWqaqqVlWqqqqqqqqqqqqqqqqqqqqqqqqqqlVVVVVVVVVV"
+            + "VVVVVVVVVVVVVamqqqqqqqqqqqqqqqqqVVVVVVVVVVVVVVVVlaqqqlVVVVVVVVVVVVVVVZWqWlVVVVVVVVVVVVUAqqpVVaWq"
+            + "qqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "VVVVVVVVVZVVVVVVVVVVVVVVJaSlqqqqqqqqqqqqqqqqqqqqqqqqqlVVVVVVVVVVVVWqqlVVVVVVBQAAVFWlqqqqqqpVVVVV"
+            + "BVClqqqqqqqqqqqqVVVVVVVVVaqqqqqqVVVVVVWVqqpRVVVVVVVVVVVVVVVVVQAAAEBVpVpVVVVVVVVVFKSqKlBVVVVVVVVV"
+            + "VVVVVRVAQVWFqqqmVVVVVVVVqapVVaWqQFVVVVVVVVVVFQABAFhVVVVVqqpVVVVVVVVVVRWVqqpQVVVVVVVVVVVVVVVVBQBA"
+            + "VVUBFFVVVVVWVVVVVamqqlVVVVVlVVVVVVVVFVAEVYWqqqqqqqqqqqqqqqqqqqqqVZVZZVVVVWVVVaWqVVVVVVVVVVVVVVUV"
+            + "FQCAqlVVpapQVlVpaVVVVVVVWVVZViVUVGlppalqqlZVCgCoAKiqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "VVVVVVVVVVVVVVVVVVUAAAVEVVVVVVVGpaqqqqqqqqpVVVVVVVVVVVVVVVUVAEQVBFWqqlVVpaqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqVVVVVVVVVVVVVVVVBaBVEFRVVVVVVVWgqqqqqqqqqqpVVVVVVVVVVVVVVVUVAEAR"
+            + "VKmqqlVVpapVVVWpqqqqqlVVVVVVVVVVVVUVUQAQpapVVaWqqqqqqqqqqqqqqqqqVVVVVVVVlQIFEACqVVVVVVWVqqqqqqqq"
+            + "qqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqlVVVVVVVVVVVVVVFQAAQaqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqqqpVVVVVVVVVVVVVVVVVVVVVVVVVVZWqqmpVlaZVVZZVVVVVVVVVZSlEFZWqqlVVpaqqqqqqqqqqqqqqqqqqqqqq"
+            + "VVVaVVVVVVVVVVVVVQAKVVSpqqqqqqqqAQBAVVVVVVVVVVVVFQAUQFUVqqoBQAFVVVVVVVVVVVVVVQUAAEBQVZWqqqpVVVVV"
+            + "VVVVVVVVVVVVVVVVVVWpqlVVWVVVVVVVVVVVVQCAABBVpaqqVVVVVVVVValVVVVVVVVVVQoAAAAAAAYABIGqqqqqqqqqqqqq"
+            + "qqqqqqqqqqpVlWVVVVVVVVVVVVUBgIogABCqqlVVpapVZVlVVVVVVVVVVZVgEamqVVWlqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqpVVVVVFVSpqqqqqqqqqqqq"
+            + "qqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqaqqqlVVVVVVVVVVVVVVVaWqqmpVVVVVVVVVVVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVVVVVVVVVVaWqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVV"
+            + "VVVVlVWpqqpVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqpVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVVVVVVVWVqqqqVVVVVVVVVVVVVVWVAACoqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqqqqqqqqqqqqqqlVVVVVVVVVVVVVVVVVVVVVVlaqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqqqpVVVVVVVVVVVVVVVVVVamqVVVVVVVVVZVVVaVaVVVVVVVVVVVVVVVVVVVVVVVVVZVVVaWqVVVVVVVVVaUApKqq"
+            + "VVVVVVVVVVVVVVVVAEBVVVWlqqpVVWVVZVVVVVVVqlZVVVVVqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqqqpVVVVVVVVVVVVVVVVVVVVVVVVVVVVVlaqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqpVVVVVVVVVVVVVVVVVVVVV"
+            + "VVWVKlVVVVVVVVVVVVVVVVVVqipAVVVVqqqqqqqqqqqqqqqqqqqqqqqoqqqqqqqqVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVV"
+            + "VVWVqlVVValVVamqVVWlQQCqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqgAAAAAAAAAAAAAAoAAAAAAAgKqqVVVVVVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVVVWqqqqqqqqqqqqqqqqqqqpVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVVVVVVVVVpaqqVVVVVVVVVVVVlVZVVVVVVVVVVVVVVVVVVRVQVRUAAABAAQBVVVVVVVVVBVBVVVVV"
+            + "VVVVVVVVVVVVVZWqqqqqqlVVVVVVVVVVVVVVVVVVVVUFpKqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "VVVVVVWqqqpVVVVVVVVVVVVVVVVVVVVVVVVVVVWVqqpVVVVVVVWpqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "VVVVVVVVVVVVVVVVVVVVVVVVVVVVWVVVVVVVVVVVVVVVVVVVVVVVWZqWVllVVWVWVVZVVVVVVVVVVVVVVVVVVVVllVZVWVVZ"
+            + "VVVVVVVVZZVVmVpVWVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVaVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVWlVVVVVVVVVVVVVVVQAAAAAAAAAAAAAAAABAFQAAAAAAAAAAAAAAAFRVUVVV"
+            + "VVRVqqqqKgACAAAAqqqqqqqqqqqqqqqqqqqqqqqqqqpVVVVVVVVVlaqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqAIAAAAAAKAAgCICqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqqqqqqqqqqqqqqlVVVVVVVVVVVVVVqQBAVaVVVaVaqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqpVVVVVVVVVhaqqqqpVVVVVVVVVVVVVVQBVVaVq"
+            + "qqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqpVlVWWVVVVlVVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVpVVUAgKqqqqqqqqqqqqpVVVVVVVVVVVVVVVVVVVVV"
+            + "VQBAqlVVpVqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqlZVVVVVVVVVVVVVVVVVVVVVqaqqqqqqqqqqqqqqqqqqqqqqqlZVVVVVVVVVVVVVVVVVVaWqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqpVVlVVVVVVVZZpVlWVVWaqmmpmVpZpZmaWaZVVlVVWmVVVZVVVVVWq"
+            + "VlZlVVVVVaqqqqqqqqqqqqqqqqqlqqqqVVZVVVVVVVVVVVWqVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVaqqqlVVVZVWVVVV"
+            + "VlVVlVZVVVVVVVVVVaWqqlVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVZamqalVVVVWlqqqqqqqqqqqqqqqq"
+            + "qlpVVVVVVVWqqqqqqqqqqlZVVamqmqqqqqqqqqqqqqqqqqqqqqqqpqqqqqqqVVVVqqqqqqqqqqqqqmqVqlVVVaqqqqpWVqqq"
+            + "qqqqqqqqqqqqqqqqqqqqaqaqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqlqqqqqqqqqqq"
+            + "qqqqqqqqqlpVVZVqqqqqqqqqVVVVVWVVVVVVVVVpVVVVVlVVVVVVVVVVVVVVVVVVVVVVVVVVlaqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqlVVVVVVVVVVVVVVVaqqqqqqqqqqqqqqqqqqqqqqWlVWaqmqqlVVlapVqqqqVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVV"
+            + "VVVVVVWqqqpVVVVVVVVVVVVVVVVVVVVVVVVVVVVVqaqqqqqqqqqqqlVVVapVVVVVVVVVVVVVVVVVVaqqVVWlqlVVVVVVVVVV"
+            + "VVWqqlVVVVVVVVWlpaqqqqqqqqqqqqqqqqqqqqqqqqpVVVWqqqqqqqqqqqqqqmqqqpqqqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqVVVVVVVVVVVVVVVVVVVVVVVVVVVVqqqqVVVVpaqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "qqqqqqqqqqqqqqqqqqqqqlVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVZVVVVVVVVVVVVVVVVVVlaqqqqqq"
+            + "qqqqqlVVpaqiqqqqqqqqqgAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAKqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqqq"
+            + "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAqqqqqlVVVVVVVVVV"
+            + "VVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVVaU=";
+    // END GENERATED TABLES
+
+    static {
+        int block = 0;
+        for (int i = 0; i < BLOCK_RUNS.length; i += 2) {
+            for (int j = 0; j < BLOCK_RUNS[i]; j++) {
+                STAGE1[block++] = (byte) BLOCK_RUNS[i + 1];
+            }
+        }
+        STAGE2 = Base64.getDecoder().decode(BLOCK_WIDTHS);
+    }
+
+    private CharWidth() {
+    }
+
+    /**
+     * Gets the number of columns a code point takes.
+     *
+     * @param codePoint The code point.
+     * @return 0 for control chars and chars that combine with the one before, 2 for wide
+     *         chars, 1 otherwise.
+     */
+    static int of(int codePoint) {
+        if (codePoint >= 0x20 && codePoint < 0x7F) {
+            return 1;
+        }
+        if (codePoint < 0 || codePoint > Character.MAX_CODE_POINT) {
+            return 0;
+        }
+        int block = STAGE1[codePoint >> 8] & 0xFF;
+        int packed = STAGE2[block << 6 | (codePoint & 0xFF) >> 2];
+        return packed >> ((codePoint & 3) << 1) & 3;
+    }
+
+    /**
+     * Counts the printable ASCII chars of a text from an index, which take one column each.
+     *
+     * @param text The text.
+     * @param from The index to start at.
+     * @param to   The index to stop at.
+     * @return The number of printable ASCII chars before the first other char or the end.
+     */
+    static int countAscii(CharSequence text, int from, int to) {
+        int i = from;
+        while (i < to) {
+            char c = text.charAt(i);
+            if (c < 0x20 || c >= 0x7F) {
+                break;
+            }
+            i++;
+        }
+        return i - from;
+    }
+}
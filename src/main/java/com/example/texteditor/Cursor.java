@@ -1,8 +1,5 @@
 package com.example.texteditor;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Manages the cursor position and scrolling behavior in a terminal-based text editor.
  * Tracks cursor coordinates, handles line wrapping, and manages vertical scrolling.
@@ -15,13 +12,14 @@ public class Cursor {
     private int cursorXcache;   // Cached x-coordinate for cursor movement
     private int cursorY;        // Current y-coordinate of the cursor (line)
     private int offsetY;        // Vertical scroll offset (first visible line)
-    private int cursorWrap;     // Accumulated line wraps for the cursor
+    private int cursorWrap;     // Line wraps above the cursor line
     private int pageWrap;       // Accumulated line wraps for the page
-    private int hiddenWrap;     // Hidden line wraps due to scrolling
+    private int hiddenWrap;     // Line wraps above the first visible line
 
     private boolean contentChanged;
     private int backspaceCache;
-    List<Byte> byteCache = new ArrayList<>();
+    private long pasteEnd;      // Byte offset after the text pasted last
+    private int insertedLength; // Number of chars typed in by the last key
 
     /**
      * Constructs a new Cursor with initialized position and scroll state.
@@ -41,14 +39,14 @@ public class Cursor {
      * Handles scrolling based on cursor movement and key input.
      *
      * @param key The key code representing the user input.
-     * @param content    The list of text lines in the editor.
+     * @param content    The document being edited.
      * @param rows       The number of visible rows in the terminal.
      * @param usedRows   The number of rows currently occupied by content.
      * @param columns    The number of columns in the terminal.
      */
-    public void scroll(int key, List<String> content, int rows, int columns, Terminal terminal) {
+    public void scroll(int key, Document content, int rows, int columns, Terminal terminal) {
 
-        if (content.size() <= 0) {
+        if (content.getLineCount() <= 0) {
             return;
         }
 
@@ -66,8 +64,12 @@ public class Cursor {
                 handlePageUpScroll(content, rows, columns, terminal);
                 break;
             case TextEditor.FIND:
+            case TextEditor.GOTO_LINE:
                 handleFindScroll(content, columns, terminal);
                 break;
+            case TextEditor.PASTE:
+                moveCursorIntoView(content, rows, columns, terminal);
+                break;
             case TextEditor.DEL:
                 handleDelScroll(content, rows, columns, terminal);
                 break;
@@ -87,99 +89,106 @@ public class Cursor {
     /**
      * Handles scrolling logic for ARROW_DOWN key.
      */
-    private void handleArrowDownScroll(List<String> content, int rows, int columns, Terminal terminal) {
+    private void handleArrowDownScroll(Document content, int rows, int columns, Terminal terminal) {
         moveCursorIntoView(content, rows, columns, terminal);
     }
 
-    private void moveCursorIntoView(List<String> content, int rows, int columns, Terminal terminal) {
-        while (cursorY + cursorWrap + getWrap(content.get(cursorY), columns, terminal) > offsetY + hiddenWrap + rows) {
-            hiddenWrap += getWrap(content.get(offsetY), columns, terminal);
-            offsetY = Math.min(offsetY + 1, content.size());
+    private void moveCursorIntoView(Document content, int rows, int columns, Terminal terminal) {
+        int cursorEndRow = cursorY + cursorWrap + getWrap(content, cursorY, columns, terminal);
+        if (cursorEndRow > offsetY + hiddenWrap + rows) {
+            scrollTo(Math.min(getFirstLineFromRow(cursorEndRow - rows, content, columns, terminal), content.getLineCount()), content, columns, terminal);
         }
     }
 
     /**
      * Handles scrolling logic for inserting a character.
      */
-    private void handleInsertCharScroll(List<String> content, int rows, int columns, Terminal terminal) {
-        int currentLineWrap = getWrap(content.get(cursorY), columns, terminal);
+    private void handleInsertCharScroll(Document content, int rows, int columns, Terminal terminal) {
+        int currentLineWrap = getWrap(content, cursorY, columns, terminal);
         if (cursorY + cursorWrap + currentLineWrap > offsetY + hiddenWrap + rows && currentLineWrap < rows - 1) {
-            hiddenWrap += getWrap(content.get(offsetY), columns, terminal);
-            offsetY = Math.min(offsetY + 1, content.size());
+            scrollTo(Math.min(offsetY + 1, content.getLineCount()), content, columns, terminal);
         }
     }
 
     /**
      * Handles scrolling logic for ARROW_UP key.
      */
-    private void handleArrowUpScroll(List<String> content, int columns, Terminal terminal) {
+    private void handleArrowUpScroll(Document content, int columns, Terminal terminal) {
         if (cursorY < offsetY) {
             scrollUpOneLine(content, columns, terminal);
         }
     }
 
-    private void scrollUpOneLine(List<String> content, int columns, Terminal terminal) {
-        offsetY = Math.max(offsetY - 1, 0);
-        hiddenWrap -= getWrap(content.get(cursorY), columns, terminal);
+    private void scrollUpOneLine(Document content, int columns, Terminal terminal) {
+        scrollTo(Math.max(offsetY - 1, 0), content, columns, terminal);
     }
     
     /**
      * Handles scrolling logic for PAGE_DOWN key.
      */
-    private void handlePageDownScroll(List<String> content, int columns, Terminal terminal) {
-        int addedHiddenWrap = 0;
-        for (int i = offsetY; i < cursorY; i++) {
-            addedHiddenWrap += getWrap(content.get(i), columns, terminal); 
-        }
-        hiddenWrap += addedHiddenWrap;
-        offsetY = cursorY;
+    private void handlePageDownScroll(Document content, int columns, Terminal terminal) {
+        scrollTo(cursorY, content, columns, terminal);
     }
 
     /**
      * Handles scrolling logic for PAGE_UP key.
      */
-    private void handlePageUpScroll(List<String> content, int rows, int columns, Terminal terminal) {
-        int reducedHiddenWrap = 0;
-        int startOffsetWrap = getWrap(content.get(offsetY), columns, terminal);
-        while (offsetY > 0) {
-            offsetY--;
-            reducedHiddenWrap += getWrap(content.get(offsetY), columns, terminal);
-            if (cursorY - offsetY + 1 + startOffsetWrap + reducedHiddenWrap > rows) {
-                reducedHiddenWrap -= getWrap(content.get(offsetY), columns, terminal);
-                offsetY++;
-                break;
-            }
-        }
-        hiddenWrap -= reducedHiddenWrap;
+    private void handlePageUpScroll(Document content, int rows, int columns, Terminal terminal) {
+        // Scroll up to the first line that still leaves room for the cursor line
+        int startOffsetWrap = getWrap(content, offsetY, columns, terminal);
+        int topRow = cursorY + 1 + startOffsetWrap + hiddenWrap - rows;
+        scrollTo(Math.min(getFirstLineFromRow(topRow, content, columns, terminal), offsetY), content, columns, terminal);
     }
 
     /**
-     * Handles scrolling logic for find function.
+     * Handles scrolling logic for find function and for going to a line.
      */
-    private void handleFindScroll(List<String> content, int columns, Terminal terminal) {
-        if (offsetY < cursorY) {
-            handlePageDownScroll(content, columns, terminal);
-        } else {
-            int reducedHiddenWrap = 0;
-            for (int i = cursorY; i < offsetY; i++) {
-                reducedHiddenWrap += getWrap(content.get(i), columns, terminal);
-            }
-            hiddenWrap -= reducedHiddenWrap;
-            offsetY = cursorY;
-        }
+    private void handleFindScroll(Document content, int columns, Terminal terminal) {
+        scrollTo(cursorY, content, columns, terminal);
+    }
+
+    /**
+     * Sums the wraps above the first visible line and the cursor line again after their lines
+     * were measured for a new width, and scrolls down if the cursor line no longer fits.
+     *
+     * @param content  The document being edited.
+     * @param rows     The number of content rows in the terminal.
+     * @param columns  The number of columns in the terminal.
+     * @param terminal The terminal measuring the lines.
+     */
+    void refreshWraps(Document content, int rows, int columns, Terminal terminal) {
+        hiddenWrap = terminal.getWrapsBefore(content, offsetY, columns);
+        cursorWrap = terminal.getWrapsBefore(content, cursorY, columns);
+        moveCursorIntoView(content, rows, columns, terminal);
+    }
+
+    /**
+     * Makes a line the first visible one.
+     */
+    private void scrollTo(int line, Document content, int columns, Terminal terminal) {
+        offsetY = line;
+        hiddenWrap = terminal.getWrapsBefore(content, line, columns);
+    }
+
+    /**
+     * Finds the first line that starts at or below a row, counting rows from the top of the
+     * document.
+     */
+    private int getFirstLineFromRow(int row, Document content, int columns, Terminal terminal) {
+        return row <= 0 ? 0 : terminal.getLineAtRow(content, row - 1, columns) + 1;
     }
 
-    private void handleDelScroll(List<String> content, int rows, int columns, Terminal terminal) {
+    private void handleDelScroll(Document content, int rows, int columns, Terminal terminal) {
         moveCursorIntoView(content, rows, columns, terminal);
     }
 
-    private void handleBackspaceScroll(List<String> content, int columns, Terminal terminal) {
+    private void handleBackspaceScroll(Document content, int columns, Terminal terminal) {
         if (cursorY < offsetY) {
             scrollUpOneLine(content, columns, terminal);
         }
     }
 
-    private void handleEnterScroll(List<String> content, int rows, int columns, Terminal terminal) {
+    private void handleEnterScroll(Document content, int rows, int columns, Terminal terminal) {
         moveCursorIntoView(content, rows, columns, terminal);
     }
 
@@ -187,13 +196,13 @@ public class Cursor {
      * Moves the cursor based on the key pressed.
      *
      * @param key      The key code representing the user input.
-     * @param content  The list of text lines in the editor.
+     * @param content  The document being edited.
      * @param usedRows The number of rows currently occupied by content.
      * @param columns  The number of columns in the terminal.
      */
-    public void moveCursor(int key, List<String> content, Terminal terminal, int usedRows, int columns) {
+    public void moveCursor(int key, Document content, Terminal terminal, int usedRows, int columns) {
 
-        if (content.isEmpty()) {
+        if (content.getLineCount() <= 0) {
             return;
         }
 
@@ -233,6 +242,9 @@ public class Cursor {
             case TextEditor.ENTER:
                 moveCursorEnter(prevCursorY, content, columns, terminal);
                 break;
+            case TextEditor.PASTE:
+                moveCursorPaste(prevCursorY, content, columns, terminal);
+                break;
             default:
                 if (!Character.isISOControl(key)) {
                     moveCursorInsertChar(content, columns, terminal);
@@ -240,11 +252,11 @@ public class Cursor {
         }
 
         // Ensure cursorX stays within valid bounds
-        cursorX = Math.min(cursorXcache, Math.max(content.get(cursorY).length(), 0));
+        cursorX = Math.min(cursorXcache, Math.max(content.getLineLength(cursorY), 0));
     }
 
-    public void moveCursor(int key, List<String> content, Terminal terminal, int usedRows, int columns, int targetRow, int targetCol) {
-        if (content.isEmpty()) {
+    public void moveCursor(int key, Document content, Terminal terminal, int usedRows, int columns, int targetRow, int targetCol) {
+        if (content.getLineCount() <= 0) {
             return;
         }
 
@@ -256,11 +268,25 @@ public class Cursor {
         setCursorX(targetCol);
     }
 
+    /**
+     * Moves the cursor to the end of the text pasted.
+     */
+    private void moveCursorPaste(int prevCursorY, Document content, int columns, Terminal terminal) {
+        if (pasteEnd < 0) {
+            return;
+        }
+        cursorY = content.getLineAt(pasteEnd);
+        handleCursorWrap(prevCursorY, content, columns, terminal);
+        byte[] bytes = new byte[(int) (pasteEnd - content.getLineStart(cursorY))];
+        content.read(content.getLineStart(cursorY), bytes, 0, bytes.length);
+        cursorXcache = Utf8.charCount(bytes, 0, bytes.length);
+    }
+
     /**
      * Moves the cursor down one line.
      */
-    private void moveCursorDown(int prevCursorY, List<String> content, int columns, Terminal terminal) {
-        if (cursorY < content.size() - 1) {
+    private void moveCursorDown(int prevCursorY, Document content, int columns, Terminal terminal) {
+        if (cursorY < content.getLineCount() - 1) {
             cursorY++;
             handleCursorWrap(prevCursorY, content, columns, terminal);
         }
@@ -269,7 +295,7 @@ public class Cursor {
     /**
      * Moves the cursor up one line.
      */
-    private void moveCursorUp(int prevCursorY, List<String> content, int columns, Terminal terminal) {
+    private void moveCursorUp(int prevCursorY, Document content, int columns, Terminal terminal) {
         if (cursorY > 0) {
             cursorY--;
             handleCursorWrap(prevCursorY, content, columns, terminal);
@@ -279,8 +305,8 @@ public class Cursor {
     /**
      * Moves the cursor for PAGE_DOWN key.
      */
-    private void moveCursorPageDown(int prevCursorY, List<String> content, int columns, int usedRows, Terminal terminal) {
-        if (offsetY + usedRows - pageWrap == content.size()) {
+    private void moveCursorPageDown(int prevCursorY, Document content, int columns, int usedRows, Terminal terminal) {
+        if (offsetY + usedRows - pageWrap == content.getLineCount()) {
             cursorY = offsetY + usedRows - pageWrap - 1;
         } else {
             cursorY = offsetY + usedRows - pageWrap - PAGE_SCROLL_OFFSET;
@@ -291,10 +317,10 @@ public class Cursor {
     /**
      * Moves the cursor for PAGE_UP key.
      */
-    private void moveCursorPageUp(int prevCursorY, List<String> content, int columns, Terminal terminal) {
+    private void moveCursorPageUp(int prevCursorY, Document content, int columns, Terminal terminal) {
         if (offsetY == 0) {
             cursorY = offsetY;
-        } else if (offsetY == content.size() - 1) {
+        } else if (offsetY == content.getLineCount() - 1) {
             cursorY = offsetY - 1;
         } else {
             cursorY = offsetY + PAGE_SCROLL_OFFSET - 1;
@@ -305,9 +331,9 @@ public class Cursor {
     /**
      * Moves the cursor left one character.
      */
-    private void moveCursorLeft(List<String> content, Terminal terminal) {
+    private void moveCursorLeft(Document content, Terminal terminal) {
         if (cursorX > 0) {
-            int charCount = cursorX >= 2 && Character.charCount(content.get(cursorY).codePointAt(cursorX - 2)) == 2 ? 2 : 1;
+            int charCount = cursorX >= 2 && Character.charCount(content.getLine(cursorY).codePointAt(cursorX - 2)) == 2 ? 2 : 1;
             setCursorX(cursorX - charCount);
             cursorXcache = cursorX;
         } else if (cursorY > 0) {
@@ -319,12 +345,12 @@ public class Cursor {
     /**
      * Moves the cursor right one character.
      */
-    private void moveCursorRight(List<String> content, Terminal terminal) {
-        if (cursorX < content.get(cursorY).length()) {
-            int codePoint = content.get(cursorY).codePointAt(cursorX);
+    private void moveCursorRight(Document content, Terminal terminal) {
+        if (cursorX < content.getLineLength(cursorY)) {
+            int codePoint = content.getLine(cursorY).codePointAt(cursorX);
             setCursorX(cursorX + Character.charCount(codePoint));
             cursorXcache = cursorX;
-        } else if (cursorY < content.size() - 1) {
+        } else if (cursorY < content.getLineCount() - 1) {
             terminal.handleKey(TextEditor.ARROW_DOWN, this, content);
             terminal.handleKey(TextEditor.HOME, this, content);
         }
@@ -340,28 +366,28 @@ public class Cursor {
     /**
      * Moves the cursor for END key.
      */
-    private void moveCursorEnd(List<String> content) {
-        setCursorX(content.get(cursorY).length());
+    private void moveCursorEnd(Document content) {
+        setCursorX(content.getLineLength(cursorY));
     }
 
     /**
      * Moves the cursor when delete one character.
      */
-    private void moveCursorDel(List<String> content) {
+    private void moveCursorDel(Document content) {
         // do nothing
     }
 
     /**
      * Moves the cursor for backspace key.
      */
-    private void moveCursorBackspace(List<String> content, int columns, Terminal terminal) {
+    private void moveCursorBackspace(Document content, int columns, Terminal terminal) {
         if (cursorX == 0) {
             if (cursorY <= 0) {
                 return;
             }
             cursorY -= 1;
             setCursorX(cursorXcache);
-            cursorWrap -= getWrap(content.get(cursorY).substring(0, cursorX), columns, terminal);
+            cursorWrap = terminal.getWrapsBefore(content, cursorY, columns);
         } else {
             setCursorX(Math.max(cursorX - backspaceCache, 0));
         }
@@ -370,42 +396,32 @@ public class Cursor {
     /**
      * Moves the cursor when insert one character.
      */
-    private void moveCursorInsertChar(List<String> content, int columns, Terminal terminal) {
-        String insertedString = new String(getByateArray(byteCache));
-        for (int i = 0; i < insertedString.length(); i++) {
-            int codePoint = insertedString.codePointAt(i);
-            setCursorX(cursorX + Character.charCount(codePoint));
-        }
+    private void moveCursorInsertChar(Document content, int columns, Terminal terminal) {
+        setCursorX(cursorX + insertedLength);
     }
 
-    private void moveCursorEnter(int prevCursorY, List<String> content, int columns, Terminal terminal) {
+    private void moveCursorEnter(int prevCursorY, Document content, int columns, Terminal terminal) {
         cursorY += 1;
         setCursorX(0);
         handleCursorWrap(prevCursorY, content, columns, terminal);
     }
 
     /**
-     * Updates cursor wrap count when scrolling pages.
+     * Updates cursor wrap count after the cursor moved to another line.
      */
-    private void handleCursorWrap(int prevCursorY, List<String> content, int columns, Terminal terminal) {
-        int addedCursorWrap= 0;
-        for (int i = cursorY; i < prevCursorY; i++) {
-            addedCursorWrap -= getWrap(content.get(i), columns, terminal);
-        }
-        for (int i = prevCursorY; i < cursorY; i++) {
-            addedCursorWrap += getWrap(content.get(i), columns, terminal);
-        }
-        cursorWrap += addedCursorWrap;
+    private void handleCursorWrap(int prevCursorY, Document content, int columns, Terminal terminal) {
+        cursorWrap = terminal.getWrapsBefore(content, cursorY, columns);
     }
 
     /**
      * Edits the content based on the key pressed (e.g., delete character).
      *
      * @param key     The key code representing the user input.
-     * @param content The list of text lines in the editor.
+     * @param content The document being edited.
+     * @param typed   The text of a typed key.
      */
-    public void editContent(int key, List<String> content, ByteBuffer byteBuffer, int columns, Terminal terminal) {
-        if (content.size() <= 0) {
+    public void editContent(int key, Document content, CharSequence typed, int columns, Terminal terminal) {
+        if (content.getLineCount() <= 0) {
             return;
         }
 
@@ -419,6 +435,9 @@ public class Cursor {
             case TextEditor.ENTER:
                 editContentEnter(content);
                 break;
+            case TextEditor.PASTE:
+                editContentPaste(content, terminal.getPastedText());
+                break;
             case TextEditor.ARROW_DOWN:
             case TextEditor.ARROW_LEFT:
             case TextEditor.ARROW_RIGHT:
@@ -426,80 +445,68 @@ public class Cursor {
             case TextEditor.END:
             case TextEditor.ESC:
             case TextEditor.FIND:
+            case TextEditor.GOTO_LINE:
             case TextEditor.HOME:
             case TextEditor.PAGE_DOWN:
             case TextEditor.PAGE_UP:
                 break;
             default:
-                editContentInsertChar(key, content, byteBuffer, columns, terminal);
+                editContentInsertChar(key, content, typed);
         }
     }
 
-    private void editContentDel(List<String> content) {
-        if (cursorX < content.get(cursorY).length()) {
-            content.set(cursorY, String.join("", content.get(cursorY).substring(0, cursorX), content.get(cursorY).substring(cursorX + 1)));
+    private void editContentDel(Document content) {
+        if (cursorX < content.getLineLength(cursorY)) {
+            content.delete(cursorY, cursorX, Character.charCount(content.getLine(cursorY).codePointAt(cursorX)));
         } else {
-            if (cursorY >= content.size() - 1) {
+            if (cursorY >= content.getLineCount() - 1) {
                 return;
             }
-            content.set(cursorY, String.join("", content.get(cursorY), content.get(cursorY + 1)));
-            content.remove(cursorY + 1);
+            content.joinLines(cursorY);
         }
         contentChanged = true;
     }
 
-    private void editContentBackspace(List<String> content) {
+    private void editContentBackspace(Document content) {
         if (cursorX > 0) {
-            backspaceCache = cursorX >= 2 && Character.charCount(content.get(cursorY).codePointAt(cursorX - 2)) == 2 ? 2 : 1;
-            content.set(cursorY, String.join("", content.get(cursorY).substring(0, Math.max(cursorX - backspaceCache, 0)), content.get(cursorY).substring(cursorX)));
+            backspaceCache = cursorX >= 2 && Character.charCount(content.getLine(cursorY).codePointAt(cursorX - 2)) == 2 ? 2 : 1;
+            content.delete(cursorY, Math.max(cursorX - backspaceCache, 0), Math.min(backspaceCache, cursorX));
         } else {
             if (cursorY == 0) {
                 return;
             }
-            cursorXcache = content.get(cursorY - 1).length();
-            backspaceCache = cursorX >= 2 && Character.charCount(content.get(cursorY).codePointAt(cursorX - 2)) == 2 ? 2 : 1;
-            content.set(cursorY - 1, String.join("", content.get(cursorY - backspaceCache), content.get(cursorY)));
-            content.remove(cursorY);
+            cursorXcache = content.getLineLength(cursorY - 1);
+            backspaceCache = cursorX >= 2 && Character.charCount(content.getLine(cursorY).codePointAt(cursorX - 2)) == 2 ? 2 : 1;
+            content.joinLines(cursorY - 1);
         }
         contentChanged = true;
     }
 
-    private void editContentInsertChar(int key, List<String> content, ByteBuffer byteBuffer, int columns, Terminal terminal) {
-        byteCache.clear();
-        if (!Character.isISOControl(key)) {
-            for (byte b : byteBuffer.getFilteredBuffer()) {
-                if (b == TextEditor.ENTER) {
-                    writeToContent(content, byteCache);
-                    cursorX += new String(getByateArray(byteCache)).length();
-                    byteCache.clear();
-                    editContentEnter(content);
-                    moveCursorEnter(cursorY, content, columns, terminal);
-                } else {
-                    byteCache.add(b);
-                }
-            }
-            writeToContent(content, byteCache);
+    private void editContentInsertChar(int key, Document content, CharSequence typed) {
+        insertedLength = 0;
+        if (key >= 0 && !Character.isISOControl(key) && typed.length() > 0) {
+            content.insert(cursorY, cursorX, typed.toString());
+            insertedLength = typed.length();
             contentChanged = true;
         }
     }
 
-    private void writeToContent(List<String> content, List<Byte> byteCache) {
-        byte[] byteArray = getByateArray(byteCache);
-        content.set(cursorY, String.join("", content.get(cursorY).substring(0, cursorX), new String(byteArray), content.get(cursorY).substring(cursorX)));
-    }
-
-    private byte[] getByateArray(List<Byte> byteCache) {
-        byte[] byteArray = new byte[byteCache.size()];
-        for (int i = 0; i < byteCache.size(); i++) {
-            byteArray[i] = byteCache.get(i);
+    /**
+     * Inserts pasted text at the cursor in one go, however many lines it holds.
+     */
+    private void editContentPaste(Document content, byte[] text) {
+        if (text.length == 0) {
+            pasteEnd = -1;
+            return;
         }
-        return byteArray;
+        long offset = content.getOffset(cursorY, cursorX);
+        content.insert(offset, text);
+        pasteEnd = offset + text.length;
+        contentChanged = true;
     }
 
-    private void editContentEnter(List<String> content) {
-        String line = content.get(cursorY);
-        content.set(cursorY, line.substring(0, cursorX));
-        content.add(cursorY + 1, line.substring(cursorX));
+    private void editContentEnter(Document content) {
+        content.splitLine(cursorY, cursorX);
         contentChanged = true;
     }
 
@@ -511,7 +518,20 @@ public class Cursor {
      * @return The number of wraps needed for the line.
      */
     public int getWrap(String line, int columns, Terminal terminal) {
-        return Math.max(terminal.getLineWidth(line, columns) - 1, 0) / columns;
+        return LineMetrics.measure(line, columns, terminal);
+    }
+
+    /**
+     * Gets the number of line wraps for a line of the document. The terminal measures each line
+     * once and remembers the result until the line is edited or the terminal is resized.
+     *
+     * @param content The document holding the line.
+     * @param line    The line index.
+     * @param columns The number of columns in the terminal.
+     * @return The number of wraps needed for the line.
+     */
+    public int getWrap(Document content, int line, int columns, Terminal terminal) {
+        return terminal.getLineWrap(content, line, columns);
     }
 
     // Getters
@@ -555,6 +575,10 @@ public class Cursor {
         pageWrap = 0;
     }
 
+    public void markContentChanged() {
+        contentChanged = true;
+    }
+
     public void resetContentChanged() {
         contentChanged = false;
     }
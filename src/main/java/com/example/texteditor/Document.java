@@ -0,0 +1,212 @@
+package com.example.texteditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Line-oriented view of the text being edited.
+ * Lines are addressed by index and columns by UTF-16 char offset, matching how
+ * {@link Cursor} and {@link Terminal} address the screen.
+ */
+public interface Document {
+
+    /**
+     * Gets the number of lines. A document always has at least one (possibly empty) line.
+     *
+     * @return The number of lines in the document.
+     */
+    int getLineCount();
+
+    /**
+     * Gets a line without its line terminator.
+     *
+     * @param line The line index.
+     * @return The decoded line.
+     */
+    String getLine(int line);
+
+    /**
+     * Gets the length of a line in chars, without its line terminator.
+     *
+     * @param line The line index.
+     * @return The number of chars in the line.
+     */
+    default int getLineLength(int line) {
+        return getLine(line).length();
+    }
+
+    /**
+     * Gets the line holding a byte offset.
+     *
+     * @param offset The byte offset.
+     * @return The line index.
+     */
+    int getLineAt(long offset);
+
+    /**
+     * Gets the byte offset at which a line starts.
+     *
+     * @param line The line index.
+     * @return The offset of the first byte of the line.
+     */
+    long getLineStart(int line);
+
+    /**
+     * Gets the byte offset of a column, by stepping through the encoded line rather than
+     * decoding it.
+     *
+     * @param line The line index.
+     * @param col  The char offset within the line.
+     * @return The offset of the first byte of the char at the column, or of the line end if the
+     *         line is shorter.
+     */
+    long getOffset(int line, int col);
+
+    /**
+     * Copies a range of the encoded document into an array.
+     *
+     * @param offset The byte offset to copy from.
+     * @param dst    The destination array.
+     * @param dstPos The position in the destination array.
+     * @param length The number of bytes to copy.
+     */
+    void read(long offset, byte[] dst, int dstPos, int length);
+
+    /**
+     * Inserts text at a position. The text may contain line feeds.
+     *
+     * @param line The line index.
+     * @param col  The char offset within the line.
+     * @param text The text to insert.
+     */
+    void insert(int line, int col, String text);
+
+    /**
+     * Deletes chars within a single line.
+     *
+     * @param line   The line index.
+     * @param col    The char offset within the line.
+     * @param length The number of chars to delete.
+     */
+    void delete(int line, int col, int length);
+
+    /**
+     * Splits a line in two at the given column.
+     *
+     * @param line The line index.
+     * @param col  The char offset within the line.
+     */
+    void splitLine(int line, int col);
+
+    /**
+     * Joins a line with the line following it by removing its line terminator.
+     *
+     * @param line The line index.
+     */
+    void joinLines(int line);
+
+    /**
+     * Inserts UTF-8 encoded bytes at a byte offset.
+     *
+     * @param offset The byte offset to insert at.
+     * @param bytes  The bytes to insert.
+     */
+    void insert(long offset, byte[] bytes);
+
+    /**
+     * Deletes a range of bytes.
+     *
+     * @param offset The byte offset of the first byte to delete.
+     * @param length The number of bytes to delete.
+     */
+    void delete(long offset, long length);
+
+    /**
+     * Replaces ranges of bytes with other text in one operation. Listeners are told about each
+     * range as a delete followed by an insert, from the first range to the last, and then once
+     * about all the lines between the first range and the last.
+     *
+     * @param offsets      The byte offsets of the ranges, sorted and not overlapping.
+     * @param lengths      The number of bytes in each range.
+     * @param count        The number of ranges.
+     * @param replacements The UTF-8 encoded text to put in place of each range. Consecutive
+     *                     ranges may share an array, which is then stored once.
+     */
+    void replace(long[] offsets, int[] lengths, int count, byte[][] replacements);
+
+    /**
+     * Registers a listener to be told about every subsequent edit.
+     *
+     * @param listener The listener to add.
+     */
+    void addListener(DocumentListener listener);
+
+    /**
+     * Checks whether the whole document has been loaded. Lines near the start can be read
+     * before loading finishes.
+     *
+     * @return True if the document is fully loaded.
+     */
+    default boolean isLoaded() {
+        return true;
+    }
+
+    /**
+     * Gets the loading progress.
+     *
+     * @return The percentage of the document loaded so far.
+     */
+    default int getLoadProgress() {
+        return 100;
+    }
+
+    /**
+     * Gets the length of the document in bytes, as it would be written to disk.
+     *
+     * @return The encoded length of the document.
+     */
+    long length();
+
+    /**
+     * Writes the encoded document to a channel. Unchanged ranges of a file-backed document may
+     * be copied by the kernel, and everything else is streamed through the given buffer.
+     *
+     * @param target The channel to write to.
+     * @param buffer A reusable buffer to stage bytes in.
+     * @throws IOException if the channel cannot be written.
+     */
+    void writeTo(WritableByteChannel target, ByteBuffer buffer) throws IOException;
+
+    /**
+     * Captures the document as it is now, so it can be written out on another thread while
+     * editing goes on. Taking a snapshot costs as much as the number of pieces the document is
+     * made of, not its length.
+     *
+     * @return The snapshot.
+     */
+    Snapshot snapshot();
+
+    /**
+     * The encoded text of a document at one moment, unaffected by later edits.
+     */
+    interface Snapshot {
+
+        /**
+         * Gets the length of the snapshot in bytes.
+         *
+         * @return The encoded length.
+         */
+        long length();
+
+        /**
+         * Writes the encoded text to a channel, as {@link Document#writeTo} does. May be called
+         * from any thread.
+         *
+         * @param target The channel to write to.
+         * @param buffer A reusable buffer to stage bytes in.
+         * @throws IOException if the channel cannot be written.
+         */
+        void writeTo(WritableByteChannel target, ByteBuffer buffer) throws IOException;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.texteditor;
+
+/**
+ * Receives the byte-level edits made to a {@link Document}, in the order they are applied,
+ * along with the lines each edit affected.
+ */
+interface DocumentListener {
+
+    /**
+     * Called after bytes have been inserted.
+     *
+     * @param offset The byte offset the bytes were inserted at.
+     * @param bytes  The inserted bytes, which must not be modified.
+     */
+    void onInsert(long offset, byte[] bytes);
+
+    /**
+     * Called before bytes are deleted, while they can still be read at the given offset.
+     *
+     * @param offset The byte offset of the first byte to be deleted.
+     * @param length The number of bytes to be deleted.
+     */
+    default void onBeforeDelete(long offset, long length) {
+    }
+
+    /**
+     * Called after bytes have been deleted.
+     *
+     * @param offset The byte offset of the first deleted byte.
+     * @param length The number of deleted bytes.
+     */
+    void onDelete(long offset, long length);
+
+    /**
+     * Called after every edit, once the byte-level callback has been made. A replace made in
+     * one operation calls it once, for all the lines between its first and last range.
+     *
+     * @param line    The line holding the start of the edit, whose content changed.
+     * @param removed The number of lines after it that the edit removed.
+     * @param added   The number of lines after it that the edit added.
+     */
+    default void onLinesChanged(int line, int removed, int added) {
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.texteditor;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only journal of the edits made to a document since it was last saved, used to recover
+ * unsaved changes after the editor is killed.
+ * <p>
+ * The journal lives next to the edited file. It starts with a header identifying the file
+ * contents the edits apply to, followed by one compact binary record per edit. Edits are encoded
+ * into an in-memory batch on the keystroke path and written to disk by a background thread.
+ */
+final class EditJournal implements DocumentListener, Closeable {
+
+    private static final int MAGIC = 0x54454A31;      // "TEJ1"
+    private static final int HEADER_LENGTH = 20;
+    private static final byte INSERT = 'I';
+    private static final byte DELETE = 'D';
+    private static final long FLUSH_INTERVAL_MS = 200;
+
+    private final FileChannel channel;
+    private final ScheduledExecutorService writer;
+    private final Object batchLock = new Object();      // Guards the pending batch
+    private final Object fileLock = new Object();       // Guards writes to the journal file
+
+    private byte[] pending = new byte[4096];            // Records not yet handed to the writer
+    private int pendingSize;
+    private long end;                                   // Journal offset after the last record, pending included
+    private byte[] writing = new byte[4096];            // Records being written by the writer
+
+    private EditJournal(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.end = channel.position();
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "edit-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the path of the journal belonging to a file.
+     *
+     * @param file The edited file.
+     * @return The path of its journal.
+     */
+    static Path pathFor(Path file) {
+        return file.toAbsolutePath().resolveSibling("." + file.getFileName() + ".journal");
+    }
+
+    /**
+     * Creates an empty journal for a file, replacing any existing one.
+     *
+     * @param file The edited file, as last loaded or saved.
+     * @return The new journal.
+     * @throws IOException if the journal cannot be written.
+     */
+    static EditJournal create(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(pathFor(file), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        writeHeader(channel, file);
+        return new EditJournal(channel);
+    }
+
+    /**
+     * Continues an existing journal after its records have been replayed.
+     *
+     * @param file        The edited file.
+     * @param validLength The length of the journal up to its last complete record.
+     * @return The reopened journal.
+     * @throws IOException if the journal cannot be written.
+     */
+    static EditJournal resume(Path file, long validLength) throws IOException {
+        FileChannel channel = FileChannel.open(pathFor(file), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.truncate(validLength);
+        channel.position(validLength);
+        return new EditJournal(channel);
+    }
+
+    /**
+     * Checks whether a journal exists for a file and applies to its current contents.
+     *
+     * @param file The edited file.
+     * @return True if the journal can be replayed onto the file.
+     */
+    static boolean isRecoverable(Path file) {
+        Path journal = pathFor(file);
+        if (!Files.exists(journal)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(journal))) {
+            return in.readInt() == MAGIC && in.readLong() == fileSize(file) && in.readLong() == fileModifiedTime(file);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Applies the records of a journal to a document, stopping at the first incomplete record.
+     *
+     * @param file    The edited file.
+     * @param content The document loaded from the file.
+     * @return The length of the journal up to its last complete record.
+     * @throws IOException if the journal cannot be read.
+     */
+    static long replay(Path file, Document content) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(pathFor(file))))) {
+            in.skipBytes(HEADER_LENGTH);
+            long validLength = HEADER_LENGTH;
+            while (true) {
+                try {
+                    int type = in.read();
+                    if (type == INSERT) {
+                        long offset = readVarLong(in);
+                        byte[] bytes = new byte[(int) readVarLong(in)];
+                        in.readFully(bytes);
+                        content.insert(offset, bytes);
+                        validLength += 1 + varLongLength(offset) + varLongLength(bytes.length) + bytes.length;
+                    } else if (type == DELETE) {
+                        long offset = readVarLong(in);
+                        long length = readVarLong(in);
+                        content.delete(offset, length);
+                        validLength += 1 + varLongLength(offset) + varLongLength(length);
+                    } else {
+                        return validLength;
+                    }
+                } catch (EOFException e) {
+                    return validLength;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onInsert(long offset, byte[] bytes) {
+        synchronized (batchLock) {
+            ensurePending(1 + 20 + bytes.length);
+            int start = pendingSize;
+            pending[pendingSize++] = INSERT;
+            putVarLong(offset);
+            putVarLong(bytes.length);
+            System.arraycopy(bytes, 0, pending, pendingSize, bytes.length);
+            pendingSize += bytes.length;
+            end += pendingSize - start;
+        }
+    }
+
+    @Override
+    public void onDelete(long offset, long length) {
+        synchronized (batchLock) {
+            ensurePending(1 + 20);
+            int start = pendingSize;
+            pending[pendingSize++] = DELETE;
+            putVarLong(offset);
+            putVarLong(length);
+            end += pendingSize - start;
+        }
+    }
+
+    /**
+     * Marks the state of the document as journaled so far, for a save that is about to start.
+     *
+     * @return The position in the journal after the last record.
+     */
+    long mark() {
+        synchronized (batchLock) {
+            return end;
+        }
+    }
+
+    /**
+     * Discards the records made before a save started and starts over against the file as it
+     * was just saved. The records made while it was being saved are kept, since they apply to
+     * the saved file.
+     *
+     * @param file The saved file.
+     * @param mark The position in the journal when the save started.
+     * @throws IOException if the journal cannot be written.
+     */
+    void reset(Path file, long mark) throws IOException {
+        synchronized (fileLock) {
+            flush();
+            long written = channel.position();
+            ByteBuffer kept = ByteBuffer.allocate((int) (written - mark));
+            while (kept.hasRemaining() && channel.read(kept, mark + kept.position()) >= 0) {
+                // Read the records made since the mark
+            }
+            kept.flip();
+            channel.truncate(0);
+            channel.position(0);
+            writeHeader(channel, file);
+            while (kept.hasRemaining()) {
+                channel.write(kept);
+            }
+            // Records added meanwhile are still pending, and are written after the kept ones
+            synchronized (batchLock) {
+                end += channel.position() - written;
+            }
+        }
+    }
+
+    /**
+     * Writes out every pending record.
+     *
+     * @throws IOException if the journal cannot be written.
+     */
+    void flush() throws IOException {
+        synchronized (fileLock) {
+            int size;
+            synchronized (batchLock) {
+                byte[] batch = pending;
+                pending = writing;
+                writing = batch;
+                size = pendingSize;
+                pendingSize = 0;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(writing, 0, size);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            // The next flush retries with the records that follow; recovery is best effort
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        flush();
+        channel.close();
+    }
+
+    /**
+     * Closes the journal and removes its file, once every edit is saved.
+     *
+     * @param file The edited file.
+     * @throws IOException if the journal cannot be removed.
+     */
+    void delete(Path file) throws IOException {
+        writer.shutdown();
+        channel.close();
+        Files.deleteIfExists(pathFor(file));
+    }
+
+    private void ensurePending(int length) {
+        if (pendingSize + length > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pendingSize + length, pending.length * 2));
+        }
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            pending[pendingSize++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        pending[pendingSize++] = (byte) value;
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int varLongLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private static void writeHeader(FileChannel channel, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(MAGIC).putLong(fileSize(file)).putLong(fileModifiedTime(file)).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    private static long fileSize(Path file) throws IOException {
+        return Files.exists(file) ? Files.size(file) : -1;
+    }
+
+    private static long fileModifiedTime(Path file) throws IOException {
+        return Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : 0;
+    }
+}
@@ -1,29 +1,67 @@
 package com.example.texteditor;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Manages file operations for the text editor, including opening and reading files.
  */
 public class FileHandler {
 
+    private static final long MAPPING_THRESHOLD = 8L * 1024 * 1024;   // Files at least this large are memory-mapped
+    private static final int SAVE_BUFFER_SIZE = 1 << 20;
+    private static final boolean INDEX_ENABLED = Boolean.parseBoolean(System.getProperty("texteditor.index", "true"));
+    private static final long INDEX_MEMORY = Runtime.getRuntime().maxMemory() / 8;   // Budget of the trigram index
+
+    /**
+     * When to force saved data to disk, set with -Dtexteditor.fsync=none|file|all.
+     */
+    enum SyncPolicy {
+        NONE,   // Leave flushing to the OS
+        FILE,   // Sync the temporary file before it replaces the original
+        ALL;    // Also sync the directory so the rename itself survives a crash
+
+        static SyncPolicy fromProperty() {
+            String value = System.getProperty("texteditor.fsync", "file");
+            for (SyncPolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(value)) {
+                    return policy;
+                }
+            }
+            return FILE;
+        }
+    }
+
     private Path path;
-    private List<String> content;
+    private Document content;
+    private final SyncPolicy syncPolicy = SyncPolicy.fromProperty();
+    private ByteBuffer saveBuffer;          // Only used by the save thread
+    private ExecutorService saver;
+    private Future<?> saveTask;             // The save started last
+    private volatile boolean saving;
+    private volatile boolean saved;         // Whether the last save finished succeeded
+    private EditJournal journal;
+    private boolean recovered;
+    private TrigramIndex trigramIndex;
 
     /**
-     * Constructs a new FileHandler with an empty content list.
+     * Constructs a new FileHandler with an empty document.
      */
     public FileHandler() {
-        this.content = new ArrayList<>();
+        this.content = new PieceTable();
     }
 
     /**
@@ -45,8 +83,67 @@ public class FileHandler {
             readFile();
             
         } else {
-            content = new ArrayList<>();
-            content.add("");
+            content = new PieceTable();
+        }
+        openJournal();
+    }
+
+    /**
+     * Starts journaling edits, first offering to replay a journal left behind by an earlier session.
+     */
+    private void openJournal() {
+        try {
+            if (EditJournal.isRecoverable(path) && confirmRecovery()) {
+                long validLength = EditJournal.replay(path, content);
+                journal = EditJournal.resume(path, validLength);
+                recovered = true;
+            } else {
+                journal = EditJournal.create(path);
+            }
+            content.addListener(journal);
+        } catch (IOException e) {
+            System.err.println("Error opening journal for '" + path.normalize().toString() + "': " + e.getMessage());
+        }
+    }
+
+    private boolean confirmRecovery() throws IOException {
+        System.out.print("Found unsaved changes to '" + path.normalize().toString() + "' from an earlier session. Recover them? [y/N] ");
+        System.out.flush();
+        int answer = System.in.read();
+        for (int c = answer; c != '\n' && c != -1; c = System.in.read()) {
+            // Skip the rest of the line
+        }
+        return answer == 'y' || answer == 'Y';
+    }
+
+    /**
+     * Removes the edit journal once the editor quits with every edit saved.
+     */
+    public void closeFile() {
+        awaitSave();
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.delete(path);
+        } catch (IOException e) {
+            System.err.println("Error removing journal for '" + path.normalize().toString() + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the file while it has unsaved edits, leaving them in the journal so they are
+     * recovered the next time the file is opened.
+     */
+    public void closeFileKeepingEdits() {
+        awaitSave();
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Error writing journal for '" + path.normalize().toString() + "': " + e.getMessage());
         }
     }
 
@@ -62,10 +159,20 @@ public class FileHandler {
             System.exit(-1);
         }
 
-        try (Stream<String> stream = Files.lines(path)){
-            content = stream.collect(Collectors.toList());
-            if (content.isEmpty()) {
-                content.add("");
+        try {
+            if (Files.size(path) < MAPPING_THRESHOLD) {
+                content = new PieceTable(Files.readAllBytes(path));
+            } else {
+                // Map the file and index its line feeds in the background; lines are decoded only
+                // when displayed or edited, so the first screen can be drawn before indexing ends
+                MappedTextSource source = new MappedTextSource(path);
+                content = new PieceTable(source, LineIndex.buildInBackground(source));
+                // Index trigrams too, so find can skip the blocks that cannot match; it hears
+                // about every edit, including those replayed from a journal
+                if (INDEX_ENABLED) {
+                    trigramIndex = TrigramIndex.buildInBackground(source, INDEX_MEMORY);
+                    content.addListener(trigramIndex);
+                }
             }
         } catch (IOException e) {
             System.err.println("Error reading file '" + path.normalize().toString() + "': " + e.getMessage());
@@ -78,21 +185,168 @@ public class FileHandler {
         return now.format(formatter) + ".txt";
     }
     
-    public void saveFile(Cursor cursor, Terminal terminal) {
+    /**
+     * Starts saving the document on a background thread, which streams a snapshot of it into a
+     * temporary file next to the original and then renames that over the original, so an
+     * interrupted save never leaves a truncated file. Editing goes on while the file is written;
+     * the edits made meanwhile stay unsaved and in the journal.
+     *
+     * @param done Called on the save thread once the save has finished.
+     * @return True if the save started, false if another save is still running.
+     */
+    public boolean startSave(Runnable done) {
+        if (saving) {
+            return false;
+        }
+        Document.Snapshot snapshot = content.snapshot();
+        long journalMark = journal != null ? journal.mark() : 0;
+        if (saver == null) {
+            saver = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "save");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        saving = true;
+        saveTask = saver.submit(() -> {
+            saved = save(snapshot, journalMark);
+            saving = false;
+            done.run();
+        });
+        return true;
+    }
+
+    /**
+     * Checks whether a save is running.
+     *
+     * @return True if the file is being written.
+     */
+    public boolean isSaving() {
+        return saving;
+    }
+
+    /**
+     * Checks whether the last save that finished succeeded.
+     *
+     * @return True if the file was saved.
+     */
+    public boolean isSaved() {
+        return saved;
+    }
+
+    private boolean save(Document.Snapshot snapshot, long journalMark) {
+        Path temp = null;
         try {
-            Files.write(path, content);
-            terminal.updateStatusBarMessage("Saved file successfully!", cursor, content, 34);
+            // Replace the file a symbolic link points to rather than the link itself
+            Path target = Files.exists(path) ? path.toRealPath() : path.toAbsolutePath();
+            temp = Files.createTempFile(target.getParent(), "." + target.getFileName(), ".tmp");
+            copyPermissions(target, temp);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                snapshot.writeTo(channel, getSaveBuffer());
+                if (syncPolicy != SyncPolicy.NONE) {
+                    channel.force(true);
+                }
+            }
+            moveIntoPlace(temp, target);
+            if (syncPolicy == SyncPolicy.ALL) {
+                syncDirectory(target.getParent());
+            }
+            if (journal != null) {
+                journal.reset(target, journalMark);
+            }
+            return true;
         } catch (IOException e) {
+            deleteQuietly(temp);
             System.err.println("Error saving file '" + path.normalize().toString() + "': " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Waits for a running save to finish, so quitting never cuts it short.
+     */
+    public void awaitSave() {
+        if (saveTask == null) {
+            return;
+        }
+        try {
+            saveTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Error saving file '" + path.normalize().toString() + "': " + e.getCause());
+        }
+    }
+
+    private ByteBuffer getSaveBuffer() {
+        if (saveBuffer == null) {
+            saveBuffer = ByteBuffer.allocateDirect(SAVE_BUFFER_SIZE);
+        }
+        return saveBuffer;
+    }
+
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        if (!Files.exists(from)) {
+            return;
+        }
+        try {
+            Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system; the temporary file keeps the default permissions
         }
     }
 
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Some platforms cannot open or sync directories
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Leave the temporary file behind rather than hide the original error
+        }
+    }
+
+    /**
+     * Gets the trigram index of the opened file, which is only built for memory-mapped files.
+     *
+     * @return The index, or null if there is none.
+     */
+    TrigramIndex getTrigramIndex() {
+        return trigramIndex;
+    }
+
     /**
      * Gets the content of the opened file.
      *
-     * @return A list of strings representing the file's lines.
+     * @return The document holding the file's text.
      */
-    public List<String> getContent() {
+    public Document getContent() {
         return content;
     }
+
+    /**
+     * Checks whether unsaved edits from an earlier session were replayed when the file was opened.
+     *
+     * @return True if the document holds recovered edits.
+     */
+    public boolean isRecovered() {
+        return recovered;
+    }
 }
\ No newline at end of file
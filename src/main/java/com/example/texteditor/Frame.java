@@ -0,0 +1,280 @@
+package com.example.texteditor;
+
+import java.util.Arrays;
+
+/**
+ * Model of one screen of output: the chars on each row with the cells they take and their
+ * style, plus the cursor position. {@link Terminal} lays every refresh out into a frame and
+ * compares it with the frame on screen, so only the rows and spans that changed are sent.
+ * <p>
+ * Each row is filled left to right and is blank after its last char. Rows never wrap; the
+ * terminal lays wrapped lines out over several rows itself. When the rows at the top of the
+ * screen have moved up or down as a block, as they do when the view scrolls, the terminal is
+ * told to scroll them and only the rows uncovered are drawn.
+ */
+final class Frame {
+
+    static final int DEFAULT_STYLE = 0;
+
+    private final int rows, columns;
+    private final int scrollRows;     // Rows [0, scrollRows) scroll together
+    private final int[][] chars;      // Chars of each row, in screen order
+    private final byte[][] widths;    // Number of cells taken by each char
+    private final int[][] styles;     // Style of each char, see style(int, int)
+    private final int[] lengths;      // Number of chars in each row
+    private final int[] rowWidths;    // Number of cells used in each row
+    private final int[] hashes;       // Hash of the chars and styles of each row
+    private int cursorRow, cursorColumn;
+
+    /**
+     * Constructs a blank frame.
+     *
+     * @param rows       The number of rows on screen.
+     * @param columns    The number of columns on screen.
+     * @param scrollRows The number of rows at the top of the screen that scroll together.
+     */
+    Frame(int rows, int columns, int scrollRows) {
+        this.rows = rows;
+        this.columns = columns;
+        this.scrollRows = scrollRows;
+        this.chars = new int[rows][columns];
+        this.widths = new byte[rows][columns];
+        this.styles = new int[rows][columns];
+        this.lengths = new int[rows];
+        this.rowWidths = new int[rows];
+        this.hashes = new int[rows];
+    }
+
+    /**
+     * Packs SGR colors into a style.
+     *
+     * @param background The background color code, or 0 for the default background.
+     * @param foreground The foreground color code.
+     * @return The packed style.
+     */
+    static int style(int background, int foreground) {
+        return background << 8 | foreground;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Blanks every row.
+     */
+    void clear() {
+        Arrays.fill(lengths, 0);
+        Arrays.fill(rowWidths, 0);
+        Arrays.fill(hashes, 0);
+        cursorRow = 0;
+        cursorColumn = 0;
+    }
+
+    /**
+     * Appends a char to a row. Chars that would not fit in the row are dropped.
+     *
+     * @param row   The row index.
+     * @param c     The char.
+     * @param width The number of cells it takes; 0 for a char that combines with the one before.
+     * @param style The style to draw it in.
+     */
+    void put(int row, int c, int width, int style) {
+        if (row < 0 || row >= rows || rowWidths[row] + width > columns) {
+            return;
+        }
+        int length = lengths[row];
+        if (length == chars[row].length) {
+            chars[row] = Arrays.copyOf(chars[row], length * 2);
+            widths[row] = Arrays.copyOf(widths[row], length * 2);
+            styles[row] = Arrays.copyOf(styles[row], length * 2);
+        }
+        chars[row][length] = c;
+        widths[row][length] = (byte) width;
+        styles[row][length] = style;
+        lengths[row] = length + 1;
+        rowWidths[row] += width;
+        hashes[row] = (hashes[row] * 31 + c) * 31 + style;
+    }
+
+    /**
+     * Sets the cursor position.
+     *
+     * @param row    The 0-based row.
+     * @param column The 0-based column.
+     */
+    void setCursor(int row, int column) {
+        cursorRow = row;
+        cursorColumn = column;
+    }
+
+    /**
+     * Appends the escape sequences that turn the previous frame into this one.
+     *
+     * @param previous The frame on screen, or null if what is on screen is unknown.
+     * @param out      The writer to append to.
+     */
+    void writeDiff(Frame previous, FrameWriter out) {
+        if (previous == null || previous.rows != rows || previous.columns != columns || previous.scrollRows != scrollRows) {
+            out.append("\033[2J");
+            for (int row = 0; row < rows; row++) {
+                appendSpan(out, row, 0, lengths[row], false);
+            }
+        } else {
+            int shift = findShift(previous);
+            if (shift != 0) {
+                // Set the scrolling region, scroll it, then reset the region
+                out.append("\033[1;").append(scrollRows).append('r');
+                out.append("\033[").append(Math.abs(shift)).append(shift > 0 ? 'S' : 'T');
+                out.append("\033[r");
+            }
+            for (int row = 0; row < rows; row++) {
+                int source = row;
+                if (row < scrollRows) {
+                    source = row + shift >= 0 && row + shift < scrollRows ? row + shift : -1;
+                }
+                writeRowDiff(previous, row, source, out);
+            }
+        }
+        appendPosition(out, cursorRow, cursorColumn);
+    }
+
+    /**
+     * Finds how many rows the scrolling rows have moved since the previous frame.
+     *
+     * @return The number of rows moved up, negative if moved down, or 0 if not scrolling pays off.
+     */
+    private int findShift(Frame previous) {
+        int best = 0;
+        int bestMatches = countMatches(previous, 0);
+        for (int k = 1; k < scrollRows - bestMatches; k++) {
+            for (int shift = -k; shift <= k; shift += 2 * k) {
+                int matches = countMatches(previous, shift);
+                if (matches > bestMatches) {
+                    best = shift;
+                    bestMatches = matches;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Counts the non-blank scrolling rows that would be unchanged after scrolling by a shift.
+     */
+    private int countMatches(Frame previous, int shift) {
+        int matches = 0;
+        for (int row = Math.max(0, -shift); row < Math.min(scrollRows, scrollRows - shift); row++) {
+            int source = row + shift;
+            if (lengths[row] > 0 && hashes[row] == previous.hashes[source] && lengths[row] == previous.lengths[source]) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Appends what is needed to turn a row of the previous frame into a row of this one.
+     *
+     * @param source The row of the previous frame now on screen at this row, or -1 if it is blank.
+     */
+    private void writeRowDiff(Frame previous, int row, int source, FrameWriter out) {
+        int length = lengths[row];
+        int previousLength = source < 0 ? 0 : previous.lengths[source];
+        int common = Math.min(length, previousLength);
+        int start = 0;
+        while (start < common && sameChar(previous, row, source, start)) {
+            start++;
+        }
+        if (start == length && start == previousLength) {
+            return;
+        }
+        // Redraw combining chars together with the char they combine with
+        while (start > 0 && (start < length && widths[row][start] == 0
+                || start < previousLength && previous.widths[source][start] == 0)) {
+            start--;
+        }
+        int end = length;
+        if (length == previousLength) {
+            end = trimCommonSuffix(previous, row, source, start);
+        }
+        appendSpan(out, row, start, end, rowWidths[row] < (source < 0 ? 0 : previous.rowWidths[source]));
+    }
+
+    /**
+     * Finds where the changed span of a row ends when both frames have the same number of
+     * chars in it. The unchanged tail is kept only if it starts at the same column in both.
+     */
+    private int trimCommonSuffix(Frame previous, int row, int source, int start) {
+        int length = lengths[row];
+        int end = length;
+        while (end > start && sameChar(previous, row, source, end - 1)) {
+            end--;
+        }
+        while (end < length && widths[row][end] == 0) {
+            end++;
+        }
+        int width = 0, previousWidth = 0;
+        for (int i = start; i < end; i++) {
+            width += widths[row][i];
+            previousWidth += previous.widths[source][i];
+        }
+        return width == previousWidth ? end : length;
+    }
+
+    private boolean sameChar(Frame previous, int row, int source, int i) {
+        return chars[row][i] == previous.chars[source][i] && styles[row][i] == previous.styles[source][i];
+    }
+
+    /**
+     * Appends the chars [start, end) of a row, optionally clearing the rest of the row.
+     */
+    private void appendSpan(FrameWriter out, int row, int start, int end, boolean clearTail) {
+        if (start == end && !clearTail) {
+            return;
+        }
+        appendPosition(out, row, columnOf(row, start));
+        int style = DEFAULT_STYLE;
+        for (int i = start; i < end; i++) {
+            if (styles[row][i] != style) {
+                style = styles[row][i];
+                appendStyle(out, style);
+            }
+            out.append((char) chars[row][i]);
+        }
+        if (style != DEFAULT_STYLE) {
+            appendStyle(out, DEFAULT_STYLE);
+        }
+        if (clearTail) {
+            out.append("\033[K");
+        }
+    }
+
+    private int columnOf(int row, int index) {
+        int column = 0;
+        for (int i = 0; i < index; i++) {
+            column += widths[row][i];
+        }
+        return column;
+    }
+
+    private static void appendPosition(FrameWriter out, int row, int column) {
+        out.append("\033[").append(row + 1).append(';').append(column + 1).append('H');
+    }
+
+    private static void appendStyle(FrameWriter out, int style) {
+        out.append("\033[0");
+        if (style != DEFAULT_STYLE) {
+            int background = style >>> 8;
+            if (background != 0) {
+                out.append(';').append(background);
+            }
+            out.append(';').append(style & 0xFF);
+        }
+        out.append('m');
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.texteditor;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Encodes the output of a frame into a reusable direct buffer and sends it to the terminal
+ * with a single write. Chars are encoded to UTF-8 and numbers to ASCII digits by hand, so
+ * once the buffer has grown to fit a frame, writing one allocates nothing.
+ */
+final class FrameWriter {
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+    private char highSurrogate;      // First half of a surrogate pair waiting for its second half
+
+    /**
+     * Constructs a writer that sends frames to a channel.
+     *
+     * @param channel The channel to write to.
+     */
+    FrameWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Constructs a writer that sends frames straight to standard output, bypassing
+     * {@link System#out}.
+     *
+     * @return The writer.
+     */
+    static FrameWriter toStandardOutput() {
+        return new FrameWriter(new FileOutputStream(FileDescriptor.out).getChannel());
+    }
+
+    /**
+     * Appends ASCII text, such as an escape sequence.
+     *
+     * @param ascii The text, which must only contain ASCII chars.
+     * @return This writer.
+     */
+    FrameWriter append(String ascii) {
+        ensureRemaining(ascii.length());
+        for (int i = 0; i < ascii.length(); i++) {
+            buffer.put((byte) ascii.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Appends a char, encoded to UTF-8. A surrogate pair is encoded once both halves have been
+     * appended; an unpaired surrogate is written as '?'.
+     *
+     * @param c The UTF-16 char.
+     * @return This writer.
+     */
+    FrameWriter append(char c) {
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                return appendCodePoint(Character.toCodePoint(high, c));
+            }
+            appendCodePoint('?');
+        }
+        if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+            return this;
+        }
+        return appendCodePoint(Character.isLowSurrogate(c) ? '?' : c);
+    }
+
+    /**
+     * Appends a number in decimal.
+     *
+     * @param number The number to append.
+     * @return This writer.
+     */
+    FrameWriter append(int number) {
+        long value = number;
+        if (value < 0) {
+            ensureRemaining(1);
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value; rest >= 10; rest /= 10) {
+            digits++;
+        }
+        ensureRemaining(digits);
+        int end = buffer.position() + digits;
+        for (int i = end - 1; i >= end - digits; i--) {
+            buffer.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(end);
+        return this;
+    }
+
+    private FrameWriter appendCodePoint(int codePoint) {
+        ensureRemaining(4);
+        if (codePoint < 0x80) {
+            buffer.put((byte) codePoint);
+        } else if (codePoint < 0x800) {
+            buffer.put((byte) (0xC0 | codePoint >> 6));
+            buffer.put((byte) (0x80 | codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            buffer.put((byte) (0xE0 | codePoint >> 12));
+            buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+            buffer.put((byte) (0x80 | codePoint & 0x3F));
+        } else {
+            buffer.put((byte) (0xF0 | codePoint >> 18));
+            buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+            buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+            buffer.put((byte) (0x80 | codePoint & 0x3F));
+        }
+        return this;
+    }
+
+    /**
+     * Grows the buffer if fewer than the given number of bytes are left, so a frame is always
+     * sent in one write.
+     */
+    private void ensureRemaining(int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+
+    /**
+     * Writes everything appended since the last flush and empties the buffer.
+     */
+    void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing output: " + e.getMessage());
+        }
+        buffer.clear();
+    }
+}
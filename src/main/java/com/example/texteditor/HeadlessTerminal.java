@@ -0,0 +1,257 @@
+package com.example.texteditor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+
+/**
+ * A terminal without a TTY, for running the editor's main loop from code. The window size is
+ * set by the caller, frames are drawn into a {@link ScreenGrid}, and keys are handed in one at
+ * a time by {@link #replay(byte[])}, each once the editor has finished with the one before.
+ * <p>
+ * The editor has finished with a key when it has taken every key sent and goes back to waiting
+ * for the next. The latency of a key runs from when the editor reads its bytes to the end of
+ * the last frame drawn before then. Char widths come from the built-in table, as on any
+ * terminal, so they are the same whatever the locale or platform.
+ */
+final class HeadlessTerminal extends Terminal {
+
+    private final ScreenGrid screen;
+    private volatile int windowRows, windowColumns;
+
+    private final Object lock = new Object();
+    private final InputStream input = new KeyStream();
+    private byte[] pending;             // Bytes of the key sent, until they are all read
+    private int pendingOffset;
+    private long sent, taken;           // Keys sent, and keys the editor has taken
+    private boolean idle;               // Whether the editor is waiting with every key taken
+    private boolean exited;
+    private long sentAt;                // When the editor read the key it is working on, 0 if none
+    private long lastFrameEnd;
+    private long latency;               // Latency of the last key finished
+    private int[] frameBytes = new int[1024];
+    private int frameCount;
+
+    /**
+     * Constructs a terminal with a blank screen.
+     *
+     * @param rows    The number of rows of the window, including the status bar.
+     * @param columns The number of columns of the window.
+     */
+    HeadlessTerminal(int rows, int columns) {
+        this(new ScreenGrid(rows, columns));
+    }
+
+    private HeadlessTerminal(ScreenGrid screen) {
+        super(screen);
+        this.screen = screen;
+        this.windowRows = screen.getRows();
+        this.windowColumns = screen.getColumns();
+    }
+
+    /**
+     * Gets the screen the frames are drawn on.
+     */
+    ScreenGrid getScreen() {
+        return screen;
+    }
+
+    /**
+     * Resizes the window and waits until the editor has redrawn for the new size.
+     *
+     * @param rows    The number of rows of the window, including the status bar.
+     * @param columns The number of columns of the window.
+     * @return The time taken to redraw in nanoseconds, or -1 if the editor has quit.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    long resize(int rows, int columns) throws InterruptedException {
+        synchronized (lock) {
+            awaitIdle();
+            if (exited) {
+                return -1;
+            }
+            windowRows = rows;
+            windowColumns = columns;
+            idle = false;
+            sentAt = System.nanoTime();
+        }
+        postRedraw();
+        synchronized (lock) {
+            awaitIdle();
+            return exited ? -1 : latency;
+        }
+    }
+
+    /**
+     * Sends the bytes of one key once the editor is waiting for keys, and waits until the
+     * editor has finished with it.
+     *
+     * @param key The bytes a terminal sends for the key; they must decode to exactly one key.
+     * @return The latency of the key in nanoseconds, or -1 if the editor has quit.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    long replay(byte[] key) throws InterruptedException {
+        synchronized (lock) {
+            awaitIdle();
+            if (exited) {
+                return -1;
+            }
+            pending = key;
+            pendingOffset = 0;
+            sent++;
+            idle = false;
+            lock.notifyAll();
+            awaitIdle();
+            return exited ? -1 : latency;
+        }
+    }
+
+    /**
+     * Waits until the editor is waiting for keys with none left to take, or has quit.
+     *
+     * @return True if the editor is still running.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    boolean awaitReady() throws InterruptedException {
+        synchronized (lock) {
+            awaitIdle();
+            return !exited;
+        }
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        while (!idle && !exited) {
+            lock.wait();
+        }
+    }
+
+    /**
+     * Gets the number of bytes sent for each frame drawn so far.
+     */
+    int[] getFrameBytes() {
+        synchronized (lock) {
+            return Arrays.copyOf(frameBytes, frameCount);
+        }
+    }
+
+    @Override
+    public void drawScreen(Document content, Cursor cursor) {
+        long before = screen.getBytesWritten();
+        super.drawScreen(content, cursor);
+        long end = System.nanoTime();
+        synchronized (lock) {
+            if (frameCount == frameBytes.length) {
+                frameBytes = Arrays.copyOf(frameBytes, frameCount * 2);
+            }
+            frameBytes[frameCount++] = (int) (screen.getBytesWritten() - before);
+            lastFrameEnd = end;
+        }
+    }
+
+    @Override
+    public int getKey() {
+        onWaiting();
+        int key = super.getKey();
+        synchronized (lock) {
+            taken++;
+        }
+        return key;
+    }
+
+    @Override
+    public boolean awaitKey(long millis) {
+        onWaiting();
+        return super.awaitKey(millis);
+    }
+
+    /**
+     * Called on the main loop's thread whenever it waits for keys. Once it has taken every key
+     * sent, the key it was working on is finished.
+     */
+    private void onWaiting() {
+        synchronized (lock) {
+            if (taken == sent && pending == null && !isKeyAvailable()) {
+                if (sentAt != 0) {
+                    latency = (lastFrameEnd > sentAt ? lastFrameEnd : System.nanoTime()) - sentAt;
+                    sentAt = 0;
+                }
+                idle = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    InputStream getInputStream() {
+        return input;
+    }
+
+    /**
+     * The stream the editor reads keys from, which blocks until a key is sent.
+     */
+    private final class KeyStream extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            synchronized (lock) {
+                try {
+                    while (pending == null) {
+                        lock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                if (pendingOffset == 0) {
+                    sentAt = System.nanoTime();
+                }
+                int count = Math.min(length, pending.length - pendingOffset);
+                System.arraycopy(pending, pendingOffset, buffer, offset, count);
+                pendingOffset += count;
+                if (pendingOffset == pending.length) {
+                    pending = null;
+                }
+                return count;
+            }
+        }
+    }
+
+    @Override
+    void initWindowSize() {
+        int rows = windowRows, columns = windowColumns;
+        if (rows != screen.getRows() || columns != screen.getColumns()) {
+            screen.resize(rows, columns);
+        }
+        setRows(rows - 2);
+        setColumns(columns);
+    }
+
+    @Override
+    void enableRawMode() {
+    }
+
+    @Override
+    void disableRawMode() {
+    }
+
+    @Override
+    void setLocale() {
+    }
+
+    /**
+     * Marks the editor as quit instead of ending the process, so the caller can report.
+     */
+    @Override
+    void exit() {
+        synchronized (lock) {
+            exited = true;
+            lock.notifyAll();
+        }
+    }
+}
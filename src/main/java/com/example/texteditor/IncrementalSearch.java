@@ -0,0 +1,135 @@
+package com.example.texteditor;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Finds the first match of a query as it is typed, reusing the matches of the query before.
+ * <p>
+ * Every match of a query that grew by a char is also a match of the shorter query, so the
+ * matches found for the shorter query are checked again instead of searching the document
+ * from the start. Each query typed keeps its matches on a stack, so backspace restores the
+ * earlier result without searching at all.
+ * <p>
+ * A result holds every match starting before its scan end, which is where searching stopped:
+ * just after the first match, plus a little further ahead so the next query has candidates to
+ * narrow. Only when none of them match does the search carry on from the scan end.
+ * Whole-word queries cannot be narrowed this way and are searched afresh as they grow.
+ */
+final class IncrementalSearch {
+
+    private static final int MAX_MATCHES = 1 << 12;
+    private static final long SCAN_AHEAD = 1 << 20;
+
+    private final TextSearch search = new TextSearch();
+    private final Deque<Result> results = new ArrayDeque<>();
+    private TrigramIndex index;
+    private boolean ignoreCase, wholeWord;
+
+    /**
+     * Gets the search set up for the last query, to find further matches with.
+     *
+     * @return The search.
+     */
+    TextSearch getSearch() {
+        return search;
+    }
+
+    /**
+     * Sets the index to narrow searches with.
+     *
+     * @param index The trigram index of the document, or null to always scan all of it.
+     */
+    void setIndex(TrigramIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Forgets all earlier queries, for when the document may have changed since.
+     */
+    void reset() {
+        results.clear();
+    }
+
+    /**
+     * Finds the first match of a query in a document.
+     *
+     * @param content    The document to search.
+     * @param query      The text to find.
+     * @param ignoreCase Whether ASCII letters match regardless of case.
+     * @param wholeWord  Whether matches must be whole words.
+     * @return The byte offset of the first match, or -1 if there is none.
+     */
+    long find(Document content, String query, boolean ignoreCase, boolean wholeWord) {
+        if (ignoreCase != this.ignoreCase || wholeWord != this.wholeWord) {
+            results.clear();
+            this.ignoreCase = ignoreCase;
+            this.wholeWord = wholeWord;
+        }
+        search.setQuery(query, ignoreCase, wholeWord);
+        if (index != null) {
+            search.setCandidates(index.getCandidates(content, query));
+        }
+        // Drop the results of queries that are not a start of this one, as after a backspace
+        while (!results.isEmpty() && !query.startsWith(results.peek().query)) {
+            results.pop();
+        }
+        if (query.isEmpty()) {
+            return -1;
+        }
+        Result previous = results.peek();
+        if (previous != null && previous.query.equals(query)) {
+            return previous.first();
+        }
+        Result result = new Result(query);
+        // A whole word that grew is no longer a whole word where the shorter one was
+        if (previous != null && !wholeWord) {
+            // Only the earlier matches can still match, and nothing before the earlier scan end
+            for (int i = 0; i < previous.count; i++) {
+                if (search.matchesAt(content, previous.matches[i])) {
+                    result.matches[result.count++] = previous.matches[i];
+                }
+            }
+            result.scanEnd = previous.scanEnd;
+        }
+        if (result.count == 0) {
+            scan(content, result);
+        }
+        result.matches = Arrays.copyOf(result.matches, result.count);
+        results.push(result);
+        return result.first();
+    }
+
+    /**
+     * Searches on from the scan end of a result that has no matches yet, up to the first match
+     * and then a little further.
+     */
+    private void scan(Document content, Result result) {
+        result.count = search.findAll(content, result.scanEnd, Long.MAX_VALUE, result.matches, 0, 1);
+        result.scanEnd = search.getScanEnd();
+        if (result.count > 0) {
+            result.count += search.findAll(content, result.scanEnd, result.scanEnd + SCAN_AHEAD,
+                                           result.matches, 1, MAX_MATCHES - 1);
+            result.scanEnd = search.getScanEnd();
+        }
+    }
+
+    /**
+     * The matches of one query, complete for every offset before the scan end.
+     */
+    private static final class Result {
+        final String query;
+        long[] matches = new long[MAX_MATCHES];
+        int count;
+        long scanEnd;
+
+        Result(String query) {
+            this.query = query;
+        }
+
+        long first() {
+            return count > 0 ? matches[0] : -1;
+        }
+    }
+}
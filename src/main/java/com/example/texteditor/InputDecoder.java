@@ -0,0 +1,392 @@
+package com.example.texteditor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads the bytes sent by the terminal into a ring buffer and turns them into a queue of key
+ * events, so that every key in a read is handled, however many arrived together.
+ * <p>
+ * Escape sequences become the editor's key codes and control bytes become keys of their own.
+ * A run of printable bytes becomes one text event, decoded from UTF-8 as it is read. Its key
+ * is its first byte if that is an ASCII char, and U+FFFD otherwise, which is printable and
+ * clear of the key codes, so text is never taken for a key or for the end of input.
+ * Malformed bytes decode to U+FFFD. Only the bytes of an
+ * escape sequence or a char still being received are carried from one read to the next, and
+ * nothing is allocated once the buffers have grown to fit the keys typed.
+ * <p>
+ * Text pasted while bracketed paste mode is on comes between ESC [ 200 ~ and ESC [ 201 ~, and
+ * becomes a single paste event however many reads it takes. Its bytes are kept as they are,
+ * except that its line breaks are turned into line feeds.
+ */
+final class InputDecoder {
+
+    private static final int ESC = 27;
+    private static final int RING_SIZE = 1 << 15;
+    private static final int MASK = RING_SIZE - 1;
+    private static final int MAX_PENDING = 32;      // Longest escape sequence waited for
+    private static final int SHRINK_SIZE = 1 << 16;
+    private static final byte[] PASTE_END = {ESC, '[', '2', '0', '1', '~'};
+
+    private final byte[] ring = new byte[RING_SIZE];
+    private int start, end;                         // Bytes [start, end) are read but not decoded
+
+    private int[] keys = new int[64];
+    private int[] textStarts = new int[64];         // Where the chars or bytes of each event start
+    private int[] textLengths = new int[64];        // Their number, 0 for a key
+    private int head, tail;                         // Events [head, tail) are queued
+    private int currentStart, currentLength;        // Text of the event taken last
+
+    private char[] chars = new char[256];           // Chars of the queued text events
+    private int charCount;
+    private int codePoint, needed, minimum;         // Char being decoded and the bytes it needs
+
+    private byte[] pasted = new byte[256];          // Bytes of the queued paste events
+    private int pastedCount;
+    private boolean pasting;                        // Whether the bytes read are pasted text
+    private int pasteStart;                         // Where the text being pasted starts
+    private boolean pasteCr;                        // Whether the last byte pasted was a CR
+
+    /**
+     * Reads from a stream once, blocking until some bytes arrive, and decodes what it can.
+     *
+     * @param in The stream to read.
+     * @return The number of bytes read, or -1 at the end of the stream.
+     * @throws IOException if the stream cannot be read.
+     */
+    int read(InputStream in) throws IOException {
+        if (start == end) {
+            start = end = 0;
+        }
+        int position = end & MASK;
+        int count = in.read(ring, position, Math.min(RING_SIZE - (end - start), RING_SIZE - position));
+        if (count > 0) {
+            end += count;
+            decode();
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether there is a key event left.
+     *
+     * @return True if {@link #next()} has an event to return.
+     */
+    boolean hasNext() {
+        return head < tail;
+    }
+
+    /**
+     * Takes the next key event.
+     *
+     * @return The key code, the first byte of a text event, or {@link TextEditor#PASTE}.
+     */
+    int next() {
+        currentStart = textStarts[head];
+        currentLength = textLengths[head];
+        return keys[head++];
+    }
+
+    /**
+     * Gets the chars of the queued text events; those of the text event taken last start at
+     * {@link #getTextStart()}.
+     */
+    char[] getChars() {
+        return chars;
+    }
+
+    /**
+     * Gets the bytes of the queued paste events; those of the paste event taken last start at
+     * {@link #getTextStart()}.
+     */
+    byte[] getPasted() {
+        return pasted;
+    }
+
+    int getTextStart() {
+        return currentStart;
+    }
+
+    /**
+     * Gets the length of the text of the event taken last.
+     *
+     * @return The number of chars of a text event or bytes of a paste event, 0 for a key.
+     */
+    int getTextLength() {
+        return currentLength;
+    }
+
+    /**
+     * Decodes the bytes read so far into key events, up to an escape sequence the read ended
+     * in the middle of.
+     */
+    private void decode() {
+        if (head == tail && !pasting) {
+            head = tail = charCount = pastedCount = 0;
+            if (pasted.length > SHRINK_SIZE) {
+                pasted = new byte[256];     // Let go of a big paste
+            }
+        }
+        int i = start;
+        while (i != end) {
+            int b = at(i);
+            int next;
+            if (pasting) {
+                next = decodePaste(i);
+            } else if (isText(b)) {
+                next = decodeText(i);
+            } else {
+                needed = 0;     // A char cut short by a key is dropped
+                if (b == ESC) {
+                    next = decodeEscape(i);
+                } else {
+                    add(b);
+                    next = i + 1;
+                }
+            }
+            if (next == i) {
+                break;
+            }
+            i = next;
+        }
+        start = i;
+    }
+
+    private int at(int i) {
+        return ring[i & MASK] & 0xFF;
+    }
+
+    private static boolean isText(int b) {
+        return b >= 0x20 && b != 0x7F;
+    }
+
+    /**
+     * Decodes a run of printable bytes into chars. A char whose bytes have not all been read
+     * yet is finished with the next read.
+     *
+     * @return The index after the run.
+     */
+    private int decodeText(int i) {
+        int key = at(i) < 0x80 ? at(i) : 0xFFFD;
+        int first = charCount;
+        for (; i != end && isText(at(i)); i++) {
+            int b = at(i);
+            if (needed > 0) {
+                if ((b & 0xC0) == 0x80) {
+                    codePoint = codePoint << 6 | b & 0x3F;
+                    if (--needed == 0) {
+                        boolean valid = codePoint >= minimum && codePoint <= Character.MAX_CODE_POINT
+                                && (codePoint < Character.MIN_SURROGATE || codePoint > Character.MAX_SURROGATE);
+                        addChar(valid ? codePoint : 0xFFFD);
+                    }
+                    continue;
+                }
+                needed = 0;
+                addChar(0xFFFD);    // The char ended early; this byte starts another
+            }
+            if (b < 0x80) {
+                addChar(b);
+            } else if ((b & 0xE0) == 0xC0) {
+                codePoint = b & 0x1F;
+                needed = 1;
+                minimum = 0x80;
+            } else if ((b & 0xF0) == 0xE0) {
+                codePoint = b & 0x0F;
+                needed = 2;
+                minimum = 0x800;
+            } else if ((b & 0xF8) == 0xF0) {
+                codePoint = b & 0x07;
+                needed = 3;
+                minimum = 0x10000;
+            } else {
+                addChar(0xFFFD);
+            }
+        }
+        if (needed > 0 && i != end) {
+            needed = 0;
+            addChar(0xFFFD);        // A key came before the rest of the char
+        }
+        if (charCount > first) {
+            addEvent(key, first, charCount - first);
+        }
+        return i;
+    }
+
+    private void addChar(int c) {
+        if (chars.length - charCount < 2) {
+            chars = Arrays.copyOf(chars, chars.length * 2);
+        }
+        charCount += Character.toChars(c, chars, charCount);
+    }
+
+    /**
+     * Decodes the escape sequence starting at an index.
+     *
+     * @return The index after the sequence, or the index itself if the read ended in the
+     *         middle of it.
+     */
+    private int decodeEscape(int i) {
+        int available = end - i;
+        if (available == 1) {
+            add(ESC);   // A lone escape is the key itself
+            return i + 1;
+        }
+        int second = at(i + 1);
+        if (second == '[') {
+            // Control sequence: parameter and intermediate bytes, then a final byte
+            int j = i + 2;
+            while (j != end && at(j) >= 0x20 && at(j) <= 0x3F) {
+                j++;
+            }
+            if (j == end) {
+                return available <= MAX_PENDING ? i : abandon(i);
+            }
+            int last = at(j);
+            if (last < 0x40 || last > 0x7E) {
+                return abandon(i);
+            }
+            addControlSequence(i + 2, j, last);
+            return j + 1;
+        }
+        if (second == 'O') {
+            if (available == 2) {
+                return i;
+            }
+            addKey(at(i + 2), false);
+            return i + 3;
+        }
+        add(ESC);   // Escape typed just before another key, or Alt with a key
+        return i + 1;
+    }
+
+    /**
+     * Adds the pasted bytes from an index up to the end of the paste or of the read, and the
+     * paste event once its end is found.
+     *
+     * @return The index after the bytes decoded, which is left at a cut off end of the paste.
+     */
+    private int decodePaste(int i) {
+        for (int j = i; j != end; j++) {
+            if (at(j) == ESC) {
+                int n = Math.min(PASTE_END.length, end - j);
+                if (regionMatches(j, PASTE_END, n)) {
+                    addPasted(i, j);
+                    if (n < PASTE_END.length) {
+                        return j;
+                    }
+                    pasting = false;
+                    addEvent(TextEditor.PASTE, pasteStart, pastedCount - pasteStart);
+                    return j + n;
+                }
+            }
+        }
+        addPasted(i, end);
+        return end;
+    }
+
+    private boolean regionMatches(int from, byte[] expected, int length) {
+        for (int k = 0; k < length; k++) {
+            if (at(from + k) != expected[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds pasted bytes, turning CR and CR LF into LF.
+     */
+    private void addPasted(int from, int to) {
+        if (pasted.length - pastedCount < to - from) {
+            pasted = Arrays.copyOf(pasted, (int) Math.min(Math.max((long) pastedCount + to - from, pasted.length * 2L), Integer.MAX_VALUE - 8));
+        }
+        for (int k = from; k != to; k++) {
+            byte b = ring[k & MASK];
+            if (b == '\n' && pasteCr) {
+                pasteCr = false;
+                continue;
+            }
+            pasteCr = b == '\r';
+            pasted[pastedCount++] = pasteCr ? (byte) '\n' : b;
+        }
+    }
+
+    /**
+     * Gives up on a malformed sequence, taking its escape as the key and the rest as typed.
+     */
+    private int abandon(int i) {
+        add(ESC);
+        return i + 1;
+    }
+
+    /**
+     * Adds the key a control sequence stands for; sequences for other keys are dropped.
+     *
+     * @param from The index of its first parameter byte.
+     * @param to   The index of its final byte.
+     */
+    private void addControlSequence(int from, int to, int last) {
+        int number = 0;
+        boolean modified = false;
+        for (int k = from; k != to; k++) {
+            int b = at(k);
+            if (b == ';') {
+                modified = true;
+                break;
+            }
+            if (b >= '0' && b <= '9') {
+                number = number * 10 + b - '0';
+            }
+        }
+        if (last != '~') {
+            addKey(last, modified);
+            return;
+        }
+        switch (number) {
+            case 1: case 7: add(TextEditor.HOME); break;
+            case 3: add(TextEditor.DEL); break;
+            case 4: case 8: add(TextEditor.END); break;
+            case 5: add(TextEditor.PAGE_UP); break;
+            case 6: add(TextEditor.PAGE_DOWN); break;
+            case 200:
+                pasting = true;
+                pasteStart = pastedCount;
+                pasteCr = false;
+                break;
+            default: break;
+        }
+    }
+
+    /**
+     * Adds the key of a cursor key sequence. With a modifier such as Ctrl, up and down page
+     * and left and right go to the start and end of the line.
+     */
+    private void addKey(int last, boolean modified) {
+        switch (last) {
+            case 'A': add(modified ? TextEditor.PAGE_UP : TextEditor.ARROW_UP); break;
+            case 'B': add(modified ? TextEditor.PAGE_DOWN : TextEditor.ARROW_DOWN); break;
+            case 'C': add(modified ? TextEditor.END : TextEditor.ARROW_RIGHT); break;
+            case 'D': add(modified ? TextEditor.HOME : TextEditor.ARROW_LEFT); break;
+            case 'F': add(TextEditor.END); break;
+            case 'H': add(TextEditor.HOME); break;
+            default: break;
+        }
+    }
+
+    private void add(int key) {
+        addEvent(key, 0, 0);
+    }
+
+    private void addEvent(int key, int textStart, int textLength) {
+        if (tail == keys.length) {
+            keys = Arrays.copyOf(keys, tail * 2);
+            textStarts = Arrays.copyOf(textStarts, tail * 2);
+            textLengths = Arrays.copyOf(textLengths, tail * 2);
+        }
+        keys[tail] = key;
+        textStarts[tail] = textStart;
+        textLengths[tail] = textLength;
+        tail++;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.texteditor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands key events from the thread reading the terminal to the main loop without locks.
+ * <p>
+ * The queue is a ring of slots written by a single producer and read by a single consumer.
+ * Each side owns its index and publishes it with an ordered write, which makes the slots it
+ * filled or emptied visible to the other side. The text of a typed key is copied into a
+ * reused builder of its slot, so passing a key allocates nothing. The consumer parks while the
+ * queue is empty, and is woken by the next key or by a redraw posted from any thread.
+ */
+final class InputQueue {
+
+    private static final int CAPACITY = 1 << 10;
+    private static final int MASK = CAPACITY - 1;
+    private static final long FULL_WAIT_NANOS = 1_000_000;
+
+    private final int[] keys = new int[CAPACITY];
+    private final StringBuilder[] texts = new StringBuilder[CAPACITY];
+    private final byte[][] pastes = new byte[CAPACITY][];
+    private final AtomicLong head = new AtomicLong();   // Next slot to take, written by the consumer
+    private final AtomicLong tail = new AtomicLong();   // Next slot to fill, written by the producer
+    private volatile Thread consumer;                   // Thread waiting for keys
+    private volatile boolean redrawPosted;
+    private volatile boolean closed;
+    private byte[] pasted;                              // Bytes of the paste taken last
+
+    /**
+     * Constructs an empty queue.
+     */
+    InputQueue() {
+        for (int i = 0; i < CAPACITY; i++) {
+            texts[i] = new StringBuilder();
+        }
+    }
+
+    /**
+     * Adds a key, waiting while the queue is full. Only called by the producer.
+     *
+     * @param key    The key code.
+     * @param chars  The chars holding the text of a typed key.
+     * @param start  The index of the first char of the text.
+     * @param length The number of chars of the text, 0 if the key has none.
+     * @param paste  The bytes of a paste, or null.
+     */
+    void put(int key, char[] chars, int start, int length, byte[] paste) {
+        long t = tail.get();
+        while (t - head.get() == CAPACITY) {
+            LockSupport.parkNanos(this, FULL_WAIT_NANOS);   // The main loop is behind
+        }
+        int slot = (int) t & MASK;
+        keys[slot] = key;
+        texts[slot].setLength(0);
+        texts[slot].append(chars, start, length);
+        pastes[slot] = paste;
+        tail.set(t + 1);     // A full write, so the consumer is read after it below
+        wakeUp();
+    }
+
+    /**
+     * Marks the end of the input. Only called by the producer.
+     */
+    void close() {
+        closed = true;
+        wakeUp();
+    }
+
+    /**
+     * Asks the consumer to redraw the screen. May be called from any thread.
+     */
+    void postRedraw() {
+        redrawPosted = true;
+        wakeUp();
+    }
+
+    private void wakeUp() {
+        Thread waiting = consumer;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+    }
+
+    /**
+     * Checks whether a key can be taken without waiting.
+     *
+     * @return True if the queue holds a key or the input has ended.
+     */
+    boolean isReady() {
+        return head.get() != tail.get() || closed;
+    }
+
+    /**
+     * Waits until a key can be taken, a redraw is posted or the time is up, and clears the
+     * posted redraw.
+     *
+     * @param nanos The longest time to wait.
+     * @return True if a key can be taken.
+     */
+    boolean await(long nanos) {
+        if (!isReady() && !redrawPosted) {
+            consumer = Thread.currentThread();
+            long begin = System.nanoTime();
+            for (long left = nanos; !isReady() && !redrawPosted && left > 0; left = nanos - (System.nanoTime() - begin)) {
+                LockSupport.parkNanos(this, left);
+            }
+        }
+        redrawPosted = false;
+        return isReady();
+    }
+
+    /**
+     * Takes the next key, which must be ready.
+     *
+     * @param text Receives the text of a typed key, and is cleared once the input has ended.
+     * @return The key code, or {@link TextEditor#END_OF_INPUT} if the input has ended.
+     */
+    int take(StringBuilder text) {
+        long h = head.get();
+        if (h == tail.get()) {
+            text.setLength(0);
+            pasted = null;
+            return TextEditor.END_OF_INPUT;
+        }
+        int slot = (int) h & MASK;
+        int key = keys[slot];
+        if (texts[slot].length() > 0) {
+            text.setLength(0);
+            text.append(texts[slot]);
+        }
+        pasted = pastes[slot];
+        pastes[slot] = null;
+        head.lazySet(h + 1);
+        return key;
+    }
+
+    /**
+     * Gets the bytes of the paste taken last.
+     *
+     * @return The pasted bytes, or null if the key taken last was not a paste.
+     */
+    byte[] getPasted() {
+        return pasted;
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.texteditor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Replays a script of keys through the editor's main loop on a {@link HeadlessTerminal}, and
+ * reports the latency of the keys and the bytes sent for each frame, so a scenario such as
+ * opening a big file, paging through it, finding, typing and saving can be timed without a
+ * terminal, for example in CI.
+ * <p>
+ * Each line of the script is a key, optionally followed by how many times to press it:
+ * {@code UP}, {@code DOWN}, {@code LEFT}, {@code RIGHT}, {@code HOME}, {@code END},
+ * {@code PAGE_UP}, {@code PAGE_DOWN}, {@code DEL}, {@code ENTER}, {@code BACKSPACE},
+ * {@code ESC} or {@code CTRL+<letter>}. {@code TYPE <text>} types the text a char at a time,
+ * {@code PASTE <text>} pastes it at once, and in both {@code \n} is a line break and
+ * {@code \\} a backslash. {@code RESIZE <rows> <columns>} resizes the window. Blank lines
+ * and lines starting with {@code #} are skipped.
+ * <p>
+ * Usage: {@code KeyReplay [--rows N] [--columns N] [--max-p99 MS] [--screen] <script> [file]}.
+ * With {@code --max-p99} the exit status is 1 if the 99th percentile latency is over the
+ * limit; {@code --screen} prints the screen as it is at the end.
+ */
+public final class KeyReplay {
+
+    private static final long NANOS_PER_MILLI = 1_000_000;
+
+    private final List<String> names = new ArrayList<>();      // Name of each step, for the report
+    private final List<byte[]> keys = new ArrayList<>();        // Bytes of each key, null for a resize
+    private final List<int[]> sizes = new ArrayList<>();        // Window size of each resize
+    private final List<Integer> lineNumbers = new ArrayList<>(); // Script line of each step
+
+    private KeyReplay() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = 24, columns = 80;
+        double maxP99 = -1;
+        boolean printScreen = false;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rows": rows = Integer.parseInt(args[++i]); break;
+                case "--columns": columns = Integer.parseInt(args[++i]); break;
+                case "--max-p99": maxP99 = Double.parseDouble(args[++i]); break;
+                case "--screen": printScreen = true; break;
+                default: files.add(args[i]);
+            }
+        }
+        if (files.isEmpty() || files.size() > 2) {
+            System.err.println("Usage: KeyReplay [--rows N] [--columns N] [--max-p99 MS] [--screen] <script> [file]");
+            System.exit(2);
+        }
+        KeyReplay replay = new KeyReplay();
+        try {
+            replay.parse(Files.readAllLines(Paths.get(files.get(0)), StandardCharsets.UTF_8));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error reading script '" + files.get(0) + "': " + e.getMessage());
+            System.exit(2);
+        }
+        String[] editorArgs = files.size() == 2 ? new String[] { files.get(1) } : new String[0];
+        boolean withinLimit = replay.run(editorArgs, rows, columns, maxP99, printScreen);
+        System.exit(withinLimit ? 0 : 1);
+    }
+
+    /**
+     * Parses the lines of a script into steps.
+     *
+     * @throws IllegalArgumentException if a line is not a step.
+     */
+    private void parse(List<String> lines) {
+        for (int n = 0; n < lines.size(); n++) {
+            String line = lines.get(n).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] words = line.split("\\s+", 2);
+            String name = words[0].toUpperCase(Locale.ROOT);
+            String rest = words.length > 1 ? words[1] : "";
+            try {
+                if (name.equals("TYPE")) {
+                    String text = unescape(rest);
+                    for (int i = 0; i < text.length(); i += Character.charCount(text.codePointAt(i))) {
+                        int c = text.codePointAt(i);
+                        addStep(c == '\n' ? "ENTER" : name, c == '\n' ? new byte[] { '\r' } : new String(Character.toChars(c)).getBytes(StandardCharsets.UTF_8), null, n + 1);
+                    }
+                } else if (name.equals("PASTE")) {
+                    addStep(name, ("\033[200~" + unescape(rest) + "\033[201~").getBytes(StandardCharsets.UTF_8), null, n + 1);
+                } else if (name.equals("RESIZE")) {
+                    String[] size = rest.split("\\s+");
+                    addStep(name, null, new int[] { Integer.parseInt(size[0]), Integer.parseInt(size[1]) }, n + 1);
+                } else {
+                    byte[] key = keyBytes(name);
+                    int count = rest.isEmpty() ? 1 : Integer.parseInt(rest);
+                    for (int i = 0; i < count; i++) {
+                        addStep(name, key, null, n + 1);
+                    }
+                }
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("line " + (n + 1) + ": " + lines.get(n), e);
+            }
+        }
+    }
+
+    private void addStep(String name, byte[] key, int[] size, int lineNumber) {
+        names.add(name);
+        keys.add(key);
+        sizes.add(size);
+        lineNumbers.add(lineNumber);
+    }
+
+    /**
+     * Gets the bytes a terminal sends for a named key.
+     */
+    private static byte[] keyBytes(String name) {
+        if (name.startsWith("CTRL+") && name.length() == 6 && name.charAt(5) >= 'A' && name.charAt(5) <= 'Z') {
+            return new byte[] { (byte) (name.charAt(5) & 0x1F) };
+        }
+        switch (name) {
+            case "UP": return "\033[A".getBytes(StandardCharsets.US_ASCII);
+            case "DOWN": return "\033[B".getBytes(StandardCharsets.US_ASCII);
+            case "RIGHT": return "\033[C".getBytes(StandardCharsets.US_ASCII);
+            case "LEFT": return "\033[D".getBytes(StandardCharsets.US_ASCII);
+            case "HOME": return "\033[H".getBytes(StandardCharsets.US_ASCII);
+            case "END": return "\033[F".getBytes(StandardCharsets.US_ASCII);
+            case "PAGE_UP": return "\033[5~".getBytes(StandardCharsets.US_ASCII);
+            case "PAGE_DOWN": return "\033[6~".getBytes(StandardCharsets.US_ASCII);
+            case "DEL": return "\033[3~".getBytes(StandardCharsets.US_ASCII);
+            case "ENTER": return new byte[] { '\r' };
+            case "BACKSPACE": return new byte[] { 127 };
+            case "ESC": return new byte[] { 27 };
+            default: throw new IllegalArgumentException("Unknown key " + name);
+        }
+    }
+
+    private static String unescape(String text) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char next = text.charAt(++i);
+                result.append(next == 'n' ? '\n' : next);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Runs the editor on a headless terminal, replays the steps and prints the report.
+     *
+     * @return False if the 99th percentile latency is over the limit.
+     */
+    private boolean run(String[] editorArgs, int rows, int columns, double maxP99, boolean printScreen) throws InterruptedException, IOException {
+        System.setIn(new ByteArrayInputStream(new byte[0]));     // Declines recovering a journal
+        HeadlessTerminal terminal = new HeadlessTerminal(rows, columns);
+        TextEditor editor = new TextEditor(terminal);
+        Thread thread = new Thread(() -> editor.run(editorArgs), "editor");
+        thread.setDaemon(true);
+        long start = System.nanoTime();
+        thread.start();
+        terminal.awaitReady();
+        long openTime = System.nanoTime() - start;
+
+        Map<String, Latencies> byName = new LinkedHashMap<>();
+        Latencies all = new Latencies();
+        int replayed = 0, slowest = -1;
+        long slowestLatency = -1;
+        for (int i = 0; i < names.size(); i++) {
+            long latency = keys.get(i) == null ? terminal.resize(sizes.get(i)[0], sizes.get(i)[1]) : terminal.replay(keys.get(i));
+            if (latency < 0) {
+                break;
+            }
+            if (latency > slowestLatency) {
+                slowest = i;
+                slowestLatency = latency;
+            }
+            all.add(latency);
+            byName.computeIfAbsent(names.get(i), name -> new Latencies()).add(latency);
+            replayed++;
+        }
+        long total = System.nanoTime() - start;
+
+        System.out.printf(Locale.ROOT, "Opened in %.1f ms, replayed %d of %d keys in %.1f ms%n", millis(openTime), replayed, names.size(), millis(total));
+        System.out.printf(Locale.ROOT, "%-12s %8s %10s %10s %10s%n", "Latency", "keys", "p50 ms", "p99 ms", "max ms");
+        all.print("all");
+        for (Map.Entry<String, Latencies> entry : byName.entrySet()) {
+            entry.getValue().print(entry.getKey());
+        }
+        if (slowest >= 0) {
+            System.out.printf(Locale.ROOT, "Slowest: %s on line %d of the script, %.3f ms%n", names.get(slowest), lineNumbers.get(slowest), millis(slowestLatency));
+        }
+        int[] frameBytes = terminal.getFrameBytes();
+        long sum = 0;
+        for (int bytes : frameBytes) {
+            sum += bytes;
+        }
+        Arrays.sort(frameBytes);
+        System.out.printf(Locale.ROOT, "Bytes per frame: %d frames, p50 %d, p99 %d, max %d, total %d%n", frameBytes.length,
+                frameBytes[rank(frameBytes.length, 0.5)], frameBytes[rank(frameBytes.length, 0.99)], frameBytes[rank(frameBytes.length, 1)], sum);
+        if (printScreen) {
+            System.out.print(terminal.getScreen());
+        }
+        if (editorArgs.length == 1) {
+            Files.deleteIfExists(EditJournal.pathFor(Paths.get(editorArgs[0]).toAbsolutePath()));
+        }
+        double p99 = millis(all.percentile(0.99));
+        if (maxP99 >= 0 && p99 > maxP99) {
+            System.out.printf(Locale.ROOT, "p99 latency %.3f ms is over the limit of %.3f ms%n", p99, maxP99);
+            return false;
+        }
+        return true;
+    }
+
+    private static double millis(long nanos) {
+        return (double) nanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Gets the index of a percentile in sorted values, by the nearest rank.
+     */
+    private static int rank(int count, double fraction) {
+        return Math.max((int) Math.ceil(fraction * count) - 1, 0);
+    }
+
+    /**
+     * The latencies of a kind of key.
+     */
+    private static final class Latencies {
+
+        private long[] values = new long[256];
+        private int count;
+        private boolean sorted;
+
+        void add(long latency) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = latency;
+            sorted = false;
+        }
+
+        long percentile(double fraction) {
+            if (count == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(values, 0, count);
+                sorted = true;
+            }
+            return values[rank(count, fraction)];
+        }
+
+        void print(String name) {
+            System.out.printf(Locale.ROOT, "%-12s %8d %10.3f %10.3f %10.3f%n", name, count,
+                    millis(percentile(0.5)), millis(percentile(0.99)), millis(percentile(1)));
+        }
+    }
+}
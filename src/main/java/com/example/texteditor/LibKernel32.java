@@ -26,6 +26,7 @@ interface LibKernel32 extends Library {
     static final long ENABLE_VIRTUAL_TERMINAL_INPUT = 0x0200;
     static final long ENABLE_PROCESSED_OUTPUT = 0x0001;
     static final long ENABLE_VIRTUAL_TERMINAL_PROCESSING = 0x0004;
+    static final int CP_UTF8 = 65001;
 
     /**
      * Structure representing console screen buffer information.
@@ -89,5 +90,18 @@ interface LibKernel32 extends Library {
      */
     boolean GetConsoleScreenBufferInfo(Pointer hConsoleOutput, ConsoleScreenBufferInfo csbiInfo);
 
+    /**
+     * Retrieves the code page used to translate console output.
+     * @return The identifier of the output code page.
+     */
+    int GetConsoleOutputCP();
+
+    /**
+     * Sets the code page used to translate console output.
+     * @param wCodePageID The identifier of the code page, e.g. CP_UTF8.
+     * @return True if successful, false otherwise.
+     */
+    boolean SetConsoleOutputCP(int wCodePageID);
+
     boolean SetThreadLocale(int Locale);
 }
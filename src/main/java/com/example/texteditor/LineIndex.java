@@ -0,0 +1,271 @@
+package com.example.texteditor;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorted offsets of the line feed bytes in a {@link TextSource}, stored in compact long arrays.
+ * Lets a {@link PieceTable} count and locate line breaks inside a piece with a binary search
+ * instead of scanning its bytes.
+ * <p>
+ * The offsets are split into segments that each cover a fixed span of the source, so a large
+ * source can be indexed in parallel. Segments are published as they finish, and the contiguous
+ * prefix of published segments can be queried while the rest is still being indexed.
+ */
+final class LineIndex {
+
+    static final int SEGMENT_SHIFT = 22;                   // Each segment covers 4 MiB of text
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+    private long[][] segments;      // Line feed offsets of each segment
+    private int[] counts;           // Number of line feeds in each segment
+    private int[] before;           // Number of line feeds in all preceding segments
+    private int segmentCount;       // Number of segments covering the source
+    private int finishedSegments;   // Number of segments indexed so far, in any order
+
+    private volatile int readySegments;   // Segments [0, readySegments) are indexed and queryable
+    private volatile boolean complete;
+
+    /**
+     * Constructs an empty index that grows as ranges are scanned.
+     */
+    LineIndex() {
+        this(0);
+        this.complete = true;
+    }
+
+    private LineIndex(int segmentCount) {
+        int capacity = Math.max(segmentCount, 1);
+        this.segments = new long[capacity][];
+        this.counts = new int[capacity];
+        this.before = new int[capacity];
+        this.segmentCount = segmentCount;
+    }
+
+    /**
+     * Builds the index of a whole source, blocking until it is complete.
+     *
+     * @param source The source to scan.
+     * @return The index of the line feeds in the source.
+     */
+    static LineIndex build(TextSource source) {
+        LineIndex index = new LineIndex();
+        index.scan(source, 0, source.length());
+        return index;
+    }
+
+    /**
+     * Starts indexing a source on the common fork/join pool and returns immediately.
+     * The returned index can be queried for the segments finished so far.
+     *
+     * @param source The source to scan.
+     * @return The index being built.
+     */
+    static LineIndex buildInBackground(TextSource source) {
+        int segmentCount = (int) ((source.length() + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+        LineIndex index = new LineIndex(segmentCount);
+        if (segmentCount == 0) {
+            index.complete = true;
+        } else {
+            ForkJoinPool.commonPool().execute(index.new IndexTask(source, 0, segmentCount));
+        }
+        return index;
+    }
+
+    /**
+     * Adds the line feeds found in a range of a source, which must follow every range scanned before.
+     *
+     * @param source The source to scan.
+     * @param from   The first offset to scan (inclusive).
+     * @param to     The last offset to scan (exclusive).
+     */
+    void scan(TextSource source, long from, long to) {
+        for (long i = source.indexOf((byte) '\n', from, to); i >= 0; i = source.indexOf((byte) '\n', i + 1, to)) {
+            int segment = (int) (i >>> SEGMENT_SHIFT);
+            ensureSegments(segment + 1);
+            if (counts[segment] == segments[segment].length) {
+                segments[segment] = Arrays.copyOf(segments[segment], counts[segment] * 2);
+            }
+            segments[segment][counts[segment]++] = i;
+        }
+    }
+
+    private void ensureSegments(int count) {
+        if (count <= segmentCount) {
+            return;
+        }
+        if (count > segments.length) {
+            int capacity = Math.max(count, segments.length * 2);
+            segments = Arrays.copyOf(segments, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            before = Arrays.copyOf(before, capacity);
+        }
+        int total = segmentCount == 0 ? 0 : before[segmentCount - 1] + counts[segmentCount - 1];
+        for (int i = segmentCount; i < count; i++) {
+            segments[i] = new long[16];
+            counts[i] = 0;
+            before[i] = total;
+        }
+        segmentCount = count;
+        readySegments = count;
+    }
+
+    /**
+     * Stores a finished segment and extends the queryable prefix as far as possible.
+     */
+    private synchronized void publish(int segment, long[] lineFeeds, int count) {
+        segments[segment] = lineFeeds;
+        counts[segment] = count;
+        finishedSegments++;
+        int ready = readySegments;
+        while (ready < segmentCount && segments[ready] != null) {
+            before[ready] = ready == 0 ? 0 : before[ready - 1] + counts[ready - 1];
+            ready++;
+        }
+        readySegments = ready;
+        complete = ready == segmentCount;
+        notifyAll();
+    }
+
+    /**
+     * Checks whether every segment has been indexed.
+     *
+     * @return True if the whole source is indexed.
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Gets the indexing progress.
+     *
+     * @return The percentage of segments indexed so far.
+     */
+    synchronized int getProgress() {
+        return complete ? 100 : finishedSegments * 100 / segmentCount;
+    }
+
+    /**
+     * Gets the number of line feeds in the queryable prefix of the source.
+     *
+     * @return The number of line feeds indexed so far.
+     */
+    int getLineFeedCount() {
+        int ready = readySegments;
+        return ready == 0 ? 0 : before[ready - 1] + counts[ready - 1];
+    }
+
+    /**
+     * Blocks until the index holds at least the given number of line feeds or is complete.
+     * Only the segments needed to reach that number are waited for.
+     *
+     * @param lineFeeds The number of line feeds needed.
+     * @return True if the source has that many line feeds.
+     */
+    boolean awaitLineFeeds(int lineFeeds) {
+        if (!complete && getLineFeedCount() < lineFeeds) {
+            synchronized (this) {
+                while (!complete && getLineFeedCount() < lineFeeds) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+        return getLineFeedCount() >= lineFeeds;
+    }
+
+    /**
+     * Blocks until the whole source is indexed.
+     */
+    void awaitComplete() {
+        awaitLineFeeds(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Counts the line feeds in [start, end).
+     */
+    int countLineFeeds(long start, long end) {
+        return lowerBound(end) - lowerBound(start);
+    }
+
+    /**
+     * Gets the offset of the k-th (0-based) line feed at or after start.
+     */
+    long lineFeedAt(long start, int k) {
+        int n = lowerBound(start) + k;
+        // Find the last segment whose preceding line feeds do not exceed n
+        int low = 0, high = readySegments - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (before[mid] <= n) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return segments[low][n - before[low]];
+    }
+
+    /**
+     * Gets the number of line feeds before an offset.
+     */
+    private int lowerBound(long offset) {
+        int segment = (int) (offset >>> SEGMENT_SHIFT);
+        if (segment >= readySegments) {
+            return getLineFeedCount();
+        }
+        long[] lineFeeds = segments[segment];
+        int low = 0, high = counts[segment];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lineFeeds[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return before[segment] + low;
+    }
+
+    /**
+     * Indexes a range of segments, splitting it across the pool until one segment remains.
+     */
+    private final class IndexTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient TextSource source;
+        private final int fromSegment, toSegment;
+
+        IndexTask(TextSource source, int fromSegment, int toSegment) {
+            this.source = source;
+            this.fromSegment = fromSegment;
+            this.toSegment = toSegment;
+        }
+
+        @Override
+        protected void compute() {
+            if (toSegment - fromSegment > 1) {
+                int mid = (fromSegment + toSegment) >>> 1;
+                invokeAll(new IndexTask(source, fromSegment, mid), new IndexTask(source, mid, toSegment));
+                return;
+            }
+            long from = (long) fromSegment << SEGMENT_SHIFT;
+            long to = Math.min(from + SEGMENT_SIZE, source.length());
+            long[] lineFeeds = new long[1024];
+            int count = 0;
+            for (long i = source.indexOf((byte) '\n', from, to); i >= 0; i = source.indexOf((byte) '\n', i + 1, to)) {
+                if (count == lineFeeds.length) {
+                    lineFeeds = Arrays.copyOf(lineFeeds, count * 2);
+                }
+                lineFeeds[count++] = i;
+            }
+            publish(fromSegment, Arrays.copyOf(lineFeeds, count), count);
+        }
+    }
+}
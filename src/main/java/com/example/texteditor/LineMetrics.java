@@ -0,0 +1,384 @@
+package com.example.texteditor;
+
+import java.util.Arrays;
+
+/**
+ * Caches how many extra screen rows each line of a {@link Document} wraps onto, so a line is
+ * measured once and then only again after it is edited or the terminal is resized.
+ * <p>
+ * Each wrap count is stamped with the generation of the column count it was measured for.
+ * Edits clear the stamps of the lines they change and move the counts of the lines after them.
+ * The counts are kept in a gap buffer whose gap follows the last edit, so an edit only shifts
+ * the counts between it and the edit before it rather than every count after it.
+ * A resize starts a new generation without measuring anything: a line is measured again for
+ * the new width only when its own wrap count is asked for, as when it is drawn, and lines far
+ * from the screen keep their old counts in the sums until then. Rows are only ever
+ * compared between lines near each other, so the screen is laid out right however many
+ * distant lines are still counted for the old width.
+ * <p>
+ * The widths of the chars of recently measured lines are kept too, in a small direct-mapped
+ * cache, so drawing the visible lines does not measure them again.
+ * <p>
+ * The wrap counts are also summed in a Fenwick tree, so the screen row a line starts on and
+ * the line shown on a screen row are found in O(log n) instead of by walking every line
+ * before it. The tree is only kept valid up to the first line edited since it was last used,
+ * and is extended lazily to the lines a query needs. Lines never measured are counted as not
+ * wrapping at all until they are drawn, the way stale lines keep their old counts, so jumping
+ * far into a file does not decode every line before the target.
+ */
+final class LineMetrics implements DocumentListener {
+
+    private static final int WIDTHS_CACHE_SIZE = 256;        // Must be a power of two
+    private static final int MAX_CACHED_LINE_LENGTH = 1 << 16;
+
+    private final Document content;
+    private int[] wraps = new int[1024];      // Extra rows each line wraps onto
+    private int[] stamps = new int[1024];     // Generation each wrap was measured in, 0 if not measured
+    private int size;                         // Lines [0, size) have a slot
+    private int gapStart = 0;                 // Slots [gapStart, gapEnd) hold no line
+    private int gapEnd = 1024;
+    private int columns;                      // Column count of the current generation
+    private int generation = 1;
+    private int[] tree = new int[1025];       // Fenwick tree of the wraps, 1-based
+    private int indexed;                      // Nodes [1, indexed] of the tree are up to date
+
+    private final byte[][] cachedWidths = new byte[WIDTHS_CACHE_SIZE][];
+    private final int[] cachedWidthsLines = new int[WIDTHS_CACHE_SIZE];
+    private final int[] cachedWidthsStamps = new int[WIDTHS_CACHE_SIZE];
+
+    /**
+     * Constructs an empty cache for a document and starts following its edits.
+     *
+     * @param content The document to measure.
+     */
+    LineMetrics(Document content) {
+        this.content = content;
+        content.addListener(this);
+    }
+
+    /**
+     * Checks whether this cache measures the given document.
+     */
+    boolean isFor(Document content) {
+        return this.content == content;
+    }
+
+    /**
+     * Gets the number of extra rows a line wraps onto.
+     *
+     * @param line     The line index.
+     * @param columns  The number of columns in the terminal.
+     * @param terminal The terminal measuring char widths.
+     * @return The number of rows the line takes, minus one.
+     */
+    int getWrap(int line, int columns, Terminal terminal) {
+        setColumns(columns);
+        if (line >= content.getLineCount()) {
+            return measure(content.getLine(line), columns, terminal);
+        }
+        if (line >= size || stamps[slot(line)] != generation) {
+            measure(line, terminal);
+        }
+        return wraps[slot(line)];
+    }
+
+    /**
+     * Gets the number of columns each char of a line takes.
+     *
+     * @param line     The line index.
+     * @param columns  The number of columns in the terminal.
+     * @param terminal The terminal measuring char widths.
+     * @return The widths, at least as many as the line has chars, or null if the line is too
+     *         long to keep them.
+     */
+    byte[] getCharWidths(int line, int columns, Terminal terminal) {
+        setColumns(columns);
+        if (line >= content.getLineCount()) {
+            return null;
+        }
+        int slot = line & (WIDTHS_CACHE_SIZE - 1);
+        if (cachedWidthsLines[slot] != line || cachedWidthsStamps[slot] != generation) {
+            measure(line, terminal);
+        }
+        return cachedWidthsLines[slot] == line && cachedWidthsStamps[slot] == generation ? cachedWidths[slot] : null;
+    }
+
+    /**
+     * Gets the total number of extra rows the lines before a line wrap onto.
+     *
+     * @param line     The line index; lines past the end of the document count as empty.
+     * @param columns  The number of columns in the terminal.
+     * @param terminal The terminal measuring char widths.
+     * @return The sum of the wraps of lines [0, line).
+     */
+    int getWrapsBefore(int line, int columns, Terminal terminal) {
+        setColumns(columns);
+        int end = Math.min(line, content.getLineCount());
+        index(end);
+        return sum(end);
+    }
+
+    /**
+     * Measures the lines of a range that were never measured or were measured for another width.
+     *
+     * @param from     The first line (inclusive).
+     * @param to       The last line (exclusive).
+     * @param columns  The number of columns in the terminal.
+     * @param terminal The terminal measuring char widths.
+     * @return True if the sums of the wraps changed.
+     */
+    boolean reflow(int from, int to, int columns, Terminal terminal) {
+        setColumns(columns);
+        boolean changed = false;
+        ensureSize(Math.min(to, content.getLineCount()));
+        for (int line = Math.max(from, 0); line < Math.min(to, size); line++) {
+            int slot = slot(line);
+            if (stamps[slot] != generation) {
+                int wrap = wraps[slot];
+                measure(line, terminal);
+                changed |= line < indexed && wraps[slot] != wrap;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Finds the line shown on a screen row, counting rows from the top of the document.
+     *
+     * @param row      The 0-based row.
+     * @param columns  The number of columns in the terminal.
+     * @param terminal The terminal measuring char widths.
+     * @return The last line starting at or before the row, or the line count if the row is
+     *         past the end of the document.
+     */
+    int getLineAtRow(int row, int columns, Terminal terminal) {
+        setColumns(columns);
+        int lineCount = content.getLineCount();
+        // Index only as many lines as it takes to reach the row, doubling the range each time
+        int limit = Math.min(indexed, lineCount);
+        while (limit < lineCount && limit + sum(limit) <= row) {
+            limit = Math.min(Math.max(limit * 2, limit + 1024), lineCount);
+            index(limit);
+        }
+        // Descend the tree, counting each line as its wraps plus the row it starts on
+        int line = 0, rowsBefore = 0;
+        for (int step = Integer.highestOneBit(Math.max(limit, 1)); step > 0; step >>= 1) {
+            int next = line + step;
+            if (next <= limit && rowsBefore + tree[next] + step <= row) {
+                line = next;
+                rowsBefore += tree[next] + step;
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Sums the wraps of lines [0, end) from the tree, which must be indexed that far.
+     */
+    private int sum(int end) {
+        int sum = 0;
+        for (int i = end; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Measures the number of extra rows a line wraps onto, without caching it.
+     *
+     * @param line     The text of the line.
+     * @param columns  The number of columns in the terminal.
+     * @param terminal The terminal measuring char widths.
+     * @return The number of rows the line takes, minus one.
+     */
+    static int measure(String line, int columns, Terminal terminal) {
+        return Math.max(terminal.getLineWidth(line, columns) - 1, 0) / columns;
+    }
+
+    /**
+     * Gets the width of the first chars of a line laid out over rows of the given width, where a
+     * wide char that does not fit at the end of a row moves to the next one.
+     *
+     * @param widths  The widths of the chars of the line.
+     * @param count   The number of chars to measure.
+     * @param columns The number of columns in the terminal.
+     * @return The width, including the cells left empty at the end of rows.
+     */
+    static int getWidthUpTo(byte[] widths, int count, int columns) {
+        int width = 0;
+        for (int i = 0; i < count; i++) {
+            if (width % columns + widths[i] > columns) {
+                width += columns - width % columns;
+            }
+            width += widths[i];
+        }
+        return width;
+    }
+
+    /**
+     * Measures a line once, storing its wrap count and, unless it is very long, its char widths.
+     */
+    private void measure(int line, Terminal terminal) {
+        String text = content.getLine(line);
+        int slot = line & (WIDTHS_CACHE_SIZE - 1);
+        int wrap;
+        if (text.length() > MAX_CACHED_LINE_LENGTH) {
+            wrap = measure(text, columns, terminal);
+        } else {
+            byte[] widths = cachedWidths[slot];
+            if (widths == null || widths.length < text.length()) {
+                widths = new byte[Math.max(text.length(), 64)];
+                cachedWidths[slot] = widths;
+            }
+            int i = 0;
+            while (i < text.length()) {
+                int ascii = CharWidth.countAscii(text, i, text.length());
+                Arrays.fill(widths, i, i + ascii, (byte) 1);
+                i += ascii;
+                if (i < text.length()) {
+                    widths[i] = (byte) terminal.getCharWidth(text, i);
+                    i++;
+                }
+            }
+            cachedWidthsLines[slot] = line;
+            cachedWidthsStamps[slot] = generation;
+            wrap = Math.max(getWidthUpTo(widths, text.length(), columns) - 1, 0) / columns;
+        }
+        if (line >= size) {
+            ensureSize(line + 1);
+        }
+        int position = slot(line);
+        // A line counted in the tree unmeasured or for another width changes the sums of the nodes above it
+        for (int node = line + 1; node <= indexed && wrap != wraps[position]; node += node & -node) {
+            tree[node] += wrap - wraps[position];
+        }
+        wraps[position] = wrap;
+        stamps[position] = generation;
+    }
+
+    /**
+     * Brings the tree up to date for lines [0, end), taking each line as last measured and lines
+     * never measured as one row. Nothing is decoded, so this costs a few array reads per line.
+     * Each node sums its own line and the nodes below it, which all come before it.
+     */
+    private void index(int end) {
+        if (end <= indexed) {
+            return;
+        }
+        if (end > size) {
+            ensureSize(end);
+        }
+        for (int node = indexed + 1; node <= end; node++) {
+            int sum = wraps[slot(node - 1)];
+            for (int child = 1; child < (node & -node); child <<= 1) {
+                sum += tree[node - child];
+            }
+            tree[node] = sum;
+        }
+        indexed = end;
+    }
+
+    private void setColumns(int columns) {
+        if (columns != this.columns) {
+            this.columns = columns;
+            generation++;
+        }
+    }
+
+    /**
+     * Gets the slot holding a line, past the gap if the line comes after it.
+     */
+    private int slot(int line) {
+        return line < gapStart ? line : line + gapEnd - gapStart;
+    }
+
+    /**
+     * Adds unmeasured slots for the lines up to a new size.
+     */
+    private void ensureSize(int newSize) {
+        if (newSize > size) {
+            insertSlots(size, newSize - size);
+        }
+    }
+
+    /**
+     * Adds unmeasured slots before a line, moving the gap there first.
+     */
+    private void insertSlots(int line, int count) {
+        if (gapEnd - gapStart < count) {
+            growGap(count);
+        }
+        moveGap(line);
+        Arrays.fill(wraps, gapStart, gapStart + count, 0);
+        Arrays.fill(stamps, gapStart, gapStart + count, 0);
+        gapStart += count;
+        size += count;
+    }
+
+    /**
+     * Moves the gap to start at a line, shifting only the slots between its old and new place.
+     */
+    private void moveGap(int line) {
+        int gap = gapEnd - gapStart;
+        if (line < gapStart) {
+            int count = gapStart - line;
+            System.arraycopy(wraps, line, wraps, gapEnd - count, count);
+            System.arraycopy(stamps, line, stamps, gapEnd - count, count);
+        } else if (line > gapStart) {
+            int count = line - gapStart;
+            System.arraycopy(wraps, gapEnd, wraps, gapStart, count);
+            System.arraycopy(stamps, gapEnd, stamps, gapStart, count);
+        }
+        gapStart = line;
+        gapEnd = line + gap;
+    }
+
+    /**
+     * Reallocates the slots with a gap of at least the given size, keeping the gap in place.
+     */
+    private void growGap(int count) {
+        int capacity = Math.max(size + count, wraps.length * 2);
+        int tail = wraps.length - gapEnd;
+        wraps = regap(wraps, capacity, tail);
+        stamps = regap(stamps, capacity, tail);
+        gapEnd = capacity - tail;
+        tree = Arrays.copyOf(tree, capacity + 1);
+    }
+
+    private int[] regap(int[] slots, int capacity, int tail) {
+        int[] grown = new int[capacity];
+        System.arraycopy(slots, 0, grown, 0, gapStart);
+        System.arraycopy(slots, gapEnd, grown, capacity - tail, tail);
+        return grown;
+    }
+
+    @Override
+    public void onInsert(long offset, byte[] bytes) {
+    }
+
+    @Override
+    public void onDelete(long offset, long length) {
+    }
+
+    @Override
+    public void onLinesChanged(int line, int removed, int added) {
+        // Kept widths are addressed by line index, so they are dropped once their line moves
+        for (int slot = 0; slot < WIDTHS_CACHE_SIZE; slot++) {
+            if (cachedWidthsLines[slot] == line || removed != added && cachedWidthsLines[slot] > line) {
+                cachedWidthsStamps[slot] = 0;
+            }
+        }
+        // Nodes up to the edited line only sum the lines before it
+        indexed = Math.min(indexed, line);
+        if (line >= size) {
+            return;
+        }
+        // The edited line keeps its count as a guess until it is measured again
+        stamps[slot(line)] = 0;
+        int dropped = Math.min(removed, size - (line + 1));
+        moveGap(line + 1);
+        gapEnd += dropped;
+        size -= dropped;
+        insertSlots(line + 1, added);
+    }
+}
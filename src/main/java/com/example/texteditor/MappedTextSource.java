@@ -0,0 +1,113 @@
+package com.example.texteditor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link TextSource} over a memory-mapped file. The file is mapped in regions of at most 1 GiB
+ * so that files larger than 2 GiB can be addressed, and pages are only read in by the OS
+ * when the bytes are actually accessed.
+ */
+final class MappedTextSource implements TextSource, Closeable {
+
+    private static final int REGION_SHIFT = 30;
+    private static final long REGION_SIZE = 1L << REGION_SHIFT;
+    private static final long REGION_MASK = REGION_SIZE - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final long length;
+
+    /**
+     * Maps a file read-only.
+     *
+     * @param path The file to map.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    MappedTextSource(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.length = channel.size();
+        this.regions = new MappedByteBuffer[(int) ((length + REGION_SIZE - 1) >>> REGION_SHIFT)];
+        for (int i = 0; i < regions.length; i++) {
+            long start = (long) i << REGION_SHIFT;
+            regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, length - start));
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public byte byteAt(long offset) {
+        return regions[(int) (offset >>> REGION_SHIFT)].get((int) (offset & REGION_MASK));
+    }
+
+    @Override
+    public void read(long offset, byte[] dst, int dstPos, int length) {
+        // Absolute gets keep the shared buffers free of position state
+        for (int i = 0; i < length; i++) {
+            dst[dstPos + i] = byteAt(offset + i);
+        }
+    }
+
+    @Override
+    public long indexOf(byte value, long from, long to) {
+        while (from < to) {
+            int region = (int) (from >>> REGION_SHIFT);
+            long regionStart = (long) region << REGION_SHIFT;
+            MappedByteBuffer buffer = regions[region];
+            int end = (int) (Math.min(to, regionStart + REGION_SIZE) - regionStart);
+            for (int i = (int) (from - regionStart); i < end; i++) {
+                if (buffer.get(i) == value) {
+                    return regionStart + i;
+                }
+            }
+            from = regionStart + end;
+        }
+        return -1;
+    }
+
+    @Override
+    public void transferTo(long offset, long length, WritableByteChannel target, ByteBuffer buffer) throws IOException {
+        if (target instanceof FileChannel) {
+            // Let the kernel copy unchanged ranges from the original file
+            TextSource.flush(buffer, target);
+            while (length > 0) {
+                long count = channel.transferTo(offset, length, target);
+                if (count == 0) {
+                    // The file is shorter than when it was mapped
+                    throw new IOException("file changed on disk since it was opened");
+                }
+                offset += count;
+                length -= count;
+            }
+            return;
+        }
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                TextSource.flush(buffer, target);
+            }
+            int region = (int) (offset >>> REGION_SHIFT);
+            int position = (int) (offset & REGION_MASK);
+            int count = (int) Math.min(Math.min(buffer.remaining(), length), regions[region].limit() - position);
+            ByteBuffer slice = regions[region].duplicate();
+            slice.position(position).limit(position + count);
+            buffer.put(slice);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.texteditor;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Finds every match of a query in a document in the background, so the find prompt can tell
+ * which match of how many is shown and jump between matches by number.
+ * <p>
+ * The document is split into chunks of a few megabytes that are searched in parallel on the
+ * common fork/join pool, each with its own {@link TextSearch}. A chunk owns the matches that
+ * start in it, even if they end in the next one. The positions of a chunk are kept unless it
+ * holds more matches than are worth storing, in which case only their number is kept and the
+ * chunk is searched again when a position in it is asked for.
+ * <p>
+ * Only the thread that starts a count may ask about it. The document must not change while a
+ * count runs; it is only read. Cancelling waits for the searches to stop, so the document may
+ * be changed once {@link #cancel()} returns. Each chunk searched is reported to a progress
+ * callback, on the thread that searched it.
+ */
+final class MatchCounter {
+
+    private static final int CHUNK_SHIFT = 22;
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+    private static final int MAX_STORED = 1 << 14;  // Positions kept per chunk
+
+    private final TextSearch search = new TextSearch();
+    private final Runnable onProgress;
+    private Count count;
+    private ForkJoinTask<?> task;                   // Search of every chunk of the count
+
+    /**
+     * Constructs a counter.
+     *
+     * @param onProgress Called from a worker thread each time a chunk has been searched.
+     */
+    MatchCounter(Runnable onProgress) {
+        this.onProgress = onProgress;
+    }
+
+    /**
+     * Starts counting the matches of a query, cancelling any count still running.
+     *
+     * @param content    The document to search, fully loaded.
+     * @param query      The text to find.
+     * @param ignoreCase Whether ASCII letters match regardless of case.
+     * @param wholeWord  Whether matches must be whole words.
+     * @param candidates The ranges matches may start in, as for {@link TextSearch#setCandidates}.
+     */
+    void start(Document content, String query, boolean ignoreCase, boolean wholeWord, long[] candidates) {
+        cancel();
+        if (query.isEmpty()) {
+            return;
+        }
+        search.setQuery(query, ignoreCase, wholeWord);
+        search.setCandidates(candidates);
+        count = new Count(content, query, ignoreCase, wholeWord, candidates, onProgress);
+        task = new Search(count, 0, count.chunks.length);
+        ForkJoinPool.commonPool().execute(task);
+    }
+
+    /**
+     * Stops the count that is running, if any, and forgets its matches. Returns once no chunk
+     * is being searched, which takes at most the search of a window of matches per worker.
+     */
+    void cancel() {
+        if (count != null) {
+            count.cancelled = true;
+            task.quietlyJoin();
+            count = null;
+            task = null;
+        }
+    }
+
+    /**
+     * Checks whether there is a count that has not finished yet.
+     *
+     * @return True while chunks of the document are still being searched.
+     */
+    boolean isRunning() {
+        return count != null && count.remaining.get() > 0;
+    }
+
+    /**
+     * Checks whether there is a count that has finished.
+     *
+     * @return True if every match of the query is known.
+     */
+    boolean isDone() {
+        return count != null && count.remaining.get() == 0;
+    }
+
+    /**
+     * Gets the number of matches found so far.
+     *
+     * @return The number of matches in the chunks searched, or 0 if nothing is being counted.
+     */
+    int getTotal() {
+        return count == null ? 0 : count.total.get();
+    }
+
+    /**
+     * Gets the number of a match, once every chunk up to it has been searched.
+     *
+     * @param offset The byte offset of the match.
+     * @return The index of the match among all matches, or -1 if it is not known yet.
+     */
+    int getIndex(long offset) {
+        if (count == null) {
+            return -1;
+        }
+        int chunk = (int) (offset >>> CHUNK_SHIFT);
+        if (offset < 0 || chunk >= count.chunks.length || count.counts.get(chunk) < 0) {
+            return -1;
+        }
+        int before = 0;
+        for (int i = 0; i < chunk; i++) {
+            int matches = count.counts.get(i);
+            if (matches < 0) {
+                return -1;
+            }
+            before += matches;
+        }
+        long[] positions = count.chunks[chunk];
+        if (positions != null) {
+            int index = Arrays.binarySearch(positions, offset);
+            return index < 0 ? -1 : before + index;
+        }
+        // Count again the matches of a crowded chunk up to the offset
+        long chunkStart = (long) chunk << CHUNK_SHIFT;
+        return before + search.findAll(count.content, chunkStart, offset, null, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets a match by its number, once the count has finished.
+     *
+     * @param index The index of the match among all matches.
+     * @return The byte offset of the match, or -1 if it is not known.
+     */
+    long getMatch(int index) {
+        if (!isDone() || index < 0) {
+            return -1;
+        }
+        for (int chunk = 0; chunk < count.chunks.length; chunk++) {
+            int matches = count.counts.get(chunk);
+            if (index >= matches) {
+                index -= matches;
+                continue;
+            }
+            long[] positions = count.chunks[chunk];
+            if (positions != null) {
+                return positions[index];
+            }
+            // Skip the matches before it in a crowded chunk
+            long chunkStart = (long) chunk << CHUNK_SHIFT;
+            search.findAll(count.content, chunkStart, count.length, null, 0, index);
+            return search.findForward(count.content, index > 0 ? search.getScanEnd() : chunkStart);
+        }
+        return -1;
+    }
+
+    /**
+     * The matches of one query, filled in by chunk as the searches finish.
+     */
+    private static final class Count {
+        final Document content;
+        final String query;
+        final boolean ignoreCase, wholeWord;
+        final long[] candidates;
+        final long length;
+        final long[][] chunks;              // Positions by chunk; null if not stored
+        final AtomicIntegerArray counts;    // Matches by chunk; -1 until the chunk is searched
+        final AtomicInteger remaining;
+        final AtomicInteger total = new AtomicInteger();
+        final Runnable onProgress;
+        volatile boolean cancelled;
+
+        Count(Document content, String query, boolean ignoreCase, boolean wholeWord, long[] candidates, Runnable onProgress) {
+            this.content = content;
+            this.query = query;
+            this.ignoreCase = ignoreCase;
+            this.wholeWord = wholeWord;
+            this.candidates = candidates;
+            this.onProgress = onProgress;
+            this.length = content.length();
+            int chunkCount = (int) ((length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+            this.chunks = new long[chunkCount][];
+            this.counts = new AtomicIntegerArray(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                counts.set(i, -1);
+            }
+            this.remaining = new AtomicInteger(chunkCount);
+        }
+    }
+
+    /**
+     * Searches a range of chunks, splitting it in halves for other workers to take.
+     */
+    private static final class Search extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Count count;
+        private final int from, to;
+
+        Search(Count count, int from, int to) {
+            this.count = count;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (count.cancelled || from >= to) {
+                return;
+            }
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Search(count, from, middle), new Search(count, middle, to));
+                return;
+            }
+            TextSearch search = new TextSearch();
+            search.setQuery(count.query, count.ignoreCase, count.wholeWord);
+            search.setCandidates(count.candidates);
+            long start = (long) from << CHUNK_SHIFT;
+            long end = Math.min(start + CHUNK_SIZE, count.length);
+            long[] positions = new long[64];
+            int found = 0;
+            for (long position = start; !count.cancelled; position = search.getScanEnd()) {
+                if (found == positions.length && found < MAX_STORED) {
+                    positions = Arrays.copyOf(positions, found * 2);
+                }
+                // Once there are too many to store, just count the rest
+                found += found < positions.length
+                         ? search.findAll(count.content, position, end, positions, found, positions.length - found)
+                         : search.findAll(count.content, position, end, null, 0, Integer.MAX_VALUE);
+                if (search.getScanEnd() >= end) {
+                    break;
+                }
+            }
+            if (count.cancelled) {
+                return;
+            }
+            count.chunks[from] = found <= MAX_STORED ? Arrays.copyOf(positions, found) : null;
+            // The prompt's thread reads the count first, which makes the positions visible to it
+            count.counts.set(from, found);
+            count.total.addAndGet(found);
+            count.remaining.decrementAndGet();
+            count.onProgress.run();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.texteditor;
+
+import java.util.Arrays;
+
+/**
+ * Finds the matches of the find query in the lines on screen, so they can be highlighted.
+ * <p>
+ * Only lines that are drawn are searched. The spans found are kept in a small direct-mapped
+ * cache, stamped with the generation of the query they were found for, so redrawing a screen
+ * does not search its lines again. Setting another query starts a new generation, and edits
+ * clear the stamps of the lines they change, as {@link LineMetrics} does for its widths.
+ */
+final class MatchHighlighter implements DocumentListener {
+
+    private static final int CACHE_SIZE = 256;      // Must be a power of two
+    private static final int MAX_SPANS = 1 << 14;   // Matches highlighted per line
+    private static final int[] NO_SPANS = new int[0];
+
+    private final Document content;
+    private final TextSearch search = new TextSearch();
+    private final RegexSearch regexSearch = new RegexSearch();
+    private String query = "";
+    private boolean regex;
+    private int generation = 1;
+
+    private final int[][] cachedSpans = new int[CACHE_SIZE][];
+    private final int[] cachedLines = new int[CACHE_SIZE];
+    private final int[] cachedStamps = new int[CACHE_SIZE];
+    private byte[] bytes = new byte[256];     // Bytes of the line searched
+    private long[] offsets = new long[64];    // Byte offsets of its matches
+
+    /**
+     * Constructs a highlighter for a document and starts following its edits.
+     *
+     * @param content The document whose lines are drawn.
+     */
+    MatchHighlighter(Document content) {
+        this.content = content;
+        content.addListener(this);
+    }
+
+    /**
+     * Checks whether this highlighter searches the given document.
+     */
+    boolean isFor(Document content) {
+        return this.content == content;
+    }
+
+    /**
+     * Sets the query whose matches are highlighted.
+     *
+     * @param query      The text or regex to find, or an empty string to highlight nothing.
+     * @param ignoreCase Whether ASCII letters match regardless of case.
+     * @param wholeWord  Whether matches must be whole words.
+     * @param regex      Whether the query is a regular expression.
+     */
+    void setQuery(String query, boolean ignoreCase, boolean wholeWord, boolean regex) {
+        generation++;
+        this.query = query;
+        this.regex = regex;
+        if (query.isEmpty()) {
+            return;
+        }
+        if (regex) {
+            if (!regexSearch.setQuery(query, ignoreCase, wholeWord)) {
+                this.query = "";
+            }
+        } else {
+            search.setQuery(query, ignoreCase, wholeWord);
+        }
+    }
+
+    /**
+     * Checks whether there is a query to highlight.
+     */
+    boolean isActive() {
+        return !query.isEmpty();
+    }
+
+    /**
+     * Gets the matches in a line.
+     *
+     * @param line The line index.
+     * @return The char offsets [start, end) of the matches in the line, in pairs.
+     */
+    int[] getSpans(int line) {
+        if (query.isEmpty() || line >= content.getLineCount()) {
+            return NO_SPANS;
+        }
+        int slot = line & (CACHE_SIZE - 1);
+        if (cachedLines[slot] != line || cachedStamps[slot] != generation) {
+            cachedSpans[slot] = regex ? regexSearch.findInLine(content, line, MAX_SPANS) : findInLine(line);
+            cachedLines[slot] = line;
+            cachedStamps[slot] = generation;
+        }
+        return cachedSpans[slot];
+    }
+
+    /**
+     * Finds the matches of the literal query in a line and converts them to char offsets.
+     */
+    private int[] findInLine(int line) {
+        long start = content.getLineStart(line);
+        long end = line + 1 < content.getLineCount() ? content.getLineStart(line + 1) : content.length();
+        int length = (int) (end - start);
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+        }
+        content.read(start, bytes, 0, length);
+        int found = 0;
+        for (long position = start; found < MAX_SPANS; position = search.getScanEnd()) {
+            if (found == offsets.length) {
+                offsets = Arrays.copyOf(offsets, found * 2);
+            }
+            found += search.findAll(content, position, end, offsets, found, Math.min(offsets.length, MAX_SPANS) - found);
+            if (search.getScanEnd() >= end) {
+                break;
+            }
+        }
+        if (found == 0) {
+            return NO_SPANS;
+        }
+        // Count the chars up to each match, going through the line once
+        int[] spans = new int[2 * found];
+        int matchLength = search.getLength();
+        int column = 0, counted = 0;
+        for (int i = 0; i < found; i++) {
+            int offset = (int) (offsets[i] - start);
+            column += Utf8.charCount(bytes, counted, offset);
+            counted = offset;
+            spans[2 * i] = column;
+            spans[2 * i + 1] = column + Utf8.charCount(bytes, offset, Math.min(offset + matchLength, length));
+        }
+        return spans;
+    }
+
+    @Override
+    public void onInsert(long offset, byte[] bytes) {
+    }
+
+    @Override
+    public void onDelete(long offset, long length) {
+    }
+
+    @Override
+    public void onLinesChanged(int line, int removed, int added) {
+        // Spans are addressed by line index, so they are dropped once their line moves
+        for (int slot = 0; slot < CACHE_SIZE; slot++) {
+            if (cachedLines[slot] == line || removed != added && cachedLines[slot] > line) {
+                cachedStamps[slot] = 0;
+            }
+        }
+    }
+}
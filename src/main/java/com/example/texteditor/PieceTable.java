@@ -0,0 +1,741 @@
+package com.example.texteditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Piece-table implementation of {@link Document}.
+ * The text lives in an immutable original buffer holding the file as loaded from disk and an
+ * append-only add buffer holding everything typed since. The document is a sequence of pieces,
+ * each referencing a byte range of one buffer, kept in a treap whose nodes carry subtree byte
+ * lengths and line feed counts. Inserts, deletes and line lookups therefore cost O(log pieces)
+ * no matter how long the line or the file is.
+ * <p>
+ * The original buffer may still be indexed in the background when the table is created.
+ * Until it is complete, the unedited document serves lines straight from the finished part of
+ * the index, waiting only for the segments a requested line needs, and edits wait for the
+ * whole index.
+ */
+public class PieceTable implements Document {
+
+    private static final int LINE_CACHE_SIZE = 128;   // Must be a power of two
+
+    private final Buffer original;
+    private final Buffer added;
+    private final ByteArraySource addSource;
+    private Piece root;
+    private boolean loaded;                 // Whether the original buffer is fully indexed and in the tree
+    private int seed = 0x2545F491;
+
+    private Piece splitLeft, splitRight;    // Results of the last split
+
+    private Piece lastInsert;               // Add piece that a directly following insert can extend
+    private long lastInsertEnd;             // Document offset just after lastInsert
+
+    private int lastEditLine = -1;          // Line and column of the last edit by column, until the next edit
+    private int lastEditColumn;
+    private long lastEditOffset;            // Byte offset of lastEditColumn
+
+    private final List<DocumentListener> listeners = new ArrayList<>();
+    private final String[] cachedLines = new String[LINE_CACHE_SIZE];
+    private final int[] cachedLineIndexes = new int[LINE_CACHE_SIZE];
+    private final long[] cachedLineStarts = new long[LINE_CACHE_SIZE];
+    private final long[] cachedLineEnds = new long[LINE_CACHE_SIZE];
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Constructs an empty document.
+     */
+    public PieceTable() {
+        this(new byte[0]);
+    }
+
+    /**
+     * Constructs a document over UTF-8 encoded text. The array is used as the original buffer
+     * and must not be modified afterwards.
+     *
+     * @param text The UTF-8 encoded text.
+     */
+    public PieceTable(byte[] text) {
+        this(new ByteArraySource(text));
+    }
+
+    /**
+     * Constructs a document over a source of UTF-8 encoded text, such as a memory-mapped file.
+     * Only the line feed index is built up front; lines are decoded when they are first read.
+     *
+     * @param source The source of the original text.
+     */
+    public PieceTable(TextSource source) {
+        this(source, LineIndex.build(source));
+    }
+
+    /**
+     * Constructs a document over a source whose line feed index may still be in progress.
+     *
+     * @param source    The source of the original text.
+     * @param lineFeeds The index of the line feeds in the source.
+     */
+    public PieceTable(TextSource source, LineIndex lineFeeds) {
+        this.original = new Buffer(source, lineFeeds);
+        this.addSource = new ByteArraySource(256);
+        this.added = new Buffer(addSource, new LineIndex());
+        checkLoaded();
+    }
+
+    /**
+     * Adds the original buffer to the tree once its index is complete.
+     *
+     * @return True if the document is fully loaded.
+     */
+    private boolean checkLoaded() {
+        if (!loaded && original.lineFeeds.isComplete()) {
+            if (original.source.length() > 0) {
+                root = newPiece(original, 0, original.source.length());
+            }
+            loaded = true;
+        }
+        return loaded;
+    }
+
+    /**
+     * Blocks until the original buffer is fully indexed, before the document is changed or written.
+     */
+    private void awaitLoaded() {
+        original.lineFeeds.awaitComplete();
+        checkLoaded();
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return checkLoaded();
+    }
+
+    @Override
+    public int getLoadProgress() {
+        return original.lineFeeds.getProgress();
+    }
+
+    @Override
+    public int getLineCount() {
+        if (!checkLoaded()) {
+            // Lines up to the last indexed line feed, plus the line that continues past it
+            return original.lineFeeds.getLineFeedCount() + 1;
+        }
+        return lineFeeds(root) + 1;
+    }
+
+    @Override
+    public String getLine(int line) {
+        int slot = line & (LINE_CACHE_SIZE - 1);
+        if (cachedLines[slot] != null && cachedLineIndexes[slot] == line) {
+            return cachedLines[slot];
+        }
+        long start = getLineStart(line);
+        int length = (int) (getLineEnd(line, start) - start);
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        read(start, scratch, 0, length);
+        String decoded = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        cachedLines[slot] = decoded;
+        cachedLineIndexes[slot] = line;
+        cachedLineStarts[slot] = start;
+        cachedLineEnds[slot] = start + length;
+        return decoded;
+    }
+
+    /**
+     * Updates the line cache after an edit of the given size at an offset. If the edit added or
+     * removed line feeds, every line may have moved and the cache is emptied. Otherwise only the
+     * line holding the edit changed, and the lines after it just moved by the edit's size.
+     */
+    private void updateLineCache(long offset, long delta, boolean lineFeedsChanged) {
+        if (lineFeedsChanged) {
+            Arrays.fill(cachedLines, null);
+            return;
+        }
+        // A delete touches [offset, offset - delta), an insert only the offset itself
+        long editEnd = offset + Math.max(-delta, 0);
+        for (int slot = 0; slot < LINE_CACHE_SIZE; slot++) {
+            if (cachedLines[slot] == null || cachedLineEnds[slot] + 1 < offset) {
+                continue;   // Ends before the edit, counting a carriage return before its line feed
+            }
+            if (cachedLineStarts[slot] > editEnd) {
+                cachedLineStarts[slot] += delta;
+                cachedLineEnds[slot] += delta;
+            } else {
+                cachedLines[slot] = null;
+            }
+        }
+    }
+
+    @Override
+    public void insert(int line, int col, String text) {
+        long offset = getOffset(line, col);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        insert(offset, bytes);
+        if (text.indexOf('\n') < 0) {
+            setLastEdit(line, col + text.length(), offset + bytes.length);
+        }
+    }
+
+    @Override
+    public void delete(int line, int col, int length) {
+        long start = getOffset(line, col);
+        delete(start, advance(start, getLineEnd(line, getLineStart(line)), length) - start);
+        setLastEdit(line, col, start);
+    }
+
+    /**
+     * Steps from the last edit by column when the column is at or after it on the same line, or
+     * is the ASCII char just before it, so typing or deleting along a long line does not step
+     * over the line again for every key.
+     */
+    @Override
+    public long getOffset(int line, int col) {
+        long lineStart = getLineStart(line);
+        if (line == lastEditLine) {
+            if (col >= lastEditColumn) {
+                return advance(lastEditOffset, getLineEnd(line, lineStart), col - lastEditColumn);
+            }
+            // An ASCII byte is never part of a longer sequence, so it is always one char
+            if (col == lastEditColumn - 1 && byteAt(lastEditOffset - 1) >= 0) {
+                return lastEditOffset - 1;
+            }
+        }
+        return col > 0 ? advance(lineStart, getLineEnd(line, lineStart), col) : lineStart;
+    }
+
+    private void setLastEdit(int line, int col, long offset) {
+        lastEditLine = line;
+        lastEditColumn = col;
+        lastEditOffset = offset;
+    }
+
+    /**
+     * Steps through the encoded chars from an offset, without decoding them, so that columns map
+     * to the same bytes the decoded line shows, malformed sequences included.
+     *
+     * @param position The byte offset to start at, on a char boundary.
+     * @param end      The offset to stop at.
+     * @param chars    The number of chars to step over.
+     * @return The offset after the chars.
+     */
+    private long advance(long position, long end, int chars) {
+        int column = 0;
+        while (column < chars && position < end) {
+            int count = (int) Math.min(scratch.length, end - position);
+            read(position, scratch, 0, count);
+            // A sequence starting near the end of the read is stepped over by the next read
+            int limit = position + count < end ? count - 3 : count;
+            int i = 0;
+            while (column < chars && i < limit) {
+                int length = Utf8.sequenceLength(scratch, i, count);
+                column += length == 4 ? 2 : 1;
+                i += length;
+            }
+            position += i;
+        }
+        return position;
+    }
+
+    @Override
+    public void splitLine(int line, int col) {
+        insert(line, col, "\n");
+    }
+
+    @Override
+    public void joinLines(int line) {
+        if (line >= getLineCount() - 1) {
+            return;
+        }
+        long end = getLineEnd(line, getLineStart(line));
+        delete(end, getLineStart(line + 1) - end);
+    }
+
+    @Override
+    public long length() {
+        return checkLoaded() ? length(root) : original.source.length();
+    }
+
+    @Override
+    public void writeTo(WritableByteChannel target, ByteBuffer buffer) throws IOException {
+        awaitLoaded();
+        buffer.clear();
+        writeTo(root, target, buffer);
+        TextSource.flush(buffer, target);
+    }
+
+    private void writeTo(Piece node, WritableByteChannel target, ByteBuffer buffer) throws IOException {
+        if (node == null) {
+            return;
+        }
+        writeTo(node.left, target, buffer);
+        node.buffer.source.transferTo(node.start, node.length, target, buffer);
+        writeTo(node.right, target, buffer);
+    }
+
+    /**
+     * Copies the ranges of the pieces in order. The tree changes its nodes in place, but the
+     * bytes they reference are never changed, so the ranges stay valid whatever is edited.
+     */
+    @Override
+    public Snapshot snapshot() {
+        awaitLoaded();
+        PieceSnapshot snapshot = new PieceSnapshot(count(root), length(root));
+        snapshot.add(root, original, addSource.snapshot());
+        return snapshot;
+    }
+
+    private static int count(Piece node) {
+        return node == null ? 0 : count(node.left) + 1 + count(node.right);
+    }
+
+    @Override
+    public void addListener(DocumentListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void insert(long offset, byte[] bytes) {
+        if (bytes.length == 0) {
+            return;
+        }
+        awaitLoaded();
+        long addStart = addSource.length();
+        addSource.append(bytes, 0, bytes.length);
+        added.lineFeeds.scan(addSource, addStart, addSource.length());
+        int lineFeeds = added.countLineFeeds(addStart, addSource.length());
+        if (lastInsert != null && offset == lastInsertEnd && lastInsert.start + lastInsert.length == addStart) {
+            // Typing extends the piece of the previous keystroke instead of adding a new one
+            extend(root, offset - 1, bytes.length, lineFeeds);
+        } else {
+            Piece piece = newPiece(added, addStart, bytes.length);
+            split(root, offset);
+            Piece right = splitRight;
+            root = merge(merge(splitLeft, piece), right);
+            lastInsert = piece;
+        }
+        lastInsertEnd = offset + bytes.length;
+        lastEditLine = -1;
+        updateLineCache(offset, bytes.length, lineFeeds > 0);
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onInsert(offset, bytes);
+        }
+        fireLinesChanged(offset, 0, lineFeeds);
+    }
+
+    @Override
+    public void delete(long offset, long length) {
+        if (length <= 0) {
+            return;
+        }
+        awaitLoaded();
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onBeforeDelete(offset, length);
+        }
+        int lineFeeds = lineFeeds(root);
+        split(root, offset);
+        Piece left = splitLeft;
+        split(splitRight, length);
+        root = merge(left, splitRight);
+        lastInsert = null;
+        lastEditLine = -1;
+        updateLineCache(offset, -length, lineFeeds(root) != lineFeeds);
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onDelete(offset, length);
+        }
+        fireLinesChanged(offset, lineFeeds - lineFeeds(root), 0);
+    }
+
+    /**
+     * Replaces the ranges in one pass over the tree: the text between ranges is split off in
+     * order and merged back with a piece of the replacement after each one, so every range costs
+     * a split and two merges whatever the number of lines it adds or removes.
+     */
+    @Override
+    public void replace(long[] offsets, int[] lengths, int count, byte[][] replacements) {
+        if (count == 0) {
+            return;
+        }
+        awaitLoaded();
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < listeners.size() && lengths[i] > 0; j++) {
+                listeners.get(j).onBeforeDelete(offsets[i], lengths[i]);
+            }
+        }
+        int lineFeeds = lineFeeds(root);
+        int firstLine = getLineAt(offsets[0]);
+        int lastLine = getLineAt(offsets[count - 1] + lengths[count - 1]);
+        Piece done = null, rest = root;
+        long restStart = 0;             // Offset of rest in the document before the edit
+        long addStart = 0;
+        for (int i = 0; i < count; i++) {
+            split(rest, offsets[i] - restStart);
+            done = merge(done, splitLeft);
+            split(splitRight, lengths[i]);
+            rest = splitRight;
+            restStart = offsets[i] + lengths[i];
+            byte[] replacement = replacements[i];
+            if (replacement.length > 0) {
+                if (i == 0 || replacement != replacements[i - 1]) {
+                    addStart = addSource.length();
+                    addSource.append(replacement, 0, replacement.length);
+                    added.lineFeeds.scan(addSource, addStart, addSource.length());
+                }
+                done = merge(done, newPiece(added, addStart, replacement.length));
+            }
+        }
+        root = merge(done, rest);
+        lastInsert = null;
+        lastEditLine = -1;
+        Arrays.fill(cachedLines, null);
+        long shift = 0;
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < listeners.size(); j++) {
+                if (lengths[i] > 0) {
+                    listeners.get(j).onDelete(offsets[i] + shift, lengths[i]);
+                }
+                if (replacements[i].length > 0) {
+                    listeners.get(j).onInsert(offsets[i] + shift, replacements[i]);
+                }
+            }
+            shift += replacements[i].length - lengths[i];
+        }
+        int removed = lastLine - firstLine;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onLinesChanged(firstLine, removed, removed + lineFeeds(root) - lineFeeds);
+        }
+    }
+
+    private void fireLinesChanged(long offset, int removed, int added) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        int line = getLineAt(offset);
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onLinesChanged(line, removed, added);
+        }
+    }
+
+    /**
+     * Gets the line holding a byte offset.
+     *
+     * @param offset The byte offset.
+     * @return The number of line feeds before the offset.
+     */
+    @Override
+    public int getLineAt(long offset) {
+        if (!checkLoaded()) {
+            return original.lineFeeds.countLineFeeds(0, offset);
+        }
+        Piece node = root;
+        int line = 0;
+        while (node != null) {
+            long leftLength = length(node.left);
+            if (offset <= leftLength) {
+                node = node.left;
+            } else if (offset <= leftLength + node.length) {
+                return line + lineFeeds(node.left) + node.buffer.countLineFeeds(node.start, node.start + offset - leftLength);
+            } else {
+                line += lineFeeds(node.left) + node.lineFeeds;
+                offset -= leftLength + node.length;
+                node = node.right;
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Gets the byte offset at which a line starts.
+     *
+     * @param line The line index.
+     * @return The offset of the first byte of the line.
+     */
+    @Override
+    public long getLineStart(int line) {
+        if (line <= 0) {
+            return 0;
+        }
+        if (!checkLoaded()) {
+            LineIndex index = original.lineFeeds;
+            return index.awaitLineFeeds(line) ? index.lineFeedAt(0, line - 1) + 1 : original.source.length();
+        }
+        // The line starts right after the line-th line feed
+        Piece node = root;
+        long base = 0;
+        int remaining = line;
+        while (node != null) {
+            int leftLineFeeds = lineFeeds(node.left);
+            if (remaining <= leftLineFeeds) {
+                node = node.left;
+            } else if (remaining <= leftLineFeeds + node.lineFeeds) {
+                long lineFeed = node.buffer.lineFeedAt(node.start, remaining - leftLineFeeds - 1);
+                return base + length(node.left) + lineFeed - node.start + 1;
+            } else {
+                remaining -= leftLineFeeds + node.lineFeeds;
+                base += length(node.left) + node.length;
+                node = node.right;
+            }
+        }
+        return length(root);
+    }
+
+    /**
+     * Gets the byte offset at which a line ends, excluding its line terminator.
+     */
+    private long getLineEnd(int line, long lineStart) {
+        if (!checkLoaded() && !original.lineFeeds.awaitLineFeeds(line + 1)) {
+            return original.source.length();
+        }
+        if (line >= getLineCount() - 1) {
+            return length();
+        }
+        long end = getLineStart(line + 1) - 1;
+        if (end > lineStart && byteAt(end - 1) == '\r') {
+            end--;
+        }
+        return end;
+    }
+
+    private byte byteAt(long offset) {
+        if (!checkLoaded()) {
+            return original.source.byteAt(offset);
+        }
+        Piece node = root;
+        while (node != null) {
+            long leftLength = length(node.left);
+            if (offset < leftLength) {
+                node = node.left;
+            } else if (offset < leftLength + node.length) {
+                return node.buffer.source.byteAt(node.start + offset - leftLength);
+            } else {
+                offset -= leftLength + node.length;
+                node = node.right;
+            }
+        }
+        throw new IndexOutOfBoundsException("Offset " + offset + " is past the end of the document");
+    }
+
+    /**
+     * Copies a range of the document into an array.
+     *
+     * @param offset The byte offset to copy from.
+     * @param dst    The destination array.
+     * @param dstPos The position in the destination array.
+     * @param length The number of bytes to copy.
+     */
+    @Override
+    public void read(long offset, byte[] dst, int dstPos, int length) {
+        if (!checkLoaded()) {
+            original.source.read(offset, dst, dstPos, length);
+            return;
+        }
+        read(root, 0, offset, offset + length, dst, dstPos - offset);
+    }
+
+    private void read(Piece node, long base, long from, long to, byte[] dst, long dstShift) {
+        if (node == null || from >= to) {
+            return;
+        }
+        long pieceStart = base + length(node.left);
+        long pieceEnd = pieceStart + node.length;
+        if (from < pieceStart) {
+            read(node.left, base, from, Math.min(to, pieceStart), dst, dstShift);
+        }
+        long copyStart = Math.max(from, pieceStart);
+        long copyEnd = Math.min(to, pieceEnd);
+        if (copyStart < copyEnd) {
+            node.buffer.source.read(node.start + copyStart - pieceStart,
+                                    dst, (int) (copyStart + dstShift), (int) (copyEnd - copyStart));
+        }
+        if (to > pieceEnd) {
+            read(node.right, pieceEnd, Math.max(from, pieceEnd), to, dst, dstShift);
+        }
+    }
+
+    /**
+     * Adds to the length of the piece containing a document offset, updating subtree sums on the way down.
+     */
+    private void extend(Piece node, long offset, long length, int lineFeeds) {
+        while (node != null) {
+            node.subtreeLength += length;
+            node.subtreeLineFeeds += lineFeeds;
+            long leftLength = length(node.left);
+            if (offset < leftLength) {
+                node = node.left;
+            } else if (offset < leftLength + node.length) {
+                node.length += length;
+                node.lineFeeds += lineFeeds;
+                return;
+            } else {
+                offset -= leftLength + node.length;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Splits a treap so that splitLeft holds the first offset bytes and splitRight holds the rest.
+     */
+    private void split(Piece node, long offset) {
+        if (node == null) {
+            splitLeft = null;
+            splitRight = null;
+            return;
+        }
+        long leftLength = length(node.left);
+        if (offset <= leftLength) {
+            split(node.left, offset);
+            node.left = splitRight;
+            update(node);
+            splitRight = node;
+        } else if (offset >= leftLength + node.length) {
+            split(node.right, offset - leftLength - node.length);
+            node.right = splitLeft;
+            update(node);
+            splitLeft = node;
+        } else {
+            long cut = offset - leftLength;
+            Piece tail = newPiece(node.buffer, node.start + cut, node.length - cut);
+            Piece right = node.right;
+            node.length = cut;
+            node.lineFeeds = node.buffer.countLineFeeds(node.start, node.start + cut);
+            node.right = null;
+            update(node);
+            splitRight = merge(tail, right);
+            splitLeft = node;
+        }
+    }
+
+    private Piece merge(Piece left, Piece right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private Piece newPiece(Buffer buffer, long start, long length) {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        Piece piece = new Piece(buffer, start, length, buffer.countLineFeeds(start, start + length), seed);
+        update(piece);
+        return piece;
+    }
+
+    private static void update(Piece node) {
+        node.subtreeLength = length(node.left) + node.length + length(node.right);
+        node.subtreeLineFeeds = lineFeeds(node.left) + node.lineFeeds + lineFeeds(node.right);
+    }
+
+    private static long length(Piece node) {
+        return node == null ? 0 : node.subtreeLength;
+    }
+
+    private static int lineFeeds(Piece node) {
+        return node == null ? 0 : node.subtreeLineFeeds;
+    }
+
+    /**
+     * A treap node referencing a byte range of one of the buffers.
+     */
+    private static final class Piece {
+        final Buffer buffer;
+        final int priority;
+        long start;
+        long length;
+        int lineFeeds;
+        Piece left, right;
+        long subtreeLength;
+        int subtreeLineFeeds;
+
+        Piece(Buffer buffer, long start, long length, int lineFeeds, int priority) {
+            this.buffer = buffer;
+            this.start = start;
+            this.length = length;
+            this.lineFeeds = lineFeeds;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * The ranges of the pieces of a document at one moment.
+     */
+    private static final class PieceSnapshot implements Snapshot {
+        private final TextSource[] sources;
+        private final long[] starts;
+        private final long[] lengths;
+        private final long length;
+        private int count;
+
+        PieceSnapshot(int capacity, long length) {
+            this.sources = new TextSource[capacity];
+            this.starts = new long[capacity];
+            this.lengths = new long[capacity];
+            this.length = length;
+        }
+
+        void add(Piece node, Buffer original, TextSource added) {
+            if (node == null) {
+                return;
+            }
+            add(node.left, original, added);
+            sources[count] = node.buffer == original ? original.source : added;
+            starts[count] = node.start;
+            lengths[count++] = node.length;
+            add(node.right, original, added);
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public void writeTo(WritableByteChannel target, ByteBuffer buffer) throws IOException {
+            buffer.clear();
+            for (int i = 0; i < count; i++) {
+                sources[i].transferTo(starts[i], lengths[i], target, buffer);
+            }
+            TextSource.flush(buffer, target);
+        }
+    }
+
+    /**
+     * A source of bytes along with the index of the line feeds it contains.
+     */
+    private static final class Buffer {
+        final TextSource source;
+        final LineIndex lineFeeds;
+
+        Buffer(TextSource source, LineIndex lineFeeds) {
+            this.source = source;
+            this.lineFeeds = lineFeeds;
+        }
+
+        int countLineFeeds(long start, long end) {
+            return lineFeeds.countLineFeeds(start, end);
+        }
+
+        long lineFeedAt(long start, int k) {
+            return lineFeeds.lineFeedAt(start, k);
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.example.texteditor;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Finds a regular expression in a {@link Document}, line by line, in either direction.
+ * <p>
+ * Compiled patterns are kept in a small LRU cache, so typing, deleting and stepping through
+ * matches compile each regex once. Each line is decoded into a reusable char array and
+ * matched by a single {@link Matcher} that is reset for every line.
+ * <p>
+ * Backtracking can make a pattern take exponential time on a line, so every line gets a budget
+ * of chars the matcher may look at, and the whole search gets a time budget. A search that
+ * runs out of either stops and tells why through {@link #getError()}.
+ */
+final class RegexSearch {
+
+    private static final int CACHE_SIZE = 32;
+    private static final long MIN_STEPS = 1_000_000;    // Chars the matcher may read per line...
+    private static final int STEPS_PER_CHAR = 100;      // ...plus this many per char of the line
+    private static final long TIME_BUDGET_NANOS = 2_000_000_000L;
+    private static final int LINES_PER_CLOCK_CHECK = 256;
+
+    private final Map<String, Pattern> patterns = new LinkedHashMap<String, Pattern>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final BudgetedText text = new BudgetedText();
+    private Matcher matcher;
+    private byte[] block = new byte[1 << 16];   // Bytes of the document from blockStart on
+    private ByteBuffer in = ByteBuffer.wrap(block);
+    private CharBuffer out = CharBuffer.wrap(text.chars);
+    private long blockStart;
+    private int blockCount;
+    private long lineStart;             // Offset of the line decoded into the text
+    private int lineOffset;             // Index of the line in the block
+    private int lineLength;             // Bytes in the line, without its terminator
+    private int matchLength;            // Bytes of the last match found
+    private boolean valid;
+    private String error;
+
+    /**
+     * Sets the regex to search for, compiling it unless it was used recently.
+     *
+     * @param regex      The regular expression to find.
+     * @param ignoreCase Whether ASCII letters match regardless of case.
+     * @param wholeWord  Whether matches must be whole words.
+     * @return False if the regex is not valid; {@link #getError()} tells why.
+     */
+    boolean setQuery(String regex, boolean ignoreCase, boolean wholeWord) {
+        String key = (ignoreCase ? "i" : "-") + (wholeWord ? "w" : "-") + regex;
+        Pattern pattern = patterns.get(key);
+        error = null;
+        valid = false;
+        if (pattern == null) {
+            try {
+                pattern = Pattern.compile(wholeWord ? "\\b(?:" + regex + ")\\b" : regex,
+                                          ignoreCase ? Pattern.CASE_INSENSITIVE : 0);
+            } catch (PatternSyntaxException e) {
+                error = "invalid regex";
+                return false;
+            }
+            patterns.put(key, pattern);
+        }
+        valid = true;
+        if (matcher == null) {
+            matcher = pattern.matcher(text);
+        } else {
+            matcher.usePattern(pattern);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the length of the last match found.
+     *
+     * @return The number of bytes the match spans, which may be 0.
+     */
+    int getLength() {
+        return matchLength;
+    }
+
+    /**
+     * Tells why the last search or query found nothing, if it was not for a lack of matches.
+     *
+     * @return The reason, or null if the search finished.
+     */
+    String getError() {
+        return error;
+    }
+
+    /**
+     * Finds the first match starting at or after an offset.
+     *
+     * @param content The document to search.
+     * @param from    The byte offset to start at.
+     * @return The byte offset of the match, or -1 if there is none or the search stopped.
+     */
+    long findForward(Document content, long from) {
+        if (!valid) {
+            return -1;
+        }
+        error = null;
+        blockCount = 0;
+        long deadline = System.nanoTime() + TIME_BUDGET_NANOS;
+        int line = content.getLineAt(Math.max(from, 0));
+        for (long next = content.getLineStart(line); next >= 0; line++) {
+            if (line % LINES_PER_CLOCK_CHECK == 0 && System.nanoTime() > deadline) {
+                error = "regex search timed out";
+                return -1;
+            }
+            next = readLineAt(content, next);
+            if (from - lineStart > lineLength) {
+                continue;   // Starts past the end of the line, in its terminator
+            }
+            int column = from > lineStart ? Utf8.charCount(block, lineOffset, lineOffset + (int) (from - lineStart)) : 0;
+            try {
+                for (int start = column; start <= text.length && matcher.find(start); start = matcher.start() + 1) {
+                    if (!text.splitsPair(matcher.start())) {
+                        return toOffset();
+                    }
+                }
+            } catch (StackOverflowError | RunawayException e) {
+                error = "regex too slow on line " + (line + 1);
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Collects the non-empty matches starting at or after an offset, in order, each starting
+     * after the one before it ends, until enough have been found. Lines are read through the
+     * block, so a batch of matches reads the document once.
+     *
+     * @param content The document to search.
+     * @param from    The byte offset to start at.
+     * @param offsets The array to store the byte offsets of the matches in.
+     * @param lengths The array to store the byte lengths of the matches in.
+     * @param max     The number of matches to stop after.
+     * @return The number of matches stored; fewer than max if the search reached the end of
+     *         the document or stopped, in which case {@link #getError()} tells why.
+     */
+    int findAll(Document content, long from, long[] offsets, int[] lengths, int max) {
+        if (!valid) {
+            return 0;
+        }
+        error = null;
+        blockCount = 0;
+        long deadline = System.nanoTime() + TIME_BUDGET_NANOS;
+        int found = 0;
+        int line = content.getLineAt(Math.max(from, 0));
+        for (long next = content.getLineStart(line); next >= 0 && found < max; line++) {
+            if (line % LINES_PER_CLOCK_CHECK == 0 && System.nanoTime() > deadline) {
+                error = "regex search timed out";
+                return found;
+            }
+            next = readLineAt(content, next);
+            if (from - lineStart > lineLength) {
+                continue;
+            }
+            int column = from > lineStart ? Utf8.charCount(block, lineOffset, lineOffset + (int) (from - lineStart)) : 0;
+            try {
+                for (int start = column; start <= text.length && found < max && matcher.find(start); ) {
+                    if (matcher.end() == matcher.start() || text.splitsPair(matcher.start())) {
+                        start = matcher.start() + 1;
+                        continue;
+                    }
+                    start = matcher.end();
+                    offsets[found] = toOffset();
+                    lengths[found++] = matchLength;
+                    text.steps = MIN_STEPS + (long) STEPS_PER_CHAR * text.length;
+                }
+            } catch (StackOverflowError | RunawayException e) {
+                error = "regex too slow on line " + (line + 1);
+                return found;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the last match starting before an offset.
+     *
+     * @param content The document to search.
+     * @param before  The byte offset matches must start before.
+     * @return The byte offset of the match, or -1 if there is none or the search stopped.
+     */
+    long findBackward(Document content, long before) {
+        if (!valid || before <= 0) {
+            return -1;
+        }
+        error = null;
+        long deadline = System.nanoTime() + TIME_BUDGET_NANOS;
+        for (int line = content.getLineAt(Math.min(before, content.length())); line >= 0; line--) {
+            if (line % LINES_PER_CLOCK_CHECK == 0 && System.nanoTime() > deadline) {
+                error = "regex search timed out";
+                return -1;
+            }
+            // Going backward, only the line itself is read
+            blockCount = 0;
+            readLineAt(content, content.getLineStart(line));
+            int limit = before - lineStart <= lineLength
+                        ? Utf8.charCount(block, lineOffset, lineOffset + (int) (before - lineStart)) : text.length + 1;
+            try {
+                // The last match in a line is found by going through all of them
+                int last = -1, lastEnd = 0;
+                for (int start = 0; start <= text.length && matcher.find(start) && matcher.start() < limit; ) {
+                    if (text.splitsPair(matcher.start())) {
+                        start = matcher.start() + 1;
+                        continue;
+                    }
+                    last = matcher.start();
+                    lastEnd = matcher.end();
+                    start = lastEnd > last ? lastEnd : last + 1;
+                }
+                if (last >= 0) {
+                    matcher.find(last);
+                    return toOffset();
+                }
+            } catch (StackOverflowError | RunawayException e) {
+                error = "regex too slow on line " + (line + 1);
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the matches in one line, for highlighting them. A line the regex is too slow on
+     * gives the matches found before it ran out of budget.
+     *
+     * @param content The document holding the line.
+     * @param line    The line index.
+     * @param max     The number of matches to stop after.
+     * @return The char offsets [start, end) of the matches in the line, in pairs.
+     */
+    int[] findInLine(Document content, int line, int max) {
+        if (!valid) {
+            return new int[0];
+        }
+        blockCount = 0;
+        readLineAt(content, content.getLineStart(line));
+        int[] spans = new int[16];
+        int found = 0;
+        try {
+            for (int start = 0; start <= text.length && found < max && matcher.find(start); ) {
+                if (text.splitsPair(matcher.start())) {
+                    start = matcher.start() + 1;
+                    continue;
+                }
+                if (2 * found == spans.length) {
+                    spans = Arrays.copyOf(spans, spans.length * 2);
+                }
+                spans[2 * found] = matcher.start();
+                spans[2 * found + 1] = matcher.end();
+                found++;
+                start = matcher.end() > matcher.start() ? matcher.end() : matcher.start() + 1;
+            }
+        } catch (StackOverflowError | RunawayException e) {
+            // Keep the matches found so far
+        }
+        return Arrays.copyOf(spans, 2 * found);
+    }
+
+    /**
+     * Converts the match the matcher holds to a byte offset, remembering its length.
+     */
+    private long toOffset() {
+        text.steps = Long.MAX_VALUE;
+        int start = Utf8.encodedLength(text, 0, matcher.start());
+        matchLength = Utf8.encodedLength(text, matcher.start(), matcher.end());
+        return lineStart + start;
+    }
+
+    /**
+     * Reads the line starting at an offset, through the block so that the lines after it are
+     * read along, and decodes it into the text for the matcher.
+     *
+     * @return The offset of the next line, or -1 if this is the last line.
+     */
+    private long readLineAt(Document content, long start) {
+        long length = content.length();
+        while (true) {
+            int from = (int) (start - blockStart);
+            if (start >= blockStart && from <= blockCount) {
+                for (int i = from; i < blockCount; i++) {
+                    if (block[i] == '\n') {
+                        // A carriage return before the line feed is part of the terminator
+                        decodeLine(start, from, i > from && block[i - 1] == '\r' ? i - 1 - from : i - from);
+                        return blockStart + i + 1;
+                    }
+                }
+                if (blockStart + blockCount == length) {
+                    decodeLine(start, from, blockCount - from);
+                    return -1;
+                }
+            }
+            // Read on from the line, with room for at least twice as much if it did not fit
+            if (start == blockStart && blockCount == block.length) {
+                block = new byte[block.length * 2];
+                in = ByteBuffer.wrap(block);
+            }
+            blockStart = start;
+            blockCount = (int) Math.min(block.length, length - start);
+            content.read(start, block, 0, blockCount);
+        }
+    }
+
+    /**
+     * Decodes a line in the block into the text and gives the matcher a fresh budget for it.
+     */
+    private void decodeLine(long start, int offset, int count) {
+        lineStart = start;
+        lineOffset = offset;
+        lineLength = count;
+        if (text.chars.length < count) {
+            text.chars = new char[Math.max(count, text.chars.length * 2)];
+            out = CharBuffer.wrap(text.chars);
+        }
+        // ASCII needs no decoder
+        char[] chars = text.chars;
+        int i = 0;
+        while (i < count && block[offset + i] >= 0) {
+            chars[i] = (char) block[offset + i];
+            i++;
+        }
+        if (i < count) {
+            in.limit(offset + count);
+            in.position(offset + i);
+            out.clear();
+            out.position(i);
+            decoder.reset();
+            decoder.decode(in, out, true);
+            decoder.flush(out);
+            i = out.position();
+        }
+        text.length = i;
+        text.steps = MIN_STEPS + (long) STEPS_PER_CHAR * i;
+        matcher.reset(text);
+    }
+
+    /**
+     * Thrown when a matcher runs out of its budget for a line. It has no stack trace, so it is
+     * cheap to throw.
+     */
+    private static final class RunawayException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        RunawayException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final RunawayException RUNAWAY = new RunawayException();
+
+    /**
+     * A line of text that counts the chars the matcher reads and stops it when there have been
+     * too many.
+     */
+    private static final class BudgetedText implements CharSequence {
+        char[] chars = new char[256];
+        int length;
+        long steps;
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Checks whether an index falls between the two chars of a surrogate pair, where an
+         * empty match may be found but no byte offset fits.
+         */
+        boolean splitsPair(int index) {
+            return index > 0 && index < length && Character.isLowSurrogate(chars[index]) && Character.isHighSurrogate(chars[index - 1]);
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (--steps < 0) {
+                throw RUNAWAY;
+            }
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+}
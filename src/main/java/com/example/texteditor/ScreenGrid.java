@@ -0,0 +1,303 @@
+package com.example.texteditor;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * An in-memory screen that takes the output sent to a terminal and keeps the char and style
+ * of every cell and the cursor position, so what a real terminal would show can be read back
+ * without one.
+ * <p>
+ * Only the sequences {@link Frame} sends are acted on: cursor position, erase the screen,
+ * erase to the end of the row, colors, and setting and scrolling the scrolling region. Other
+ * escape sequences are skipped. A wide char takes its cell and the one after it, which is
+ * left empty; a char that combines with the one before is dropped.
+ */
+final class ScreenGrid implements WritableByteChannel {
+
+    private static final int TEXT = 0, ESCAPE = 1, CONTROL_SEQUENCE = 2;
+    private static final int WIDE_TAIL = -1;     // Cell covered by the wide char before it
+
+    private int rows, columns;
+    private int[][] chars;          // Code point in each cell, 0 if blank
+    private int[][] styles;         // Style of each cell, see Frame.style(int, int)
+    private int row, column, style;
+    private int top, bottom;        // Rows [top, bottom) scroll together
+    private long bytesWritten;
+
+    private int state = TEXT;
+    private final StringBuilder parameters = new StringBuilder();
+    private int codePoint, needed;  // Char being decoded and the bytes it still needs
+
+    /**
+     * Constructs a blank screen.
+     *
+     * @param rows    The number of rows.
+     * @param columns The number of columns.
+     */
+    ScreenGrid(int rows, int columns) {
+        resize(rows, columns);
+    }
+
+    /**
+     * Changes the size of the screen and blanks it, as terminals do when their window is
+     * resized and the program redraws.
+     */
+    void resize(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        this.chars = new int[rows][columns];
+        this.styles = new int[rows][columns];
+        row = column = 0;
+        top = 0;
+        bottom = rows;
+    }
+
+    @Override
+    public int write(ByteBuffer source) {
+        int count = source.remaining();
+        while (source.hasRemaining()) {
+            accept(source.get() & 0xFF);
+        }
+        bytesWritten += count;
+        return count;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void accept(int b) {
+        switch (state) {
+            case ESCAPE:
+                state = b == '[' ? CONTROL_SEQUENCE : TEXT;
+                parameters.setLength(0);
+                return;
+            case CONTROL_SEQUENCE:
+                if (b >= 0x20 && b <= 0x3F) {
+                    parameters.append((char) b);
+                } else {
+                    state = TEXT;
+                    apply(b);
+                }
+                return;
+            default:
+                break;
+        }
+        if (needed > 0 && (b & 0xC0) == 0x80) {
+            codePoint = codePoint << 6 | b & 0x3F;
+            if (--needed == 0) {
+                put(codePoint);
+            }
+            return;
+        }
+        needed = 0;
+        if (b == 27) {
+            state = ESCAPE;
+        } else if (b == '\r') {
+            column = 0;
+        } else if (b == '\n') {
+            row = Math.min(row + 1, rows - 1);
+        } else if (b >= 0x20 && b < 0x7F) {
+            put(b);
+        } else if ((b & 0xE0) == 0xC0) {
+            codePoint = b & 0x1F;
+            needed = 1;
+        } else if ((b & 0xF0) == 0xE0) {
+            codePoint = b & 0x0F;
+            needed = 2;
+        } else if ((b & 0xF8) == 0xF0) {
+            codePoint = b & 0x07;
+            needed = 3;
+        }
+    }
+
+    /**
+     * Writes a char at the cursor and moves the cursor past it. Chars past the end of the row
+     * are dropped, as the editor never relies on the terminal wrapping rows.
+     */
+    private void put(int c) {
+        int width = CharWidth.of(c);
+        if (width == 0 || column + width > columns) {
+            return;
+        }
+        chars[row][column] = c;
+        styles[row][column] = style;
+        if (width == 2) {
+            chars[row][column + 1] = WIDE_TAIL;
+            styles[row][column + 1] = style;
+        }
+        column += width;
+    }
+
+    /**
+     * Acts on a control sequence once its final byte is read.
+     */
+    private void apply(int last) {
+        int[] numbers = parseParameters();
+        switch (last) {
+            case 'H':
+                row = clamp(number(numbers, 0, 1) - 1, rows);
+                column = clamp(number(numbers, 1, 1) - 1, columns);
+                break;
+            case 'J':
+                if (number(numbers, 0, 0) == 2) {
+                    for (int r = 0; r < rows; r++) {
+                        erase(r, 0);
+                    }
+                }
+                break;
+            case 'K':
+                erase(row, column);
+                break;
+            case 'm':
+                applyStyle(numbers);
+                break;
+            case 'r':
+                top = clamp(number(numbers, 0, 1) - 1, rows);
+                bottom = Math.max(top + 1, Math.min(number(numbers, 1, rows), rows));
+                row = column = 0;
+                break;
+            case 'S':
+                scroll(number(numbers, 0, 1));
+                break;
+            case 'T':
+                scroll(-number(numbers, 0, 1));
+                break;
+            default:
+                break;      // Such as turning bracketed paste on or off
+        }
+    }
+
+    private void applyStyle(int[] numbers) {
+        if (numbers.length == 0) {
+            style = Frame.DEFAULT_STYLE;
+        }
+        for (int n : numbers) {
+            if (n == 0) {
+                style = Frame.DEFAULT_STYLE;
+            } else if (n >= 30 && n <= 37 || n >= 90 && n <= 97) {
+                style = style & ~0xFF | n;
+            } else if (n >= 40 && n <= 47 || n >= 100 && n <= 107) {
+                style = n << 8 | style & 0xFF;
+            }
+        }
+    }
+
+    /**
+     * Moves the rows of the scrolling region up, or down if negative, blanking the rows
+     * uncovered.
+     */
+    private void scroll(int shift) {
+        for (int i = 0; i < Math.min(Math.abs(shift), bottom - top); i++) {
+            int from = shift > 0 ? top : bottom - 1;
+            int[] blankChars = chars[from], blankStyles = styles[from];
+            if (shift > 0) {
+                System.arraycopy(chars, top + 1, chars, top, bottom - top - 1);
+                System.arraycopy(styles, top + 1, styles, top, bottom - top - 1);
+                chars[bottom - 1] = blankChars;
+                styles[bottom - 1] = blankStyles;
+                erase(bottom - 1, 0);
+            } else {
+                System.arraycopy(chars, top, chars, top + 1, bottom - top - 1);
+                System.arraycopy(styles, top, styles, top + 1, bottom - top - 1);
+                chars[top] = blankChars;
+                styles[top] = blankStyles;
+                erase(top, 0);
+            }
+        }
+    }
+
+    private void erase(int r, int from) {
+        Arrays.fill(chars[r], from, columns, 0);
+        Arrays.fill(styles[r], from, columns, Frame.DEFAULT_STYLE);
+    }
+
+    private int[] parseParameters() {
+        if (parameters.length() == 0 || parameters.charAt(0) == '?') {
+            return new int[0];
+        }
+        String[] parts = parameters.toString().split(";", -1);
+        int[] numbers = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            numbers[i] = parts[i].isEmpty() ? 0 : Integer.parseInt(parts[i]);
+        }
+        return numbers;
+    }
+
+    private static int number(int[] numbers, int index, int defaultValue) {
+        return index < numbers.length && numbers[index] > 0 ? numbers[index] : defaultValue;
+    }
+
+    private static int clamp(int value, int size) {
+        return Math.max(0, Math.min(value, size - 1));
+    }
+
+    /**
+     * Gets the text shown on a row, with blank cells as spaces and trailing blanks trimmed.
+     *
+     * @param r The 0-based row.
+     * @return The text of the row.
+     */
+    String getRow(int r) {
+        StringBuilder text = new StringBuilder();
+        for (int c = 0; c < columns; c++) {
+            if (chars[r][c] != WIDE_TAIL) {
+                text.appendCodePoint(chars[r][c] == 0 ? ' ' : chars[r][c]);
+            }
+        }
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) == ' ') {
+            end--;
+        }
+        text.setLength(end);
+        return text.toString();
+    }
+
+    /**
+     * Gets the style of a cell.
+     *
+     * @return The style, see {@link Frame#style(int, int)}.
+     */
+    int getStyle(int r, int c) {
+        return styles[r][c];
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    int getCursorRow() {
+        return row;
+    }
+
+    int getCursorColumn() {
+        return column;
+    }
+
+    /**
+     * Gets the number of bytes written to the screen so far.
+     */
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int r = 0; r < rows; r++) {
+            text.append(getRow(r)).append('\n');
+        }
+        return text.toString();
+    }
+}
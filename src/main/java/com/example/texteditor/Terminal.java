@@ -1,179 +1,502 @@
 package com.example.texteditor;
 
 import java.io.IOException;
-import java.util.Collections;
-import java.util.List;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 public abstract class Terminal {
-    
+
+    private static final int HIGHLIGHT_STYLE = Frame.style(43, 30);     // Black on yellow
+    static final String BRACKETED_PASTE_ON = "\033[?2004h";
+    static final String BRACKETED_PASTE_OFF = "\033[?2004l";
+
     private int rows, columns;               // Number of rows and columns of the terminal window
     private int usedRows = 0;                // Number of rows occupied by content
 
     private String statusBarMessage = new String();
     private int statusBarTextColor = 30;
 
-    private ByteBuffer byteBuffer = new ByteBuffer();
+    private final InputDecoder decoder = new InputDecoder();         // Used by the input thread only
+    private final InputQueue input = new InputQueue();              // Keys from the input thread
+    private Thread inputThread;
+    private final StringBuilder typedText = new StringBuilder();  // Text of the last key
+    private byte[] pastedText = new byte[0];  // Text of the last paste, with line feeds only
+
+    private LineMetrics lineMetrics;         // Cached wrap counts and char widths of the lines of the document shown
+    private MatchHighlighter highlighter;    // Matches of the find query in the lines shown, null if not finding
+    private final FrameWriter frameWriter;   // Sends frames to the terminal
+    private Frame shownFrame;                // Frame currently on screen, null if unknown
+    private Frame spareFrame;                // Frame shown before it, reused for the next refresh
+
+    /**
+     * Constructs a terminal that draws to standard output.
+     */
+    protected Terminal() {
+        this.frameWriter = FrameWriter.toStandardOutput();
+    }
+
+    /**
+     * Constructs a terminal that draws to a channel.
+     *
+     * @param output The channel to send frames to.
+     */
+    Terminal(WritableByteChannel output) {
+        this.frameWriter = new FrameWriter(output);
+    }
 
     /**
      * Refreshes the terminal screen with content and cursor position.
      *
-     * @param content The list of text lines to display.
+     * @param content The document to display.
      * @param cursor  The cursor object managing position and scrolling.
      */
-    public void refreshScreen(List<String> content, Cursor cursor) {
+    public void refreshScreen(Document content, Cursor cursor) {
         drawScreen(content, cursor);
     }
 
-    public void refreshScreen(List<String> content, Cursor cursor, int textColor) {
+    public void refreshScreen(Document content, Cursor cursor, int textColor) {
         statusBarTextColor = textColor;
         drawScreen(content, cursor);
     }
 
-    public void drawScreen(List<String> content, Cursor cursor) {
-        StringBuilder builder = new StringBuilder();
-        drawContent(builder, content, cursor);
-        drawStatusBar(builder, cursor, content);
-        drawCursor(builder, content, cursor);
-        System.out.print(builder);
+    /**
+     * Lays the screen out into a frame and sends only what changed since the last frame shown.
+     */
+    public void drawScreen(Document content, Cursor cursor) {
+        // Lines not measured for this width are measured once they are about to be shown
+        while (getLineMetrics(content).reflow(cursor.getOffsetY(), cursor.getOffsetY() + rows + 2, columns, this)) {
+            cursor.refreshWraps(content, rows, columns, this);
+        }
+        Frame frame = nextFrame();
+        drawContent(frame, content, cursor);
+        drawStatusBar(frame, cursor, content);
+        drawCursor(frame, content, cursor);
+        frame.writeDiff(shownFrame, frameWriter);
+        frameWriter.flush();
+        spareFrame = shownFrame;
+        shownFrame = frame;
     }
 
     /**
-     * Draws the file content with line wrapping.
+     * Gets a blank frame the size of the window, reusing the one shown before last if possible.
      */
-    private void drawContent(StringBuilder builder, List<String> content, Cursor cursor) {
+    private Frame nextFrame() {
+        Frame frame = spareFrame;
+        if (frame == null || frame.getRows() != rows + 2 || frame.getColumns() != columns) {
+            return new Frame(rows + 2, columns, rows + 1);
+        }
+        frame.clear();
+        return frame;
+    }
+
+    /**
+     * Highlights every match of a query in the lines shown, until the query is set to an empty
+     * string.
+     *
+     * @param content    The document shown.
+     * @param query      The text or regex to find.
+     * @param ignoreCase Whether ASCII letters match regardless of case.
+     * @param wholeWord  Whether matches must be whole words.
+     * @param regex      Whether the query is a regular expression.
+     */
+    void setHighlight(Document content, String query, boolean ignoreCase, boolean wholeWord, boolean regex) {
+        if (highlighter == null || !highlighter.isFor(content)) {
+            if (query.isEmpty()) {
+                return;
+            }
+            highlighter = new MatchHighlighter(content);
+        }
+        highlighter.setQuery(query, ignoreCase, wholeWord, regex);
+    }
+
+    /**
+     * Draws the file content with line wrapping, highlighting the matches of the find query.
+     */
+    private void drawContent(Frame frame, Document content, Cursor cursor) {
         usedRows = 0;
         cursor.resetPageWrap();
-        builder.append("\033[H"); // move cursor to top-left
+        int row = 0;
         for (int i = 0; i <= rows - cursor.getPageWrap(); i++) {
-            if (i + cursor.getOffsetY() >= content.size()) {
-                builder.append("~");  // draw ~
-                builder.append("\033[K\r\n");
+            if (i + cursor.getOffsetY() >= content.getLineCount()) {
+                frame.put(row++, '~', 1, Frame.DEFAULT_STYLE);  // draw ~
             } else {
-                String buffer = content.get(i + cursor.getOffsetY());
+                String buffer = content.getLine(i + cursor.getOffsetY());
+                int first = 0;      // Index in the line of the first char drawn
                 if (cursor.getCursorX() < (rows + 1) * columns) {
                     buffer = buffer.substring(0, Math.min(buffer.length(), (rows + 1) * columns));
                 } else {
-                    buffer = buffer.substring(cursor.getCursorX() - (rows + 1) * columns + 1, Math.min(buffer.length(), cursor.getCursorX() + 1));
+                    first = cursor.getCursorX() - (rows + 1) * columns + 1;
+                    buffer = buffer.substring(first, Math.min(buffer.length(), cursor.getCursorX() + 1));
                 }
-                int wrap = cursor.getWrap(buffer, columns, this);
+                // A line clipped to fit the screen is measured as clipped
+                int line = i + cursor.getOffsetY();
+                boolean whole = buffer.length() == content.getLineLength(line);
+                int wrap = whole ? getLineWrap(content, line, columns) : cursor.getWrap(buffer, columns, this);
                 if (wrap < rows - cursor.getPageWrap() - i + 1 || wrap >= rows - 1) {
-                    builder.append(buffer);  // draw a line of content
-                    usedRows += cursor.getWrap(buffer, columns, this) + 1;
+                    int[] spans = highlighter != null && highlighter.isFor(content) ? highlighter.getSpans(line) : null;
+                    row = drawLine(frame, row, buffer, whole ? getLineCharWidths(content, line, columns) : null, spans, first);  // draw a line of content
+                    usedRows += wrap + 1;
                 } else {
                     for (int j = 0; j < rows - cursor.getPageWrap() - i + 1; j++) {
-                        builder.append("@\033[K\r\n");  // draw @
+                        frame.put(row++, '@', 1, Frame.DEFAULT_STYLE);  // draw @
                     }
                     break;
                 }
                 cursor.addPageWrap(wrap);
-                int lineLength = content.get(i + cursor.getOffsetY()).length();
-                boolean isLineFull = lineLength > 0 && (lineLength % columns == 0);
-                builder.append(isLineFull ? "\033[\r\n" : "\033[K\r\n");  // draw new line character
             }
         }
     }
 
+    /**
+     * Lays a line out over as many content rows as it wraps to, the way the terminal wraps it.
+     *
+     * @param widths The cached widths of the chars of the line, or null to measure each char.
+     * @param spans  The char offsets [start, end) of the matches to highlight, in pairs, or null.
+     * @param first  The index in the whole line of the first char of the text drawn.
+     * @return The row after the last one used.
+     */
+    private int drawLine(Frame frame, int row, String line, byte[] widths, int[] spans, int first) {
+        int column = 0;
+        int span = 0;
+        for (int i = 0; i < line.length() && row <= rows; i++) {
+            char c = line.charAt(i);
+            int width = widths != null ? widths[i] : getCharWidth(line, i);
+            if (column + width > columns) {
+                row++;
+                column = 0;
+                if (row > rows) {
+                    break;
+                }
+            }
+            int style = Frame.DEFAULT_STYLE;
+            if (spans != null) {
+                while (span < spans.length && spans[span + 1] <= first + i) {
+                    span += 2;
+                }
+                if (span < spans.length && spans[span] <= first + i) {
+                    style = HIGHLIGHT_STYLE;
+                }
+            }
+            frame.put(row, c, width, style);
+            column += width;
+        }
+        return row + 1;
+    }
+
     /**
      * Draws the status bar with editor information.
      */
-    private void drawStatusBar(StringBuilder builder, Cursor cursor, List<String> content) {
-        builder.append("\033[47;");
-        builder.append(statusBarTextColor);
-        builder.append("m");
-        drawStatusBarMessage(builder, cursor, content);
+    private void drawStatusBar(Frame frame, Cursor cursor, Document content) {
+        int style = Frame.style(47, statusBarTextColor);
+        int row = rows + 1, column = 0;
+        if (!statusBarMessage.isEmpty()) {
+            column = drawText(frame, row, column, statusBarMessage, style);
+        } else {
+            if (!content.isLoaded()) {
+                column = drawText(frame, row, column, "Loading ", style);
+                column = drawNumber(frame, row, column, content.getLoadProgress(), style);
+                column = drawText(frame, row, column, "% ", style);
+            }
+            column = drawText(frame, row, column, "R: ", style);
+            column = drawNumber(frame, row, column, usedRows, style);
+            column = drawText(frame, row, column, " cY: ", style);
+            column = drawNumber(frame, row, column, cursor.getCursorY(), style);
+            column = drawText(frame, row, column, " oY: ", style);
+            column = drawNumber(frame, row, column, cursor.getOffsetY(), style);
+            column = drawText(frame, row, column, " pw: ", style);
+            column = drawNumber(frame, row, column, cursor.getPageWrap(), style);
+            column = drawText(frame, row, column, " cw: ", style);
+            column = drawNumber(frame, row, column, cursor.getCursorWrap(), style);
+            column = drawText(frame, row, column, " hw: ", style);
+            column = drawNumber(frame, row, column, cursor.getHiddenWrap(), style);
+        }
+        for (; column < columns; column++) {
+            frame.put(row, ' ', 1, style);
+        }
     }
 
-    private void drawStatusBarMessage(StringBuilder builder, Cursor cursor, List<String> content) {
-        String statusBarMessage = this.statusBarMessage.isEmpty() ?
-            "R: " + usedRows + " cY: " + cursor.getCursorY() + " oY: " + cursor.getOffsetY() + " pw: " + cursor.getPageWrap() + " cw: " + cursor.getCursorWrap() + " hw: " + cursor.getHiddenWrap() :
-            this.statusBarMessage;
-        builder.append(statusBarMessage).append(String.join("", Collections.nCopies(Math.max(0, (columns - statusBarMessage.length())), " ")));
-        builder.append("\033[0m"); // Reset ANSI attributes to normal
+    /**
+     * Draws text on one row, dropping whatever does not fit.
+     *
+     * @return The column after the text.
+     */
+    private int drawText(Frame frame, int row, int column, String text, int style) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int width = getCharWidth(text, i);
+            if (column + width > columns) {
+                break;
+            }
+            frame.put(row, c, width, style);
+            column += width;
+        }
+        return column;
+    }
+
+    /**
+     * Draws a number in decimal on one row, without formatting it into a string first.
+     *
+     * @return The column after the number.
+     */
+    private int drawNumber(Frame frame, int row, int column, int number, int style) {
+        long value = number;
+        if (value < 0) {
+            frame.put(row, '-', 1, style);
+            column++;
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0 && column < columns; divisor /= 10, column++) {
+            frame.put(row, (char) ('0' + value / divisor % 10), 1, style);
+        }
+        return column;
     }
 
     /**
      * Positions the cursor on the screen.
      */
-    private void drawCursor(StringBuilder builder, List<String> content, Cursor cursor) {
+    private void drawCursor(Frame frame, Document content, Cursor cursor) {
         int cursorX, cursorY = 0;
-        String line = content.isEmpty() ? "" : content.get(cursor.getCursorY());
+        String line = content.getLine(cursor.getCursorY());
         if (cursor.getCursorX() < (rows + 1) * columns) {
             line = line.substring(0, Math.min(line.length(), (rows + 1) * columns));
-            cursorY = Math.min(cursor.getCursorY() - cursor.getOffsetY() + cursor.getCursorWrap() - cursor.getHiddenWrap() + getLineWidthUpTo(line, cursor.getCursorX(), columns) / columns + 1, rows + 1);
-            cursorX = getLineWidthUpTo(line, cursor.getCursorX(), columns) % columns + 1;
+            byte[] widths = getLineCharWidths(content, cursor.getCursorY(), columns);
+            int width = widths != null ? LineMetrics.getWidthUpTo(widths, cursor.getCursorX(), columns) : getLineWidthUpTo(line, cursor.getCursorX(), columns);
+            cursorY = Math.min(cursor.getCursorY() - cursor.getOffsetY() + cursor.getCursorWrap() - cursor.getHiddenWrap() + width / columns + 1, rows + 1);
+            cursorX = width % columns + 1;
         } else {
-            line = line.substring(cursor.getCursorX() - (rows + 1) * columns + 1, Math.min(line.length(), cursor.getCursorX() + 1));
             cursorY = rows + 1;
             cursorX = columns;
         }
-        builder.append(String.format("\033[%d;%dH", cursorY, cursorX));
+        frame.setCursor(cursorY - 1, cursorX - 1);
     }
 
     /**
-     * Reads a single keypress from standard input.
+     * Gets the number of extra rows a line of a document wraps onto. Each line is measured once
+     * and then only again after it is edited or the number of columns changes.
      *
-     * @return The key code or -1 if an error occurs.
+     * @param content The document holding the line.
+     * @param line    The line index.
+     * @param columns The number of columns in the terminal.
+     * @return The number of rows the line takes, minus one.
      */
-    public int getKey() {
-        try {
-            byteBuffer.clear();
-            System.in.read(byteBuffer.getBuffer());
-            int firstByte = byteBuffer.next();
+    public int getLineWrap(Document content, int line, int columns) {
+        return getLineMetrics(content).getWrap(line, columns, this);
+    }
 
-            if (firstByte != '\033') {
-                return firstByte;
-            }
+    /**
+     * Gets the total number of extra rows the lines before a line of a document wrap onto.
+     *
+     * @param content The document holding the lines.
+     * @param line    The line index.
+     * @param columns The number of columns in the terminal.
+     * @return The sum of the wraps of the lines before the line.
+     */
+    public int getWrapsBefore(Document content, int line, int columns) {
+        return getLineMetrics(content).getWrapsBefore(line, columns, this);
+    }
+
+    /**
+     * Finds the line of a document shown on a row, counting rows from the top of the document
+     * as if it were drawn without scrolling.
+     *
+     * @param content The document holding the lines.
+     * @param row     The 0-based row.
+     * @param columns The number of columns in the terminal.
+     * @return The line index, or the line count if the row is past the end of the document.
+     */
+    public int getLineAtRow(Document content, int row, int columns) {
+        return getLineMetrics(content).getLineAtRow(row, columns, this);
+    }
+
+    /**
+     * Gets the cached widths of the chars of a line of a document.
+     *
+     * @return The widths, or null if the line is too long to cache them.
+     */
+    private byte[] getLineCharWidths(Document content, int line, int columns) {
+        return getLineMetrics(content).getCharWidths(line, columns, this);
+    }
 
-            int secondByte = byteBuffer.next();
+    private LineMetrics getLineMetrics(Document content) {
+        if (lineMetrics == null || !lineMetrics.isFor(content)) {
+            lineMetrics = new LineMetrics(content);
+        }
+        return lineMetrics;
+    }
+
+    /**
+     * Gets the number of columns a code point takes on screen.
+     *
+     * @param c The code point.
+     * @return The number of columns, 0 for a char that combines with the one before.
+     */
+    int getCharWidth(long c) {
+        return c > Character.MAX_CODE_POINT ? 0 : CharWidth.of((int) c);
+    }
 
-            if (secondByte != '[' && secondByte == 0) {
-                return firstByte;
+    /**
+     * Gets the number of columns the char at an index of a text takes on screen. A surrogate
+     * pair is measured as one code point: its first half takes the columns and its second half
+     * takes none.
+     *
+     * @param text  The text.
+     * @param index The index of the char.
+     * @return The number of columns, 0 for a char that combines with the one before.
+     */
+    int getCharWidth(CharSequence text, int index) {
+        char c = text.charAt(index);
+        if (Character.isHighSurrogate(c) && index + 1 < text.length() && Character.isLowSurrogate(text.charAt(index + 1))) {
+            return getCharWidth(Character.toCodePoint(c, text.charAt(index + 1)));
+        }
+        if (Character.isLowSurrogate(c) && index > 0 && Character.isHighSurrogate(text.charAt(index - 1))) {
+            return 0;
+        }
+        return getCharWidth(c);
+    }
+
+    /**
+     * Gets the width of a line laid out over rows of the given width, where a wide char that
+     * does not fit at the end of a row moves to the next one.
+     *
+     * @param line    The line.
+     * @param columns The number of columns in the terminal.
+     * @return The width, including the cells left empty at the end of rows.
+     */
+    int getLineWidth(String line, int columns) {
+        return getLineWidthUpTo(line, line.length(), columns);
+    }
+
+    /**
+     * Gets the width of the first chars of a line, laid out like {@link #getLineWidth}.
+     *
+     * @param line    The line.
+     * @param cursorX The number of chars to measure.
+     * @param columns The number of columns in the terminal.
+     * @return The width, including the cells left empty at the end of rows.
+     */
+    int getLineWidthUpTo(String line, int cursorX, int columns) {
+        int lineWidth = 0;
+        int i = 0;
+        while (i < cursorX) {
+            // Printable ASCII takes one column per char and never moves to the next row early
+            int ascii = CharWidth.countAscii(line, i, cursorX);
+            lineWidth += ascii;
+            i += ascii;
+            if (i == cursorX) {
+                break;
+            }
+            int charWidth = getCharWidth(line, i);
+            if (lineWidth % columns + charWidth > columns) {
+                lineWidth += columns - lineWidth % columns;
             }
+            lineWidth += charWidth;
+            i++;
+        }
+        return lineWidth;
+    }
 
-            int thirdByte = byteBuffer.next();
-            if (secondByte == '[') {
-                switch (thirdByte) {
-                    case 'A': return TextEditor.ARROW_UP;
-                    case 'B': return TextEditor.ARROW_DOWN;
-                    case 'C': return TextEditor.ARROW_RIGHT;
-                    case 'D': return TextEditor.ARROW_LEFT;
-                    case 'F': return TextEditor.END;
-                    case 'H': return TextEditor.HOME;
-                    case '1': case '3': case '4': case '5': case '6': case '7': case '8':
-                        int fourthByte = byteBuffer.next();
-                        if (fourthByte == '~') {
-                            switch (thirdByte) {
-                                case '1': case '7': return TextEditor.HOME;
-                                case '3': return TextEditor.DEL;
-                                case '4': case '8': return TextEditor.END;
-                                case '5': return TextEditor.PAGE_UP;
-                                case '6': return TextEditor.PAGE_DOWN;
-                            }
-                        } else if (fourthByte == ';') {
-                            int sixthByte = byteBuffer.skip();
-                            switch (sixthByte) {
-                                case 'A': return TextEditor.PAGE_UP;
-                                case 'B': return TextEditor.PAGE_DOWN;
-                                case 'C': case 'F': return TextEditor.END;
-                                case 'D': case 'H': return TextEditor.HOME;
-                            }
-                            return sixthByte;
-                        }
-                        return fourthByte;
-                    default:
-                        return thirdByte;
-                }
-            } else {
-                switch (thirdByte) {
-                    case 'F': return TextEditor.END;
-                    case 'H': return TextEditor.HOME;
-                    default: return thirdByte;
+    /**
+     * Gets the next keypress, waiting for one if none has been read yet. The text of a typed
+     * key is kept as the typed text, and so is the first line of pasted text, so prompts take
+     * a paste as typed; the whole of it is kept as the pasted text.
+     *
+     * @return The key code or {@link TextEditor#END_OF_INPUT} if the input has ended.
+     */
+    public int getKey() {
+        InputQueue queue = getInput();
+        while (!queue.await(Long.MAX_VALUE)) {
+            // Woken by a redraw, which only the main loop acts on
+        }
+        int key = queue.take(typedText);
+        if (key == TextEditor.PASTE) {
+            pastedText = queue.getPasted();
+            int lineEnd = 0;
+            while (lineEnd < pastedText.length && pastedText[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            typedText.setLength(0);
+            typedText.append(new String(pastedText, 0, lineEnd, StandardCharsets.UTF_8));
+        }
+        return key;
+    }
+
+    /**
+     * Waits for a keypress without taking it, returning early when a redraw is posted.
+     *
+     * @param millis The longest time to wait, in milliseconds.
+     * @return True if a keypress can be taken immediately.
+     */
+    public boolean awaitKey(long millis) {
+        return getInput().await(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * Checks whether a keypress can be taken without blocking.
+     *
+     * @return True if a keypress has been read and not taken yet.
+     */
+    public boolean isKeyAvailable() {
+        return getInput().isReady();
+    }
+
+    /**
+     * Asks the main loop to redraw the screen as soon as it is waiting for keys. Background
+     * tasks call this from their own threads when they have something new to show.
+     */
+    public void postRedraw() {
+        input.postRedraw();
+    }
+
+    /**
+     * Gets the queue of keys read, starting the thread that reads them on first use.
+     */
+    private InputQueue getInput() {
+        if (inputThread == null) {
+            inputThread = new Thread(this::readInput, "input");
+            inputThread.setDaemon(true);
+            inputThread.start();
+        }
+        return input;
+    }
+
+    /**
+     * Reads the input stream on the input thread, decoding each read into keys for the queue.
+     */
+    private void readInput() {
+        try {
+            InputStream in = getInputStream();
+            while (decoder.read(in) >= 0) {
+                while (decoder.hasNext()) {
+                    int key = decoder.next();
+                    int start = decoder.getTextStart();
+                    int length = decoder.getTextLength();
+                    if (key == TextEditor.PASTE) {
+                        input.put(key, decoder.getChars(), 0, 0, Arrays.copyOfRange(decoder.getPasted(), start, start + length));
+                    } else {
+                        input.put(key, decoder.getChars(), start, length, null);
+                    }
                 }
             }
         } catch (IOException e) {
             System.err.println("Error reading input: " + e.getMessage());
         }
-        return -1;
+        input.close();
+    }
+
+    /**
+     * Gets the stream the keys typed are read from.
+     *
+     * @return Standard input.
+     */
+    InputStream getInputStream() {
+        return System.in;
     }
 
     /**
@@ -181,21 +504,39 @@ public abstract class Terminal {
      *
      * @param keyPressed The key code to process.
      * @param cursor     The cursor object managing position and scrolling.
-     * @param content    The list of text lines in the editor.
+     * @param content    The document being edited.
      */
-    public void handleKey(int keyPressed, Cursor cursor, List<String> content) {
-        cursor.editContent(keyPressed, content, byteBuffer, columns, this);
+    public void handleKey(int keyPressed, Cursor cursor, Document content) {
+        cursor.editContent(keyPressed, content, typedText, columns, this);
         cursor.moveCursor(keyPressed, content, this, usedRows, columns);
         cursor.scroll(keyPressed, content, rows, columns, this);
     }
 
-    public void handleKey(int keyPressed, Cursor cursor, List<String> content, int targetRow, int targetCol) {
-        cursor.editContent(keyPressed, content, byteBuffer, columns, this);
+    public void handleKey(int keyPressed, Cursor cursor, Document content, int targetRow, int targetCol) {
+        cursor.editContent(keyPressed, content, typedText, columns, this);
         cursor.moveCursor(keyPressed, content, this, usedRows, columns, targetRow, targetCol);
         cursor.scroll(keyPressed, content, rows, columns, this);
     }
     
 
+    /**
+     * Reads the size of the window again and, if it changed, lays the cursor out for the new
+     * size. Only the lines shown are measured for the new width, when the screen is drawn.
+     *
+     * @param content The document shown.
+     * @param cursor  The cursor object managing position and scrolling.
+     * @return True if the window was resized.
+     */
+    public boolean updateWindowSize(Document content, Cursor cursor) {
+        int oldRows = rows, oldColumns = columns;
+        initWindowSize();
+        if (rows == oldRows && columns == oldColumns) {
+            return false;
+        }
+        cursor.refreshWraps(content, rows, columns, this);
+        return true;
+    }
+
     // Getters
     public int getRows() {
         return rows;
@@ -213,8 +554,12 @@ public abstract class Terminal {
         return statusBarTextColor;
     }
 
-    public ByteBuffer getByteBuffer() {
-        return byteBuffer;
+    public CharSequence getTypedText() {
+        return typedText;
+    }
+
+    public byte[] getPastedText() {
+        return pastedText;
     }
 
     // Setters
@@ -237,13 +582,13 @@ public abstract class Terminal {
         statusBarTextColor = color;
     }
 
-    public void updateStatusBarMessage(String message, Cursor cursor, List<String> content) {
+    public void updateStatusBarMessage(String message, Cursor cursor, Document content) {
         setStatusBarTextColor(30);
         setStatusBarMessage(message);
         refreshScreen(content, cursor);
     }
 
-    public void updateStatusBarMessage(String message, Cursor cursor, List<String> content, int textColor) {
+    public void updateStatusBarMessage(String message, Cursor cursor, Document content, int textColor) {
         setStatusBarMessage(message);
         refreshScreen(content, cursor, textColor);
     }
@@ -252,8 +597,5 @@ public abstract class Terminal {
     abstract void disableRawMode();
     abstract void initWindowSize();
     abstract void setLocale();
-    abstract int getCharWidth(long c);
-    abstract int getLineWidth(String line, int columns);
-    abstract int getLineWidthUpTo(String line, int cursorX, int columns);
     abstract void exit();
 }
@@ -1,7 +1,7 @@
 package com.example.texteditor;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.List;
 import java.util.function.BiConsumer;
 
 import com.sun.jna.Platform;
@@ -25,28 +25,58 @@ public class TextEditor {
     public static final int END = 1007;
     public static final int DEL = 1008;
     public static final int FIND = 1009;
+    public static final int GOTO_LINE = 1010;
+    public static final int PASTE = 1011;
+    public static final int END_OF_INPUT = -1;
 
     private final Terminal terminal;
     private final FileHandler fileHandler;
     private final Cursor cursor;
-    private List<String> content;
+    private Document content;
     private int keyPressed;
 
-    public static final String DEFAULT_FIND_PROMPT = "Find %s (use Arrow/Enter/ESC)";
+    private static final long LOADING_REFRESH_MS = 100;
+    private static final long RESIZE_POLL_MS = 250;
+    private static final int REPLACE_BATCH = 1 << 16;     // Matches replaced in one operation
+    private static final long UNDO_MEMORY = Long.getLong("texteditor.undo.memory", 64) << 20;
+
+    public static final String DEFAULT_FIND_PROMPT = "Find %s (use Arrow/Enter/ESC, Ctrl+T ignore case, Ctrl+W whole word, Ctrl+R regex, Ctrl+E replace all)";
+    public static final String DEFAULT_REPLACE_PROMPT = "(use Enter/ESC, \\n for a line break)";
+    public static final String DEFAULT_GOTO_LINE_PROMPT = "Go to line (use Enter/ESC)";
     private enum SearchDir {
         FORWARD, BACKWRAD;
     }
     boolean matchFound = false;
     int matchX = 0, matchY = 0;
+    long matchOffset = 0;                       // Byte offset of the match in the document
+    private final IncrementalSearch search = new IncrementalSearch();
+    private final MatchCounter matchCounter;
+    private final RegexSearch regexSearch = new RegexSearch();
+    private UndoLog undoLog;
+    private boolean saving;                     // Whether a save was started and its outcome not shown yet
+    private boolean saveAgain;                  // Whether to save again once the running save finishes
+    private boolean ignoreCase = false;
+    private boolean wholeWord = false;
+    private boolean regex = false;
 
     /**
      * Constructs a new TextEditor instance.
      */
     public TextEditor() {
-        this.terminal = (Platform.isMac() || Platform.isLinux()) ? new UnixBasedTerminal() : new WindowsTerminal();
+        this((Platform.isMac() || Platform.isLinux()) ? new UnixBasedTerminal() : new WindowsTerminal());
+    }
+
+    /**
+     * Constructs a TextEditor that runs on the given terminal.
+     *
+     * @param terminal The terminal to read keys from and draw to.
+     */
+    TextEditor(Terminal terminal) {
+        this.terminal = terminal;
         this.fileHandler = new FileHandler();
         this.cursor = new Cursor();
-        this.content = Arrays.asList();
+        this.content = new PieceTable();
+        this.matchCounter = new MatchCounter(terminal::postRedraw);
     }
 
     /**
@@ -67,17 +97,39 @@ public class TextEditor {
     public void run (String[] args) {
         fileHandler.openFile(args);
         content = fileHandler.getContent();
+        search.setIndex(fileHandler.getTrigramIndex());
+        undoLog = new UndoLog(content, UNDO_MEMORY, !fileHandler.isRecovered());
+        if (fileHandler.isRecovered()) {
+            cursor.markContentChanged();
+        }
         // Enable raw mode to capture keypresses directly without buffering
         terminal.enableRawMode();
         terminal.initWindowSize();
         terminal.setLocale();
         
         while (true) {
+            finishSave();
+            terminal.updateWindowSize(content, cursor);
             terminal.refreshScreen(content, cursor);
-            keyPressed = terminal.getKey();
-            terminal.updateStatusBarMessage("", cursor, content);
-            keyPressed = handleActions(keyPressed);
-            terminal.handleKey(keyPressed, cursor, content);
+            // Background work posts redraws while waiting; the window size is polled regularly
+            while (!terminal.awaitKey(content.isLoaded() ? RESIZE_POLL_MS : LOADING_REFRESH_MS)) {
+                finishSave();
+                terminal.updateWindowSize(content, cursor);
+                terminal.refreshScreen(content, cursor);
+            }
+            // Every key read while the last frame was drawn is applied before the next one
+            do {
+                keyPressed = terminal.getKey();
+                if (keyPressed == TextEditor.END_OF_INPUT) {
+                    quitAtEndOfInput();
+                    return;
+                }
+                terminal.setStatusBarTextColor(30);
+                terminal.setStatusBarMessage("");
+                undoLog.mark();
+                keyPressed = handleActions(keyPressed);
+                terminal.handleKey(keyPressed, cursor, content);
+            } while (terminal.isKeyAvailable());
         }    
     }
 
@@ -92,33 +144,122 @@ public class TextEditor {
                 StringBuilder builder = new StringBuilder();
                 builder.append(userMsg.isEmpty() ? defaultMsg : userMsg);
                 terminal.updateStatusBarMessage(builder.toString(), cursor, content);
-            }, terminal.getByteBuffer());
+            }, terminal.getTypedText());
+        } else if (keyPressed == ctrl('g')) {
+            goToLine();
         } else if (keyPressed == ctrl('q')) {
             if (!cursor.isContentChanged()) {
+                fileHandler.closeFile();
                 terminal.exit();
             } else {
                 terminal.updateStatusBarMessage("Cannot quit with unsaved changes [Ctrl+s to save]", cursor, content, 31);
             }
         } else if (keyPressed == ctrl('s')) {
-            fileHandler.saveFile(cursor, terminal);
-            cursor.resetContentChanged();
+            // A save asked for while one runs follows it, to write the edits made meanwhile
+            saveAgain = !startSave();
+            terminal.updateStatusBarMessage("Saving...", cursor, content);
+        } else if (keyPressed == ctrl('z')) {
+            undo(false);
+        } else if (keyPressed == ctrl('y')) {
+            undo(true);
         } else if (keyPressed == ctrl('h')) {
             keyPressed = TextEditor.BACKSPACE;
         }
         return keyPressed;
     }
 
+    /**
+     * Starts saving the document in the background, unless a save is running already.
+     *
+     * @return True if the save started.
+     */
+    private boolean startSave() {
+        if (!fileHandler.startSave(terminal::postRedraw)) {
+            return false;
+        }
+        undoLog.markSaving();
+        saving = true;
+        return true;
+    }
+
+    /**
+     * Shows the outcome of a save once it has finished in the background. The document counts
+     * as unchanged only if it was not edited while it was being saved.
+     */
+    private void finishSave() {
+        if (!saving || fileHandler.isSaving()) {
+            return;
+        }
+        saving = false;
+        if (!fileHandler.isSaved()) {
+            saveAgain = false;
+            terminal.setStatusBarMessage("Error saving file");
+            terminal.setStatusBarTextColor(31);
+            return;
+        }
+        undoLog.markSaved();
+        if (undoLog.isSaved()) {
+            cursor.resetContentChanged();
+        }
+        if (saveAgain) {
+            saveAgain = false;
+            startSave();
+            return;
+        }
+        terminal.setStatusBarMessage("Saved file successfully!");
+        terminal.setStatusBarTextColor(34);
+    }
+
+    /**
+     * Quits once no more keys can be read, as when standard input is closed. A running save
+     * is finished first, and edits that are still unsaved are left in the journal, to be
+     * recovered the next time the file is opened.
+     */
+    private void quitAtEndOfInput() {
+        saveAgain = false;
+        fileHandler.awaitSave();
+        finishSave();
+        if (cursor.isContentChanged()) {
+            fileHandler.closeFileKeepingEdits();
+        } else {
+            fileHandler.closeFile();
+        }
+        terminal.exit();
+    }
+
+    /**
+     * Undoes or redoes a step and moves the cursor to where it started. The document counts as
+     * unchanged again once it is back in the state last saved.
+     *
+     * @param redo Whether to redo the last step undone rather than undo the last step.
+     */
+    private void undo(boolean redo) {
+        long offset = redo ? undoLog.redo() : undoLog.undo();
+        if (offset < 0) {
+            terminal.updateStatusBarMessage(redo ? "Nothing to redo" : "Nothing to undo", cursor, content);
+            return;
+        }
+        if (undoLog.isSaved()) {
+            cursor.resetContentChanged();
+        } else {
+            cursor.markContentChanged();
+        }
+        int line = content.getLineAt(offset);
+        terminal.handleKey(TextEditor.FIND, cursor, content, line, search.getSearch().getColumn(content, line, offset));
+    }
+
     /**
      * Implements the find functionality, allowing the user to input a search string
      * and navigate matches using arrow keys or Enter.
      *
      * @param prompt BiConsumer to update the status bar with the search prompt.
      */
-    private void find(BiConsumer<String, String> prompt, ByteBuffer byteBuffer) {
+    private void find(BiConsumer<String, String> prompt, CharSequence typedText) {
         StringBuilder builder = new StringBuilder();
+        search.reset();
 
         while (true) {
-            prompt.accept(DEFAULT_FIND_PROMPT, builder.toString());
+            showFindPrompt(prompt, builder);
             int keyRead = terminal.getKey();
             switch (keyRead) {
                 case TextEditor.BACKSPACE:
@@ -136,6 +277,7 @@ public class TextEditor {
                     findNext(SearchDir.BACKWRAD, builder);
                     break;
                 case TextEditor.ESC:
+                case TextEditor.END_OF_INPUT:
                     escapeFind(builder);
                     return;
                 case TextEditor.HOME:
@@ -148,14 +290,66 @@ public class TextEditor {
                     if (keyRead == ctrl('q')) {
                         escapeFind(builder);
                         return;
+                    } else if (keyRead == ctrl('t')) {
+                        ignoreCase = !ignoreCase;
+                        findStringInText(builder);
+                    } else if (keyRead == ctrl('w')) {
+                        wholeWord = !wholeWord;
+                        findStringInText(builder);
+                    } else if (keyRead == ctrl('r')) {
+                        regex = !regex;
+                        findStringInText(builder);
+                    } else if (keyRead == ctrl('e')) {
+                        if (builder.length() > 0 && replaceAll(builder, typedText)) {
+                            return;
+                        }
                     } else if (!Character.isISOControl(keyRead)) {
-                        builder.append(new String(byteBuffer.getFilteredBuffer()));
+                        builder.append(typedText);
                         findStringInText(builder);
                     } 
             }
         }
     }
 
+    /**
+     * Shows the find prompt, and updates the match count in it each time the counter posts
+     * progress, until the matches are counted or a key is pressed.
+     */
+    private void showFindPrompt(BiConsumer<String, String> prompt, StringBuilder builder) {
+        boolean counted;
+        do {
+            // Checked before drawing, so the last prompt drawn shows the final count
+            counted = !matchCounter.isRunning();
+            prompt.accept(DEFAULT_FIND_PROMPT, builder.length() == 0 ? "" : builder + getFindModes() + getMatchCount());
+        } while (!counted && !terminal.awaitKey(Long.MAX_VALUE));
+    }
+
+    /**
+     * Describes which match is shown and how many there are, as far as they have been counted.
+     */
+    private String getMatchCount() {
+        if (regex) {
+            return regexSearch.getError() == null ? "" : " (" + regexSearch.getError() + ")";
+        }
+        if (!matchCounter.isRunning() && !matchCounter.isDone()) {
+            return "";
+        }
+        boolean done = matchCounter.isDone();
+        String total = matchCounter.getTotal() + (done ? "" : "+");
+        if (!matchFound) {
+            return done ? " (no matches)" : "";
+        }
+        int index = matchCounter.getIndex(matchOffset);
+        return index < 0 ? " (" + total + " matches)" : " (match " + (index + 1) + " of " + total + ")";
+    }
+
+    /**
+     * Describes the find modes that are switched on, to show after the search string.
+     */
+    private String getFindModes() {
+        return (ignoreCase ? " [ignore case]" : "") + (wholeWord ? " [whole word]" : "") + (regex ? " [regex]" : "");
+    }
+
     /**
      * Searches for a string in the content and updates cursor if a match is found.
      *
@@ -163,68 +357,247 @@ public class TextEditor {
      */
     private void findStringInText (StringBuilder builder) {
         matchFound = false;
-        String searchString = builder.toString();
-        int i = 0;
-        while (i < content.size()) {
-            String contentLine = content.get(i);
-            if (contentLine.contains(searchString)) {
-                matchFound = true;
-                matchX = contentLine.indexOf(searchString);
-                matchY = i;
-                terminal.handleKey(TextEditor.FIND, cursor, content, matchY, matchX);
-                terminal.refreshScreen(content, cursor);
-                break;
+        terminal.setHighlight(content, builder.toString(), ignoreCase, wholeWord, regex);
+        if (regex) {
+            matchCounter.cancel();
+            if (builder.length() > 0 && regexSearch.setQuery(builder.toString(), ignoreCase, wholeWord)) {
+                long offset = regexSearch.findForward(content, 0);
+                if (offset >= 0) {
+                    showMatch(offset);
+                }
             }
-            i++;
+            return;
+        }
+        long offset = search.find(content, builder.toString(), ignoreCase, wholeWord);
+        if (offset >= 0) {
+            showMatch(offset);
+        }
+        // A document still loading is counted once it is searched again
+        if (content.isLoaded()) {
+            matchCounter.start(content, builder.toString(), ignoreCase, wholeWord, search.getSearch().getCandidates());
+        } else {
+            matchCounter.cancel();
         }
     }
 
     /**
-     * Finds the next or previous match of the search string in the specified direction.
+     * Finds the next or previous match of the search string in the specified direction,
+     * wrapping around the ends of the content.
      *
      * @param dir The search direction (FORWARD or BACKWRAD).
      * @param builder The search string to find.
      */
     private void findNext(SearchDir dir, StringBuilder builder) {
-        String searchString = builder.toString();
-        if (!matchFound || content.size() <= 0 || searchString.length() <= 0) {
+        if (!matchFound || content.getLineCount() <= 0 || builder.length() <= 0) {
             return;
         }
-        int startY = matchY;
-        int searchY = startY;
-        int startX = matchX;
-        int searchX = startX + (dir == SearchDir.FORWARD ? searchString.length() : -1);
+        TextSearch search = this.search.getSearch();
+        int index = matchCounter.isDone() ? matchCounter.getIndex(matchOffset) : -1;
+        long offset;
+        if (index >= 0) {
+            // Step through the counted matches by number
+            int total = matchCounter.getTotal();
+            offset = matchCounter.getMatch(dir == SearchDir.FORWARD ? (index + 1) % total : (index + total - 1) % total);
+        } else if (regex) {
+            offset = findNextRegex(dir);
+        } else if (dir == SearchDir.FORWARD) {
+            offset = search.findForward(content, matchOffset + search.getLength());
+            if (offset < 0) {
+                offset = search.findForward(content, 0);
+            }
+        } else {
+            offset = search.findBackward(content, matchOffset);
+            if (offset < 0) {
+                offset = search.findBackward(content, content.length());
+            }
+        }
+        if (offset >= 0) {
+            showMatch(offset);
+        }
+    }
 
-        while (searchY != startY || searchX != startX) {
-            String contentLine = (dir == SearchDir.FORWARD ? content.get(searchY).substring(searchX) : content.get(searchY).substring(0, searchX + 1));
-            int nextMatch = (dir == SearchDir.FORWARD ? contentLine.indexOf(searchString) : contentLine.lastIndexOf(searchString));
+    /**
+     * Finds the next or previous match of the regex, wrapping around the ends of the content.
+     * An empty match is stepped over by one byte, which the search rounds up to the next char.
+     */
+    private long findNextRegex(SearchDir dir) {
+        long offset;
+        if (dir == SearchDir.FORWARD) {
+            offset = regexSearch.findForward(content, matchOffset + Math.max(regexSearch.getLength(), 1));
+            if (offset < 0 && regexSearch.getError() == null) {
+                offset = regexSearch.findForward(content, 0);
+            }
+        } else {
+            offset = regexSearch.findBackward(content, matchOffset);
+            if (offset < 0 && regexSearch.getError() == null) {
+                offset = regexSearch.findBackward(content, content.length() + 1);
+            }
+        }
+        return offset;
+    }
 
-            if (nextMatch != -1) {
-                matchY = searchY;
-                matchX = (dir == SearchDir.FORWARD? searchX + nextMatch : nextMatch);
-                terminal.handleKey(TextEditor.FIND, cursor, content, matchY, matchX);
-                terminal.refreshScreen(content, cursor);
+    /**
+     * Moves the cursor to a match and scrolls it into view.
+     *
+     * @param offset The byte offset of the match.
+     */
+    private void showMatch(long offset) {
+        matchFound = true;
+        matchOffset = offset;
+        matchY = content.getLineAt(offset);
+        matchX = search.getSearch().getColumn(content, matchY, offset);
+        terminal.handleKey(TextEditor.FIND, cursor, content, matchY, matchX);
+        terminal.refreshScreen(content, cursor);
+    }
+
+    /**
+     * Asks for the text to put in place of every match of the search string, then replaces
+     * them all and redraws the screen once.
+     *
+     * @param builder The search string.
+     * @return True if the matches were replaced, false if the replace was cancelled.
+     */
+    private boolean replaceAll(StringBuilder builder, CharSequence typedText) {
+        StringBuilder replacement = new StringBuilder();
+        while (true) {
+            terminal.updateStatusBarMessage("Replace " + builder + getFindModes() + " with " + replacement + " " + DEFAULT_REPLACE_PROMPT, cursor, content);
+            int keyRead = terminal.getKey();
+            if (keyRead == TextEditor.BACKSPACE || keyRead == TextEditor.DEL) {
+                replacement.setLength(Math.max(replacement.length() - 1, 0));
+            } else if (keyRead == TextEditor.ENTER) {
                 break;
-            } else {
-                searchY =  wrapSearchY(searchY + (dir == SearchDir.FORWARD ? 1 : -1));
-                searchX = (dir == SearchDir.FORWARD ? 0 : content.get(searchY).length() - 1);
+            } else if (keyRead == TextEditor.ESC || keyRead == ctrl('q') || keyRead == TextEditor.END_OF_INPUT) {
+                return false;
+            } else if (keyRead < TextEditor.ARROW_UP && !Character.isISOControl(keyRead)) {
+                replacement.append(typedText);
+            }
+        }
+        matchCounter.cancel();
+        terminal.setHighlight(content, "", ignoreCase, wholeWord, regex);
+        String message;
+        if (regex && !regexSearch.setQuery(builder.toString(), ignoreCase, wholeWord)) {
+            message = "Nothing replaced (" + regexSearch.getError() + ")";
+        } else {
+            int count = replaceMatches(builder.toString(), unescape(replacement).getBytes(StandardCharsets.UTF_8));
+            message = "Replaced " + count + (count == 1 ? " match" : " matches")
+                      + (regex && regexSearch.getError() != null ? " (" + regexSearch.getError() + ")" : "");
+            if (count > 0) {
+                cursor.markContentChanged();
+                matchY = content.getLineAt(matchOffset);
+                matchX = search.getSearch().getColumn(content, matchY, matchOffset);
+                terminal.handleKey(TextEditor.FIND, cursor, content, matchY, matchX);
             }
         }
+        terminal.updateStatusBarMessage(message, cursor, content);
+        return true;
     }
 
     /**
-     * Wraps the search line index to loop around content boundaries.
+     * Replaces every match in batches, each made in one operation on the document. A batch is
+     * collected before it is replaced, and the next search starts after its last replacement,
+     * so replacements are never searched again.
      *
-     * @param searchY The current line index.
-     * @return The wrapped line index.
+     * @return The number of matches replaced; matchOffset is left at the first of them.
      */
-    private int wrapSearchY(int searchY) {
-        if (searchY >= content.size()) {
-            searchY = 0;
-        } else if (searchY < 0) {
-            searchY = content.size() - 1;
+    private int replaceMatches(String query, byte[] replacement) {
+        TextSearch textSearch = new TextSearch();
+        TrigramIndex index = fileHandler.getTrigramIndex();
+        long[] offsets = new long[REPLACE_BATCH];
+        int[] lengths = new int[REPLACE_BATCH];
+        byte[][] replacements = new byte[REPLACE_BATCH][];
+        Arrays.fill(replacements, replacement);
+        int replaced = 0;
+        for (long position = 0; ; ) {
+            int found, count;
+            if (regex) {
+                found = count = regexSearch.findAll(content, position, offsets, lengths, REPLACE_BATCH);
+                position = count > 0 ? offsets[count - 1] + lengths[count - 1] : position;
+            } else {
+                textSearch.setQuery(query, ignoreCase, wholeWord);
+                if (index != null) {
+                    textSearch.setCandidates(index.getCandidates(content, query));
+                }
+                found = textSearch.findAll(content, position, Long.MAX_VALUE, offsets, 0, REPLACE_BATCH);
+                // Matches may overlap, as in "aaa" for "aa"; only the first of them is replaced
+                count = 0;
+                long end = position;
+                for (int i = 0; i < found; i++) {
+                    if (offsets[i] >= end) {
+                        offsets[count] = offsets[i];
+                        lengths[count++] = textSearch.getLength();
+                        end = offsets[i] + textSearch.getLength();
+                    }
+                }
+                position = Math.max(textSearch.getScanEnd(), end);
+            }
+            if (count == 0) {
+                return replaced;
+            }
+            if (replaced == 0) {
+                matchOffset = offsets[0];
+            }
+            content.replace(offsets, lengths, count, replacements);
+            replaced += count;
+            for (int i = 0; i < count; i++) {
+                position += replacement.length - lengths[i];
+            }
+            if (found < REPLACE_BATCH || regex && regexSearch.getError() != null) {
+                return replaced;
+            }
+        }
+    }
+
+    /**
+     * Turns the escapes typed in a replacement into the chars they stand for: \n for a line
+     * feed, \t for a tab and \\ for a backslash.
+     */
+    private static String unescape(CharSequence text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char next = text.charAt(++i);
+                builder.append(next == 'n' ? '\n' : next == 't' ? '\t' : next);
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Asks for a line number and moves the cursor to the start of that line, scrolling it to
+     * the top of the screen.
+     */
+    private void goToLine() {
+        StringBuilder builder = new StringBuilder();
+
+        while (true) {
+            terminal.updateStatusBarMessage(builder.length() == 0 ? DEFAULT_GOTO_LINE_PROMPT : "Go to line " + builder, cursor, content);
+            int keyRead = terminal.getKey();
+            if (keyRead == TextEditor.BACKSPACE || keyRead == TextEditor.DEL) {
+                builder.setLength(Math.max(builder.length() - 1, 0));
+            } else if (keyRead == TextEditor.ESC || keyRead == ctrl('q') || keyRead == TextEditor.END_OF_INPUT) {
+                terminal.updateStatusBarMessage("", cursor, content);
+                return;
+            } else if ((keyRead < TextEditor.ARROW_UP || keyRead == TextEditor.PASTE) && !Character.isISOControl(keyRead)) {
+                // Digits typed or pasted together come as one event
+                CharSequence typedText = terminal.getTypedText();
+                for (int i = 0; i < typedText.length() && builder.length() < 9; i++) {
+                    char c = typedText.charAt(i);
+                    if (c >= '0' && c <= '9') {
+                        builder.append(c);
+                    }
+                }
+            } else if (keyRead == TextEditor.ENTER) {
+                if (builder.length() > 0) {
+                    int line = Math.min(Math.max(Integer.parseInt(builder.toString()), 1), content.getLineCount()) - 1;
+                    terminal.handleKey(TextEditor.GOTO_LINE, cursor, content, line, 0);
+                }
+                terminal.updateStatusBarMessage("", cursor, content);
+                return;
+            }
         }
-        return searchY;
     }
 
     /**
@@ -234,6 +607,8 @@ public class TextEditor {
      */
     private void escapeFind(StringBuilder builder) {
         builder.setLength(0);
+        matchCounter.cancel();
+        terminal.setHighlight(content, "", ignoreCase, wholeWord, regex);
         terminal.updateStatusBarMessage(builder.toString(), cursor, content);
     }
 
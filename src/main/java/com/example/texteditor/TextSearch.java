@@ -0,0 +1,360 @@
+package com.example.texteditor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Finds a query in the UTF-8 bytes of a {@link Document} with the Boyer-Moore-Horspool
+ * algorithm, in either direction.
+ * <p>
+ * The skip tables are built once per query. The document is read through a reusable window,
+ * so a search allocates nothing however much of the document it scans, and matches may span
+ * the pieces the document is made of. As the query is UTF-8 too, a byte match always starts
+ * and ends on a char boundary.
+ * <p>
+ * Case is ignored by folding ASCII letters in both the query and the text as they are
+ * compared, so no lowercased copy of anything is made. Whole-word matches must not be
+ * preceded or followed by a letter, digit or underscore; any non-ASCII char counts as a
+ * letter.
+ */
+final class TextSearch {
+
+    private static final int WINDOW_SIZE = 1 << 16;
+    private static final byte[] IDENTITY = new byte[256];
+    private static final byte[] ASCII_LOWER_CASE = new byte[256];
+    private static final boolean[] WORD_BYTES = new boolean[256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            IDENTITY[b] = (byte) b;
+            ASCII_LOWER_CASE[b] = (byte) (b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b);
+            WORD_BYTES[b] = b >= 0x80 || b == '_' || b >= '0' && b <= '9' || b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z';
+        }
+    }
+
+    private byte[] pattern = new byte[0];   // Query bytes, folded
+    private byte[] fold = IDENTITY;         // Maps each text byte to the byte compared with the pattern
+    private boolean wholeWord;
+    private final int[] forwardSkips = new int[256];    // By text byte; 0 if it matches the last query byte
+    private final int[] backwardSkips = new int[256];   // By text byte; 0 if it matches the first query byte
+    private final int[] shifts = new int[256];          // By folded byte, for building the skips
+    private int forwardShift, backwardShift;            // Shifts after comparing a whole window
+    private byte[] window = new byte[WINDOW_SIZE];
+    private final byte[] single = new byte[1];
+    private final long[] found = new long[1];
+    private long scanEnd;                               // See getScanEnd()
+    private long[] candidates;                          // Ranges matches may start in; null for anywhere
+
+    /**
+     * Sets the query to search for and builds its skip tables.
+     *
+     * @param query      The text to find.
+     * @param ignoreCase Whether ASCII letters match regardless of case.
+     * @param wholeWord  Whether matches must be whole words.
+     */
+    void setQuery(String query, boolean ignoreCase, boolean wholeWord) {
+        this.fold = ignoreCase ? ASCII_LOWER_CASE : IDENTITY;
+        this.wholeWord = wholeWord;
+        this.candidates = null;
+        byte[] bytes = query.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = fold[bytes[i] & 0xFF];
+        }
+        pattern = bytes;
+        int m = bytes.length;
+        if (m == 0) {
+            return;
+        }
+        // Forward: shift the last byte of the window under its last earlier occurrence
+        Arrays.fill(shifts, m);
+        for (int i = 0; i < m - 1; i++) {
+            shifts[bytes[i] & 0xFF] = m - 1 - i;
+        }
+        forwardShift = buildSkips(forwardSkips, bytes[m - 1]);
+        // Backward: shift the first byte of the window under its first later occurrence
+        Arrays.fill(shifts, m);
+        for (int i = m - 1; i > 0; i--) {
+            shifts[bytes[i] & 0xFF] = i;
+        }
+        backwardShift = buildSkips(backwardSkips, bytes[0]);
+        if (window.length < 2 * m) {
+            window = new byte[2 * m];
+        }
+    }
+
+    /**
+     * Indexes the shifts by text byte rather than folded byte, so the scan need not fold, and
+     * marks the bytes that match the query byte compared first with a skip of 0.
+     *
+     * @return The shift for a window whose compared byte matched.
+     */
+    private int buildSkips(int[] skips, byte compared) {
+        for (int b = 0; b < 256; b++) {
+            skips[b] = fold[b] == compared ? 0 : shifts[fold[b] & 0xFF];
+        }
+        return shifts[compared & 0xFF];
+    }
+
+    /**
+     * Limits the searches for the query to the ranges of the document it may match in, as told
+     * by a {@link TrigramIndex}.
+     *
+     * @param candidates Sorted, disjoint pairs of byte offsets [start, end) that every match
+     *                   starts in, or null to search everywhere.
+     */
+    void setCandidates(long[] candidates) {
+        this.candidates = candidates;
+    }
+
+    /**
+     * Gets the ranges the searches are limited to.
+     *
+     * @return The pairs of byte offsets set with {@link #setCandidates}, or null.
+     */
+    long[] getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * Gets the length of the query in bytes.
+     *
+     * @return The number of bytes a match spans.
+     */
+    int getLength() {
+        return pattern.length;
+    }
+
+    /**
+     * Finds the first match starting at or after an offset.
+     *
+     * @param content The document to search.
+     * @param from    The byte offset to start at.
+     * @return The byte offset of the match, or -1 if there is none.
+     */
+    long findForward(Document content, long from) {
+        return findAll(content, from, Long.MAX_VALUE, found, 0, 1) > 0 ? found[0] : -1;
+    }
+
+    /**
+     * Collects the matches starting in a range, in order, until enough have been found.
+     * Afterwards {@link #getScanEnd()} tells how far the range was searched.
+     *
+     * @param content The document to search.
+     * @param from    The byte offset to start at.
+     * @param to      The byte offset matches must start before.
+     * @param matches The array to store the offsets of the matches in, or null to only count them.
+     * @param start   The index in the array to store the first match at.
+     * @param max     The number of matches to stop after.
+     * @return The number of matches stored.
+     */
+    int findAll(Document content, long from, long to, long[] matches, int start, int max) {
+        if (candidates == null || max <= 0) {
+            return scan(content, from, to, matches, start, max);
+        }
+        int found = 0;
+        for (int i = firstCandidate(from); i < candidates.length && candidates[i] < to && found < max; i += 2) {
+            found += scan(content, Math.max(from, candidates[i]), Math.min(to, candidates[i + 1]),
+                          matches, start + found, max - found);
+        }
+        if (found < max) {
+            scanEnd = Math.min(Math.max(to, from), content.length());
+        }
+        return found;
+    }
+
+    /**
+     * Finds the index of the first candidate range that ends after an offset.
+     */
+    private int firstCandidate(long offset) {
+        int low = 0, high = candidates.length / 2;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (candidates[2 * mid + 1] <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return 2 * low;
+    }
+
+    /**
+     * Collects the matches starting in a range, as {@link #findAll} does, scanning all of it.
+     */
+    private int scan(Document content, long from, long to, long[] matches, int start, int max) {
+        int m = pattern.length;
+        long position = Math.max(from, 0);
+        long length = content.length();
+        if (m == 0 || max <= 0) {
+            scanEnd = position;
+            return 0;
+        }
+        // Read as far as the last byte of a match starting just before the end of the range
+        long end = to < length - m + 1 ? Math.max(to, position) + m - 1 : length;
+        scanEnd = Math.min(Math.max(to, position), length);
+        byte[] window = this.window;
+        int[] skips = forwardSkips;
+        int found = 0;
+        while (end - position >= m) {
+            int count = (int) Math.min(window.length, end - position);
+            content.read(position, window, 0, count);
+            for (int i = 0, limit = count - m; i <= limit; ) {
+                int skip = skips[window[i + m - 1] & 0xFF];
+                if (skip != 0) {
+                    i += skip;
+                    continue;
+                }
+                if (matchesAt(i) && isWordAt(content, position, count, i)) {
+                    if (matches != null) {
+                        matches[start + found] = position + i;
+                    }
+                    found++;
+                    if (found == max) {
+                        scanEnd = position + i + 1;
+                        return found;
+                    }
+                }
+                i += forwardShift;
+            }
+            // The next window overlaps this one by the bytes of a match that did not fit
+            position += count - m + 1;
+        }
+        return found;
+    }
+
+    /**
+     * Gets the offset up to which the last {@link #findAll} call looked for match starts.
+     *
+     * @return The byte offset after the last start examined.
+     */
+    long getScanEnd() {
+        return scanEnd;
+    }
+
+    /**
+     * Checks whether the query matches at an offset.
+     *
+     * @param content The document to check.
+     * @param offset  The byte offset the match would start at.
+     * @return True if there is a match at the offset.
+     */
+    boolean matchesAt(Document content, long offset) {
+        int m = pattern.length;
+        if (m == 0 || offset < 0 || offset + m > content.length()) {
+            return false;
+        }
+        content.read(offset, window, 0, m);
+        return matchesAt(0) && isWordAt(content, offset, m, 0);
+    }
+
+    /**
+     * Finds the last match starting before an offset.
+     *
+     * @param content The document to search.
+     * @param before  The byte offset matches must start before.
+     * @return The byte offset of the match, or -1 if there is none.
+     */
+    long findBackward(Document content, long before) {
+        if (candidates == null) {
+            return scanBackward(content, 0, before);
+        }
+        for (int i = firstCandidate(before); i >= 0; i -= 2) {
+            if (i < candidates.length && candidates[i] < before) {
+                long offset = scanBackward(content, candidates[i], Math.min(before, candidates[i + 1]));
+                if (offset >= 0) {
+                    return offset;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the last match starting in a range, scanning all of it.
+     */
+    private long scanBackward(Document content, long from, long before) {
+        int m = pattern.length;
+        if (m == 0) {
+            return -1;
+        }
+        byte[] window = this.window;
+        int[] skips = backwardSkips;
+        long end = Math.min(content.length(), before - 1 + m);
+        while (end - from >= m) {
+            long position = Math.max(end - window.length, from);
+            int count = (int) (end - position);
+            content.read(position, window, 0, count);
+            for (int i = count - m; i >= 0; ) {
+                int skip = skips[window[i] & 0xFF];
+                if (skip != 0) {
+                    i -= skip;
+                } else if (matchesAt(i) && isWordAt(content, position, count, i)) {
+                    return position + i;
+                } else {
+                    i -= backwardShift;
+                }
+            }
+            end = position + m - 1;
+            if (position == from) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the pattern with the window at an index.
+     */
+    private boolean matchesAt(int index) {
+        byte[] fold = this.fold;
+        for (int k = 0; k < pattern.length; k++) {
+            if (fold[window[index + k] & 0xFF] != pattern[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that a match in the window is not part of a longer word, if whole words are
+     * wanted. The bytes around it are read from the document when they are outside the window.
+     */
+    private boolean isWordAt(Document content, long position, int count, int index) {
+        if (!wholeWord) {
+            return true;
+        }
+        long start = position + index;
+        long end = start + pattern.length;
+        if (start > 0 && WORD_BYTES[(index > 0 ? window[index - 1] : byteAt(content, start - 1)) & 0xFF]) {
+            return false;
+        }
+        int after = index + pattern.length;
+        return end >= content.length() || !WORD_BYTES[(after < count ? window[after] : byteAt(content, end)) & 0xFF];
+    }
+
+    private byte byteAt(Document content, long offset) {
+        content.read(offset, single, 0, 1);
+        return single[0];
+    }
+
+    /**
+     * Converts a byte offset in a document to a char offset within its line, without decoding
+     * the line.
+     *
+     * @param content The document.
+     * @param line    The line holding the offset.
+     * @param offset  The byte offset, on a char boundary.
+     * @return The char offset within the line.
+     */
+    int getColumn(Document content, int line, long offset) {
+        long position = content.getLineStart(line);
+        int column = 0;
+        while (position < offset) {
+            int count = (int) Math.min(window.length, offset - position);
+            content.read(position, window, 0, count);
+            column += Utf8.charCount(window, 0, count);
+            position += count;
+        }
+        return column;
+    }
+}
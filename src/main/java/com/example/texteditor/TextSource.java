@@ -0,0 +1,81 @@
+package com.example.texteditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Read-only random access to a range of UTF-8 encoded bytes that backs a {@link PieceTable} buffer.
+ */
+interface TextSource {
+
+    /**
+     * Gets the number of bytes available.
+     *
+     * @return The length of the source in bytes.
+     */
+    long length();
+
+    /**
+     * Gets a single byte.
+     *
+     * @param offset The offset of the byte.
+     * @return The byte at the offset.
+     */
+    byte byteAt(long offset);
+
+    /**
+     * Copies a range of bytes into an array.
+     *
+     * @param offset The offset to copy from.
+     * @param dst    The destination array.
+     * @param dstPos The position in the destination array.
+     * @param length The number of bytes to copy.
+     */
+    void read(long offset, byte[] dst, int dstPos, int length);
+
+    /**
+     * Finds the first occurrence of a byte in a range.
+     *
+     * @param value The byte to find.
+     * @param from  The first offset to search (inclusive).
+     * @param to    The last offset to search (exclusive).
+     * @return The offset of the byte, or -1 if it does not occur in the range.
+     */
+    default long indexOf(byte value, long from, long to) {
+        for (long i = from; i < to; i++) {
+            if (byteAt(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes a range of bytes to a channel. Bytes may be staged in the buffer, which the caller
+     * flushes once the last range is written; an implementation that writes to the channel
+     * directly must flush the buffer first.
+     *
+     * @param offset The offset to write from.
+     * @param length The number of bytes to write.
+     * @param target The channel to write to.
+     * @param buffer The staging buffer, in write mode.
+     * @throws IOException if the channel cannot be written.
+     */
+    void transferTo(long offset, long length, WritableByteChannel target, ByteBuffer buffer) throws IOException;
+
+    /**
+     * Writes out and clears the bytes staged in a buffer.
+     *
+     * @param buffer The staging buffer, in write mode.
+     * @param target The channel to write to.
+     * @throws IOException if the channel cannot be written.
+     */
+    static void flush(ByteBuffer buffer, WritableByteChannel target) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,453 @@
+package com.example.texteditor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Records which three-byte sequences occur in which blocks of lines of a document, so a search
+ * only needs to scan the blocks that hold every trigram of its query.
+ * <p>
+ * The index is built in the background from the {@link TextSource} a document was opened from.
+ * The source is split into blocks of 64 KiB, and a block owns the lines that start in it. The
+ * trigrams of a segment of 64 blocks are kept in a sorted array, each with a 64-bit mask of the
+ * blocks it occurs in, so that a posting list takes one long per segment rather than one entry
+ * per line. ASCII letters are folded to lower case, so the index serves searches that ignore
+ * case too. If the index grows past its memory budget it is dropped, and searches scan the
+ * whole document as they do while it is still being built.
+ * <p>
+ * Edits keep the blocks in step with the document's lines: each block's line count is adjusted,
+ * and a block whose lines changed is indexed again from the document the next time candidates
+ * are asked for. Everything but the build runs on the editor's thread.
+ */
+final class TrigramIndex implements DocumentListener {
+
+    private static final int BLOCK_SHIFT = 16;
+    private static final int SEGMENT_SHIFT = LineIndex.SEGMENT_SHIFT;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final int BLOCKS_PER_SEGMENT = 1 << (SEGMENT_SHIFT - BLOCK_SHIFT);
+    private static final int READ_SIZE = 1 << 16;
+    private static final int[] FOLD = new int[256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            FOLD[b] = b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+        }
+    }
+
+    private final int segmentCount;
+    private final int blockCount;
+    private final long maxMemory;
+    private int[][] keys;               // Trigrams of each segment, sorted
+    private long[][] masks;             // Blocks of its segment each trigram occurs in
+    private final int[] lineCounts;     // Lines owned by each block
+    private int finishedSegments;
+    private long memory;                // Bytes used by the finished segments
+    private volatile boolean complete;
+    private volatile boolean failed;
+
+    private final List<int[]> pendingEdits = new ArrayList<>();
+    private final boolean[] dirty;      // Blocks whose lines changed since they were indexed
+    private final int[][] reindexed;    // Trigrams of blocks indexed again after edits, sorted
+
+    private TrigramIndex(long length, long maxMemory) {
+        this.segmentCount = (int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+        this.blockCount = (int) Math.max((length + (1 << BLOCK_SHIFT) - 1) >>> BLOCK_SHIFT, 1);
+        this.maxMemory = maxMemory;
+        this.keys = new int[segmentCount][];
+        this.masks = new long[segmentCount][];
+        this.lineCounts = new int[blockCount];
+        this.dirty = new boolean[blockCount];
+        this.reindexed = new int[blockCount][];
+    }
+
+    /**
+     * Starts indexing a source on the common fork/join pool and returns immediately.
+     *
+     * @param source    The source the document was opened from.
+     * @param maxMemory The number of bytes the index may use before it is dropped.
+     * @return The index being built, to be added as a listener of the document.
+     */
+    static TrigramIndex buildInBackground(TextSource source, long maxMemory) {
+        TrigramIndex index = new TrigramIndex(source.length(), maxMemory);
+        if (index.segmentCount == 0) {
+            index.lineCounts[0] = 1;
+            index.complete = true;
+        } else {
+            ForkJoinPool.commonPool().execute(index.new IndexTask(source, 0, index.segmentCount));
+        }
+        return index;
+    }
+
+    /**
+     * Checks whether the index can narrow searches.
+     *
+     * @return True if the whole source is indexed within the memory budget.
+     */
+    boolean isReady() {
+        return complete && !failed;
+    }
+
+    /**
+     * Finds the ranges of the document a query may match in.
+     *
+     * @param content The document the index belongs to.
+     * @param query   The text to find; ASCII case does not matter.
+     * @return Sorted, disjoint pairs of byte offsets [start, end) that every match starts in,
+     *         or null if the whole document has to be searched.
+     */
+    long[] getCandidates(Document content, String query) {
+        if (!isReady()) {
+            return null;
+        }
+        int[] trigrams = getTrigrams(query);
+        if (trigrams.length == 0) {
+            return null;
+        }
+        applyEdits(content);
+        long[] ranges = new long[16];
+        int count = 0;
+        int line = 0, rangeStart = -1;
+        long segmentMask = 0;
+        for (int block = 0; block < blockCount; block++) {
+            if (block % BLOCKS_PER_SEGMENT == 0) {
+                segmentMask = getSegmentMask(block / BLOCKS_PER_SEGMENT, trigrams);
+            }
+            if (lineCounts[block] == 0) {
+                continue;
+            }
+            boolean candidate = reindexed[block] != null ? containsAll(reindexed[block], trigrams)
+                                                         : (segmentMask & 1L << (block % BLOCKS_PER_SEGMENT)) != 0;
+            if (candidate && rangeStart < 0) {
+                rangeStart = line;
+            } else if (!candidate && rangeStart >= 0) {
+                ranges = addRange(ranges, count++, content, rangeStart, line);
+                rangeStart = -1;
+            }
+            line += lineCounts[block];
+        }
+        if (line != content.getLineCount()) {
+            return null;    // Out of step with the document; never narrow a search wrongly
+        }
+        if (rangeStart >= 0) {
+            ranges = addRange(ranges, count++, content, rangeStart, line);
+        }
+        return Arrays.copyOf(ranges, 2 * count);
+    }
+
+    private static long[] addRange(long[] ranges, int index, Document content, int fromLine, int toLine) {
+        if (ranges.length < 2 * index + 2) {
+            ranges = Arrays.copyOf(ranges, ranges.length * 2);
+        }
+        ranges[2 * index] = content.getLineStart(fromLine);
+        ranges[2 * index + 1] = toLine < content.getLineCount() ? content.getLineStart(toLine) : content.length();
+        return ranges;
+    }
+
+    /**
+     * Gets the blocks of a segment that hold every trigram.
+     */
+    private long getSegmentMask(int segment, int[] trigrams) {
+        if (segment >= segmentCount) {
+            return -1L;
+        }
+        long mask = -1L;
+        for (int trigram : trigrams) {
+            int index = Arrays.binarySearch(keys[segment], trigram);
+            mask &= index < 0 ? 0 : masks[segment][index];
+        }
+        return mask;
+    }
+
+    private static boolean containsAll(int[] sorted, int[] trigrams) {
+        for (int trigram : trigrams) {
+            if (Arrays.binarySearch(sorted, trigram) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the distinct folded trigrams of a query, sorted.
+     */
+    private static int[] getTrigrams(String query) {
+        byte[] bytes = query.getBytes(StandardCharsets.UTF_8);
+        TrigramTable set = new TrigramTable();
+        for (int i = 2; i < bytes.length; i++) {
+            set.add(trigram(bytes[i - 2], bytes[i - 1], bytes[i]), 1);
+        }
+        return set.toSortedKeys();
+    }
+
+    private static int trigram(int a, int b, int c) {
+        return FOLD[a & 0xFF] << 16 | FOLD[b & 0xFF] << 8 | FOLD[c & 0xFF];
+    }
+
+    @Override
+    public void onInsert(long offset, byte[] bytes) {
+    }
+
+    @Override
+    public void onDelete(long offset, long length) {
+    }
+
+    @Override
+    public void onLinesChanged(int line, int removed, int added) {
+        pendingEdits.add(new int[] { line, removed, added });
+        if (complete && pendingEdits.size() > 1024) {
+            applyPendingEdits();
+        }
+    }
+
+    /**
+     * Moves the block line counts in step with the edits made since, and indexes the blocks
+     * they changed again.
+     */
+    private void applyEdits(Document content) {
+        applyPendingEdits();
+        int line = 0;
+        for (int block = 0; block < blockCount; block++) {
+            if (dirty[block]) {
+                reindexed[block] = indexLines(content, line, lineCounts[block]);
+                dirty[block] = false;
+            }
+            line += lineCounts[block];
+        }
+    }
+
+    private void applyPendingEdits() {
+        for (int[] edit : pendingEdits) {
+            applyEdit(edit[0], edit[1], edit[2]);
+        }
+        pendingEdits.clear();
+    }
+
+    /**
+     * Adjusts the line counts for an edit. The block holding the edited line takes the added
+     * lines; removed lines come off the blocks holding them, whose other lines stay indexed.
+     */
+    private void applyEdit(int line, int removed, int added) {
+        int block = 0, first = 0;
+        while (block < blockCount - 1 && first + lineCounts[block] <= line) {
+            first += lineCounts[block++];
+        }
+        dirty[block] = true;
+        int remaining = removed;
+        int take = Math.max(Math.min(remaining, first + lineCounts[block] - line - 1), 0);
+        lineCounts[block] -= take;
+        remaining -= take;
+        for (int next = block + 1; remaining > 0 && next < blockCount; next++) {
+            take = Math.min(remaining, lineCounts[next]);
+            lineCounts[next] -= take;
+            remaining -= take;
+        }
+        lineCounts[block] += added;
+    }
+
+    /**
+     * Collects the trigrams of a range of lines of the document.
+     */
+    private static int[] indexLines(Document content, int firstLine, int lineCount) {
+        TrigramTable set = new TrigramTable();
+        if (lineCount == 0) {
+            return set.toSortedKeys();
+        }
+        long from = content.getLineStart(firstLine);
+        int endLine = firstLine + lineCount;
+        long to = endLine < content.getLineCount() ? content.getLineStart(endLine) : content.length();
+        byte[] buffer = new byte[(int) Math.min(READ_SIZE, Math.max(to - from, 1))];
+        int a = -1, b = -1;
+        for (long position = from; position < to; ) {
+            int count = (int) Math.min(buffer.length, to - position);
+            content.read(position, buffer, 0, count);
+            for (int i = 0; i < count; i++) {
+                int c = buffer[i] & 0xFF;
+                if (c == '\n') {
+                    a = b = -1;
+                } else {
+                    if (a >= 0) {
+                        set.add(a << 16 | b << 8 | FOLD[c], 1);
+                    }
+                    a = b;
+                    b = FOLD[c];
+                }
+            }
+            position += count;
+        }
+        return set.toSortedKeys();
+    }
+
+    /**
+     * Stores a finished segment, or drops the whole index if it no longer fits its budget.
+     */
+    private synchronized void publish(int segment, int[] segmentKeys, long[] segmentMasks) {
+        finishedSegments++;
+        memory += 12L * segmentKeys.length;
+        if (memory > maxMemory) {
+            failed = true;
+            keys = null;
+            masks = null;
+        } else if (!failed) {
+            keys[segment] = segmentKeys;
+            masks[segment] = segmentMasks;
+        }
+        complete = finishedSegments == segmentCount;
+    }
+
+    /**
+     * Indexes a range of segments, splitting it across the pool until one segment remains.
+     */
+    private final class IndexTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient TextSource source;
+        private final int fromSegment, toSegment;
+
+        IndexTask(TextSource source, int fromSegment, int toSegment) {
+            this.source = source;
+            this.fromSegment = fromSegment;
+            this.toSegment = toSegment;
+        }
+
+        @Override
+        protected void compute() {
+            if (toSegment - fromSegment > 1) {
+                int mid = (fromSegment + toSegment) >>> 1;
+                invokeAll(new IndexTask(source, fromSegment, mid), new IndexTask(source, mid, toSegment));
+                return;
+            }
+            if (failed) {
+                publish(fromSegment, new int[0], new long[0]);
+                return;
+            }
+            long length = source.length();
+            long from = (long) fromSegment << SEGMENT_SHIFT;
+            long to = Math.min(from + SEGMENT_SIZE, length);
+            int firstBlock = fromSegment * BLOCKS_PER_SEGMENT;
+            // Skip the end of a line that started in the segment before
+            long position = from;
+            if (from > 0 && source.byteAt(from - 1) != '\n') {
+                long lineFeed = source.indexOf((byte) '\n', from, to);
+                position = lineFeed < 0 ? to : lineFeed + 1;
+            }
+            TrigramTable table = new TrigramTable();
+            byte[] buffer = new byte[READ_SIZE];
+            int block = (int) (position >>> BLOCK_SHIFT);
+            if (position < to) {
+                lineCounts[block]++;
+            }
+            // Read on past the segment to the end of its last line
+            int a = -1, b = -1;
+            boolean lineEnded = position >= to;
+            while (!lineEnded && position < length) {
+                int count = (int) Math.min(buffer.length, length - position);
+                source.read(position, buffer, 0, count);
+                long bit = 1L << (block - firstBlock);
+                for (int i = 0; i < count; i++) {
+                    int c = buffer[i] & 0xFF;
+                    if (c != '\n') {
+                        if (a >= 0) {
+                            table.add(a << 16 | b << 8 | FOLD[c], bit);
+                        }
+                        a = b;
+                        b = FOLD[c];
+                        continue;
+                    }
+                    a = b = -1;
+                    long next = position + i + 1;
+                    if (next >= to) {
+                        lineEnded = true;
+                        break;
+                    }
+                    block = (int) (next >>> BLOCK_SHIFT);
+                    bit = 1L << (block - firstBlock);
+                    lineCounts[block]++;
+                }
+                position += count;
+            }
+            // The empty line after a final line feed belongs to the last block
+            if (to == length && source.byteAt(length - 1) == '\n') {
+                lineCounts[blockCount - 1]++;
+            }
+            int[] segmentKeys = table.toSortedKeys();
+            long[] segmentMasks = new long[segmentKeys.length];
+            for (int i = 0; i < segmentKeys.length; i++) {
+                segmentMasks[i] = table.get(segmentKeys[i]);
+            }
+            publish(fromSegment, segmentKeys, segmentMasks);
+        }
+    }
+
+    /**
+     * An open-addressing map from trigrams to the masks of the blocks they occur in, also used
+     * as a plain set of trigrams.
+     */
+    private static final class TrigramTable {
+        int[] keys = newKeys(1 << 12);
+        long[] values = new long[1 << 12];
+        int size;
+
+        static int[] newKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, -1);
+            return keys;
+        }
+
+        private int slot(int key) {
+            int mask = keys.length - 1;
+            int slot = (key * 0x9E3779B1) >>> 8 & mask;
+            while (keys[slot] != key && keys[slot] != -1) {
+                slot = slot + 1 & mask;
+            }
+            return slot;
+        }
+
+        void add(int key, long bits) {
+            int slot = slot(key);
+            if (keys[slot] == -1) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    grow();
+                    slot = slot(key);
+                }
+            }
+            values[slot] |= bits;
+        }
+
+        long get(int key) {
+            int slot = slot(key);
+            return keys[slot] == key ? values[slot] : 0;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = newKeys(oldKeys.length * 2);
+            values = new long[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != -1) {
+                    int slot = slot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        int[] toSortedKeys() {
+            int[] sorted = new int[size];
+            int n = 0;
+            for (int key : keys) {
+                if (key != -1) {
+                    sorted[n++] = key;
+                }
+            }
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
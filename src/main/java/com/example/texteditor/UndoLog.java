@@ -0,0 +1,342 @@
+package com.example.texteditor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Records the edits made to a {@link Document} as steps that can be undone and redone.
+ * <p>
+ * Each edit is kept as the bytes it inserted or deleted, which is all it takes to apply it
+ * again or in reverse; lines are never copied. The edits made for one key form one step, and
+ * chars typed one after another are merged into the step before them, so a typed word is
+ * undone at once. A step of many changes that follow each other through the document, as a
+ * paste or a replace-all makes, is undone and redone with one {@link Document#replace}, so it
+ * costs as much as the bytes it changed however many lines it spans.
+ * <p>
+ * The bytes of both the undo and the redo history count against a memory budget. When it is
+ * exceeded, the oldest steps are dropped.
+ */
+final class UndoLog implements DocumentListener {
+
+    private static final long EDIT_OVERHEAD = 48;   // Estimated bytes an edit takes besides its text
+    private static final int MAX_TYPED = 8;         // Most bytes a keystroke inserts
+    private static final byte[] TOO_BIG = new byte[0];
+
+    private final Document content;
+    private final long maxMemory;
+    private final Deque<Step> undoSteps = new ArrayDeque<>();
+    private final Deque<Step> redoSteps = new ArrayDeque<>();
+    private final Deque<byte[]> deleting = new ArrayDeque<>();  // Bytes about to be deleted
+    private long memory;
+    private boolean marked = true;      // Whether the next edit starts a new step
+    private boolean applying;           // Whether the edits seen are the log's own
+    private Step savedStep;             // Step on top of the undo history when last saved
+    private boolean savedLost;          // Whether the saved state can no longer be reached
+    private Step savingStep;            // Step on top of the undo history when the last save started
+    private boolean savingLost;         // Whether the state being saved can no longer be reached
+
+    /**
+     * Constructs an empty log and starts recording the edits made to a document.
+     *
+     * @param content   The document to record.
+     * @param maxMemory The number of bytes the history may take.
+     * @param saved     Whether the document is as saved on disk.
+     */
+    UndoLog(Document content, long maxMemory, boolean saved) {
+        this.content = content;
+        this.maxMemory = maxMemory;
+        this.savedLost = !saved;
+        content.addListener(this);
+    }
+
+    /**
+     * Ends the current step, so the next edit starts a new one unless it continues typing.
+     */
+    void mark() {
+        marked = true;
+    }
+
+    /**
+     * Remembers the current state as the one being saved to disk. Edits may follow while the
+     * save runs, and typing does not merge into the step this state ends with.
+     */
+    void markSaving() {
+        savingStep = undoSteps.peekLast();
+        savingLost = false;
+    }
+
+    /**
+     * Remembers the state the save that just finished started from as the one saved on disk.
+     */
+    void markSaved() {
+        savedStep = savingStep;
+        savedLost = savingLost;
+    }
+
+    /**
+     * Checks whether undoing and redoing has brought the document back to its saved state.
+     *
+     * @return True if the document is as last saved.
+     */
+    boolean isSaved() {
+        return !savedLost && undoSteps.peekLast() == savedStep;
+    }
+
+    /**
+     * Undoes the last step.
+     *
+     * @return The byte offset where the step started, or -1 if there is nothing to undo.
+     */
+    long undo() {
+        Step step = undoSteps.pollLast();
+        if (step == null) {
+            return -1;
+        }
+        applying = true;
+        try {
+            List<Change> changes = step.getChanges();
+            if (changes.size() > 1 && isAscending(changes)) {
+                // The text a change inserted is where it was inserted, as later changes came after it
+                int count = changes.size();
+                long[] offsets = new long[count];
+                int[] lengths = new int[count];
+                byte[][] replacements = new byte[count][];
+                for (int i = 0; i < count; i++) {
+                    Change change = changes.get(i);
+                    offsets[i] = change.offset;
+                    lengths[i] = change.inserted.length;
+                    replacements[i] = change.deleted;
+                }
+                content.replace(offsets, lengths, count, replacements);
+            } else {
+                for (int i = step.edits.size() - 1; i >= 0; i--) {
+                    Edit edit = step.edits.get(i);
+                    if (edit.insert) {
+                        content.delete(edit.offset, edit.bytes.length);
+                    } else {
+                        content.insert(edit.offset, edit.bytes);
+                    }
+                }
+            }
+        } finally {
+            applying = false;
+        }
+        redoSteps.addLast(step);
+        marked = true;
+        return step.edits.get(0).offset;
+    }
+
+    /**
+     * Redoes the last step undone.
+     *
+     * @return The byte offset where the step started, or -1 if there is nothing to redo.
+     */
+    long redo() {
+        Step step = redoSteps.pollLast();
+        if (step == null) {
+            return -1;
+        }
+        applying = true;
+        try {
+            List<Change> changes = step.getChanges();
+            if (changes.size() > 1 && isAscending(changes)) {
+                // Each change is moved back by what the changes before it added
+                int count = changes.size();
+                long[] offsets = new long[count];
+                int[] lengths = new int[count];
+                byte[][] replacements = new byte[count][];
+                long shift = 0;
+                for (int i = 0; i < count; i++) {
+                    Change change = changes.get(i);
+                    offsets[i] = change.offset - shift;
+                    lengths[i] = change.deleted.length;
+                    replacements[i] = change.inserted;
+                    shift += change.inserted.length - change.deleted.length;
+                }
+                content.replace(offsets, lengths, count, replacements);
+            } else {
+                for (Edit edit : step.edits) {
+                    if (edit.insert) {
+                        content.insert(edit.offset, edit.bytes);
+                    } else {
+                        content.delete(edit.offset, edit.bytes.length);
+                    }
+                }
+            }
+        } finally {
+            applying = false;
+        }
+        undoSteps.addLast(step);
+        marked = true;
+        return step.edits.get(0).offset;
+    }
+
+    /**
+     * Checks that each change starts at or after the end of the text the one before it inserted.
+     */
+    private static boolean isAscending(List<Change> changes) {
+        for (int i = 1; i < changes.size(); i++) {
+            Change previous = changes.get(i - 1);
+            if (changes.get(i).offset < previous.offset + previous.inserted.length) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void onInsert(long offset, byte[] bytes) {
+        if (!applying) {
+            record(new Edit(true, offset, bytes), isTyped(bytes));
+        }
+    }
+
+    @Override
+    public void onBeforeDelete(long offset, long length) {
+        if (applying) {
+            return;
+        }
+        // A delete too big to keep empties the history instead
+        byte[] bytes = TOO_BIG;
+        if (length + EDIT_OVERHEAD <= maxMemory && length < Integer.MAX_VALUE) {
+            bytes = new byte[(int) length];
+            content.read(offset, bytes, 0, bytes.length);
+        }
+        deleting.addLast(bytes);
+    }
+
+    @Override
+    public void onDelete(long offset, long length) {
+        if (applying) {
+            return;
+        }
+        byte[] bytes = deleting.pollFirst();
+        if (bytes != TOO_BIG) {
+            record(new Edit(false, offset, bytes), false);
+        } else {
+            clear();
+        }
+    }
+
+    private static boolean isTyped(byte[] bytes) {
+        if (bytes.length > MAX_TYPED) {
+            return false;
+        }
+        for (byte b : bytes) {
+            if (b == '\n') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds an edit to the current step, or starts a new step with it. An edit after the
+     * history was undone drops what could have been redone.
+     */
+    private void record(Edit edit, boolean typed) {
+        for (Step step : redoSteps) {
+            savedLost |= step == savedStep;
+            savingLost |= step == savingStep;
+            memory -= step.memory;
+        }
+        redoSteps.clear();
+        Step step = undoSteps.peekLast();
+        if (marked || step == null) {
+            // Typing on from where the last typed char went continues its step
+            boolean typing = typed && step != null && step.typing && step != savedStep && step != savingStep && edit.offset == step.typingEnd;
+            if (!typing) {
+                step = new Step();
+                undoSteps.addLast(step);
+            }
+            marked = false;
+        }
+        step.typing &= typed;
+        step.typingEnd = edit.offset + edit.bytes.length;
+        step.edits.add(edit);
+        long size = EDIT_OVERHEAD + edit.bytes.length;
+        step.memory += size;
+        memory += size;
+        while (memory > maxMemory && !undoSteps.isEmpty()) {
+            Step oldest = undoSteps.pollFirst();
+            savedLost |= savedStep == null || oldest == savedStep;
+            savingLost |= savingStep == null || oldest == savingStep;
+            memory -= oldest.memory;
+        }
+    }
+
+    /**
+     * Forgets the whole history.
+     */
+    private void clear() {
+        savedLost = true;
+        savingLost = true;
+        undoSteps.clear();
+        redoSteps.clear();
+        savedStep = null;
+        savingStep = null;
+        memory = 0;
+        marked = true;
+    }
+
+    /**
+     * The edits made for one key, or for a run of typed chars.
+     */
+    private static final class Step {
+        final List<Edit> edits = new ArrayList<>(1);
+        boolean typing = true;      // Whether only typed chars were inserted
+        long typingEnd;             // Offset after the last edit
+        long memory;
+
+        /**
+         * Pairs each delete with the insert at the same offset following it, as a replace makes.
+         */
+        List<Change> getChanges() {
+            List<Change> changes = new ArrayList<>(edits.size());
+            for (int i = 0; i < edits.size(); i++) {
+                Edit edit = edits.get(i);
+                if (edit.insert) {
+                    changes.add(new Change(edit.offset, Edit.NONE, edit.bytes));
+                } else if (i + 1 < edits.size() && edits.get(i + 1).insert && edits.get(i + 1).offset == edit.offset) {
+                    changes.add(new Change(edit.offset, edit.bytes, edits.get(++i).bytes));
+                } else {
+                    changes.add(new Change(edit.offset, edit.bytes, Edit.NONE));
+                }
+            }
+            return changes;
+        }
+    }
+
+    /**
+     * Bytes inserted or deleted at an offset, as the document was when the edit was made.
+     */
+    private static final class Edit {
+        static final byte[] NONE = new byte[0];
+
+        final boolean insert;
+        final long offset;
+        final byte[] bytes;
+
+        Edit(boolean insert, long offset, byte[] bytes) {
+            this.insert = insert;
+            this.offset = offset;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Bytes replaced at an offset by other bytes, either of which may be empty.
+     */
+    private static final class Change {
+        final long offset;
+        final byte[] deleted, inserted;
+
+        Change(long offset, byte[] deleted, byte[] inserted) {
+            this.offset = offset;
+            this.deleted = deleted;
+            this.inserted = inserted;
+        }
+    }
+}
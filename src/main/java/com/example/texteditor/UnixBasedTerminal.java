@@ -38,10 +38,15 @@ public class UnixBasedTerminal extends Terminal {
 
         // Apply the modified terminal settings
         LibC.INSTANCE.tcsetattr(LibC.SYSTEM_OUT_FD, LibC.TCSAFLUSH, termios);
+
+        System.out.print(BRACKETED_PASTE_ON);   // Have pasted text marked as such
+        System.out.flush();
     }
     
     @Override
     public void disableRawMode() {
+        System.out.print(BRACKETED_PASTE_OFF);
+        System.out.flush();
         LibC.INSTANCE.tcsetattr(LibC.SYSTEM_OUT_FD, LibC.TCSAFLUSH, originalAttributes);  // Restore original terminal attributes before exiting
     }
 
@@ -89,27 +94,4 @@ public class UnixBasedTerminal extends Terminal {
             System.exit(-1);
         }
     }
-
-    public int getCharWidth(long wc) {
-        int charWidth = LibC.INSTANCE.wcwidth(wc);
-        return charWidth > 0 ? charWidth : 0;
-    }
-    
-    @Override
-    public int getLineWidth(String line, int columns) {
-        int lineWidth = 0;
-        for (char c : line.toCharArray()) {
-            if (lineWidth % columns + getCharWidth(c) > columns) {
-                lineWidth += columns - lineWidth % columns;
-            }
-            lineWidth += getCharWidth(c);
-        }
-        return lineWidth;
-    }
-
-    @Override
-    public int getLineWidthUpTo(String line, int cursorX, int columns) {
-        return getLineWidth(line.substring(0, cursorX), columns);
-    }
-    
-}
\ No newline at end of file
+}
@@ -0,0 +1,103 @@
+package com.example.texteditor;
+
+/**
+ * Helpers for converting between UTF-16 char offsets and UTF-8 byte offsets.
+ */
+final class Utf8 {
+
+    private Utf8() {
+    }
+
+    /**
+     * Calculates the number of bytes needed to encode a range of chars as UTF-8.
+     *
+     * @param text The text to measure.
+     * @param from The first char to measure (inclusive).
+     * @param to   The last char to measure (exclusive).
+     * @return The encoded length in bytes.
+     */
+    static int encodedLength(CharSequence text, int from, int to) {
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Counts the chars a range of UTF-8 bytes decodes to, assuming it starts on a char boundary.
+     * Chars outside the Basic Multilingual Plane count twice, as a surrogate pair.
+     *
+     * @param bytes The bytes to count.
+     * @param from  The first byte to count (inclusive).
+     * @param to    The last byte to count (exclusive).
+     * @return The number of UTF-16 chars.
+     */
+    static int charCount(byte[] bytes, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int b = bytes[i] & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                count += b >= 0xF0 ? 2 : 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the length of the UTF-8 sequence starting at a byte. A malformed sequence counts as
+     * its longest well-formed prefix, and at least one byte, which is the part the JDK decoder
+     * replaces with a single U+FFFD. A sequence of four bytes decodes to a surrogate pair and
+     * any other sequence to one char.
+     *
+     * @param bytes The bytes to step through.
+     * @param i     The first byte of the sequence.
+     * @param end   The end of the bytes available (exclusive).
+     * @return The number of bytes in the sequence.
+     */
+    static int sequenceLength(byte[] bytes, int i, int end) {
+        int b = bytes[i] & 0xFF;
+        int length;
+        int low = 0x80, high = 0xBF;    // Range of the second byte
+        if (b < 0xC2) {
+            return 1;                   // ASCII, a stray continuation byte or an overlong lead byte
+        } else if (b < 0xE0) {
+            length = 2;
+        } else if (b < 0xF0) {
+            length = 3;
+            if (b == 0xE0) {
+                low = 0xA0;             // An encoded surrogate after 0xED is replaced as a whole
+            }
+        } else if (b < 0xF5) {
+            length = 4;
+            if (b == 0xF0) {
+                low = 0x90;
+            } else if (b == 0xF4) {
+                high = 0x8F;
+            }
+        } else {
+            return 1;                   // Past the last code point
+        }
+        int n = 1;
+        while (n < length && i + n < end) {
+            int c = bytes[i + n] & 0xFF;
+            if (c < low || c > high) {
+                break;
+            }
+            low = 0x80;
+            high = 0xBF;
+            n++;
+        }
+        return n;
+    }
+}
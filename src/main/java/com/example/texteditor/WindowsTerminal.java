@@ -18,6 +18,7 @@ public class WindowsTerminal extends Terminal {
     // Stores the original console modes to restore them later.
     private static LongByReference dwOriginalOutMode;
     private static LongByReference dwOriginalInMode;
+    private static int originalOutputCodePage;
 
     /**
      * Enables raw mode for the console, disabling line buffering and enabling virtual terminal processing.
@@ -79,6 +80,13 @@ public class WindowsTerminal extends Terminal {
             System.err.println("An error occured while setting input console mode" + dwInMode);
             System.exit(-1);
         }
+
+        // Frames are written to the console as UTF-8 bytes
+        originalOutputCodePage = LibKernel32.INSTANCE.GetConsoleOutputCP();
+        LibKernel32.INSTANCE.SetConsoleOutputCP(LibKernel32.CP_UTF8);
+
+        System.out.print(BRACKETED_PASTE_ON);   // Have pasted text marked as such
+        System.out.flush();
     }
 
     /**
@@ -86,6 +94,8 @@ public class WindowsTerminal extends Terminal {
      * Reverts input and output settings to their initial state.
      */
     public void disableRawMode() {
+        System.out.print(BRACKETED_PASTE_OFF);
+        System.out.flush();
         if (!LibKernel32.INSTANCE.SetConsoleMode(outHandle, dwOriginalOutMode.getValue())) {
             System.err.println("An error occured while restoring output console mode: " + dwOriginalOutMode);
             System.exit(-1);
@@ -95,6 +105,8 @@ public class WindowsTerminal extends Terminal {
             System.err.println("An error occured while restoring input console mode: " + dwOriginalInMode);
             System.exit(-1);
         }; // Restore original terminal attributes before exiting
+
+        LibKernel32.INSTANCE.SetConsoleOutputCP(originalOutputCodePage);
     }
 
     /**
@@ -136,28 +148,4 @@ public class WindowsTerminal extends Terminal {
     public void setLocale() {
         LibKernel32.INSTANCE.SetThreadLocale(LOCALE_SYSTEM_DEFAULT);
     }
-
-    public int getCharWidth(long wc) {
-        // TODO: Implement for WINDOWS
-        
-        return 1;
-    }
-
-    @Override
-    public int getLineWidth(String line, int columns) {
-        int lineWidth = 0;
-        for (char c : line.toCharArray()) {
-            if (lineWidth % columns + getCharWidth(c) > columns) {
-                lineWidth += columns - lineWidth % columns;
-            }
-            lineWidth += getCharWidth(c);
-        }
-        return lineWidth;
-    }
-
-    @Override
-    public int getLineWidthUpTo(String line, int cursorX, int columns) {
-        return getLineWidth(line.substring(0, cursorX), columns);
-    }
-   
 }
@@ -0,0 +1,119 @@
+package com.example.texteditor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EditJournalTest {
+
+    private final Path directory;
+    private final Path file;
+
+    EditJournalTest() throws IOException {
+        directory = Files.createTempDirectory("journal-test");
+        file = directory.resolve("text.txt");
+    }
+
+    @AfterEach
+    void deleteFiles() throws IOException {
+        Files.deleteIfExists(EditJournal.pathFor(file));
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(Document document) {
+        byte[] bytes = new byte[(int) document.length()];
+        document.read(0, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private PieceTable load(String text) throws IOException {
+        Files.write(file, utf8(text));
+        return new PieceTable(Files.readAllBytes(file));
+    }
+
+    @Test
+    void replaysInsertsAndDeletes() throws IOException {
+        PieceTable content = load("first line\nsecond line");
+        EditJournal journal = EditJournal.create(file);
+        content.addListener(journal);
+        content.insert(0, 5, " \u00e9dited");
+        content.delete(1, 0, 7);
+        content.insert(content.length(), new byte[300]);
+        content.splitLine(0, 2);
+        journal.close();
+
+        assertTrue(EditJournal.isRecoverable(file));
+        PieceTable recovered = new PieceTable(Files.readAllBytes(file));
+        long validLength = EditJournal.replay(file, recovered);
+        assertEquals(Files.size(EditJournal.pathFor(file)), validLength);
+        assertEquals(text(content), text(recovered));
+    }
+
+    @Test
+    void replayStopsAtAnIncompleteRecord() throws IOException {
+        PieceTable content = load("text");
+        EditJournal journal = EditJournal.create(file);
+        content.addListener(journal);
+        content.insert(4, utf8(" one"));
+        journal.flush();
+        long complete = Files.size(EditJournal.pathFor(file));
+        content.insert(8, utf8(" two"));
+        journal.close();
+        // Cut the last record short, as a kill in the middle of a write would
+        try (FileChannel channel = FileChannel.open(EditJournal.pathFor(file), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+
+        PieceTable recovered = new PieceTable(Files.readAllBytes(file));
+        assertEquals(complete, EditJournal.replay(file, recovered));
+        assertEquals("text one", text(recovered));
+    }
+
+    @Test
+    void journalOfAChangedFileIsNotRecoverable() throws IOException {
+        PieceTable content = load("text");
+        EditJournal journal = EditJournal.create(file);
+        content.addListener(journal);
+        content.insert(0, utf8("more "));
+        journal.close();
+        Files.write(file, utf8("changed elsewhere"));
+        assertFalse(EditJournal.isRecoverable(file));
+    }
+
+    @Test
+    void resetKeepsTheEditsMadeWhileSaving() throws IOException {
+        PieceTable content = load("start");
+        EditJournal journal = EditJournal.create(file);
+        content.addListener(journal);
+        content.insert(5, utf8(" saved"));
+        long mark = journal.mark();
+        Files.write(file, utf8(text(content)));
+        content.insert(0, utf8("typed while saving, "));
+        journal.flush();
+        content.delete(0, 6);
+        journal.reset(file, mark);
+        content.insert(content.length(), utf8("!"));
+        journal.close();
+
+        assertTrue(EditJournal.isRecoverable(file));
+        PieceTable recovered = new PieceTable(Files.readAllBytes(file));
+        EditJournal.replay(file, recovered);
+        assertEquals("while saving, start saved!", text(recovered));
+        assertEquals(text(content), text(recovered));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.texteditor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FileHandlerTest {
+
+    private final Path directory;
+    private final Path file;
+
+    FileHandlerTest() throws IOException {
+        directory = Files.createTempDirectory("file-handler-test");
+        file = directory.resolve("text.txt");
+    }
+
+    @AfterEach
+    void deleteFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    private static FileHandler open(Path path) {
+        FileHandler fileHandler = new FileHandler();
+        fileHandler.openFile(new String[] {path.toString()});
+        return fileHandler;
+    }
+
+    private static void save(FileHandler fileHandler) {
+        assertTrue(fileHandler.startSave(() -> { }));
+        fileHandler.awaitSave();
+        assertTrue(fileHandler.isSaved());
+    }
+
+    @Test
+    void savesTheFileALinkPointsTo() throws IOException {
+        Files.write(file, utf8("hello"));
+        Path link = directory.resolve("link.txt");
+        try {
+            Files.createSymbolicLink(link, file.getFileName());
+        } catch (UnsupportedOperationException | IOException e) {
+            assumeTrue(false, "symbolic links are not supported here");
+        }
+        FileHandler fileHandler = open(link);
+        fileHandler.getContent().insert(0, utf8("X"));
+        save(fileHandler);
+        fileHandler.closeFile();
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals("Xhello", read(file));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count());     // No temporary file or journal is left
+        }
+    }
+
+    @Test
+    void savesAgainAfterWaitingForASave() throws IOException {
+        Files.write(file, utf8("text"));
+        FileHandler fileHandler = open(file);
+        fileHandler.getContent().insert(4, utf8(" one"));
+        save(fileHandler);
+        assertEquals("text one", read(file));
+        fileHandler.getContent().insert(8, utf8(" two"));
+        save(fileHandler);
+        assertEquals("text one two", read(file));
+        fileHandler.closeFile();
+    }
+}
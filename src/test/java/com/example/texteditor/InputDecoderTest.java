@@ -0,0 +1,114 @@
+package com.example.texteditor;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InputDecoderTest {
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes each chunk as one read, and describes the events: a key by its code, a text
+     * event by its key and chars, and a paste by its bytes.
+     */
+    private static List<String> decode(byte[]... reads) throws IOException {
+        InputDecoder decoder = new InputDecoder();
+        List<String> events = new ArrayList<>();
+        for (byte[] read : reads) {
+            assertEquals(read.length, decoder.read(new ByteArrayInputStream(read)));
+            while (decoder.hasNext()) {
+                int key = decoder.next();
+                int start = decoder.getTextStart();
+                int length = decoder.getTextLength();
+                if (key == TextEditor.PASTE) {
+                    events.add("paste " + new String(decoder.getPasted(), start, length, StandardCharsets.UTF_8));
+                } else if (length > 0) {
+                    events.add(key + " " + new String(decoder.getChars(), start, length));
+                } else {
+                    events.add(String.valueOf(key));
+                }
+            }
+        }
+        return events;
+    }
+
+    @Test
+    void turnsARunOfPrintableBytesIntoOneEvent() throws IOException {
+        assertEquals(Arrays.asList("97 abc", "13", "100 d"), decode(utf8("abc\rd")));
+    }
+
+    @Test
+    void finishesACharSplitAcrossReads() throws IOException {
+        byte[] euro = utf8("x\u20ac");
+        assertEquals(Arrays.asList("120 x", "65533 \u20ac"),
+                decode(Arrays.copyOf(euro, 2), Arrays.copyOfRange(euro, 2, euro.length)));
+        byte[] emoji = utf8("\ud83d\ude00");
+        assertEquals(Arrays.asList("65533 \ud83d\ude00"),
+                decode(Arrays.copyOf(emoji, 1), Arrays.copyOfRange(emoji, 1, 3), Arrays.copyOfRange(emoji, 3, 4)));
+    }
+
+    @Test
+    void keysOfNonAsciiTextArePrintable() throws IOException {
+        List<String> events = decode(bytes(0xFF, 'a'));
+        assertEquals(Arrays.asList("65533 \ufffda"), events);
+        int key = Integer.parseInt(events.get(0).split(" ")[0]);
+        assertTrue(key >= 0 && !Character.isISOControl(key) && key > TextEditor.PASTE);
+    }
+
+    @Test
+    void replacesMalformedBytes() throws IOException {
+        // A lead byte cut short by another char, a stray continuation byte and a surrogate
+        assertEquals(Arrays.asList("65533 \ufffda\ufffd\ufffd"), decode(bytes(0xC3, 'a', 0x80, 0xED, 0xA0, 0x80)));
+        // A key in the middle of a char
+        assertEquals(Arrays.asList("65533 \ufffd", "13"), decode(bytes(0xE2, 0x82, '\r')));
+    }
+
+    @Test
+    void decodesEscapeSequences() throws IOException {
+        assertEquals(Arrays.asList(
+                String.valueOf(TextEditor.ARROW_UP), String.valueOf(TextEditor.ARROW_LEFT),
+                String.valueOf(TextEditor.DEL), String.valueOf(TextEditor.PAGE_DOWN),
+                String.valueOf(TextEditor.END), String.valueOf(TextEditor.HOME), "120 x"),
+                decode(utf8("\u001b[A\u001bOD\u001b[3~\u001b[6~\u001b[1;5C\u001b[H"), utf8("x")));
+    }
+
+    @Test
+    void waitsForTheRestOfAnEscapeSequence() throws IOException {
+        assertEquals(Arrays.asList(String.valueOf(TextEditor.PAGE_UP)), decode(utf8("\u001b[5"), utf8("~")));
+        assertEquals(Arrays.asList(String.valueOf(TextEditor.ARROW_DOWN)), decode(utf8("\u001bO"), utf8("B")));
+        // An escape ending a read is the key itself
+        assertEquals(Arrays.asList("27", "97 a"), decode(utf8("\u001b"), utf8("a")));
+    }
+
+    @Test
+    void takesAnEscapeBeforeAnotherKeyAsAKey() throws IOException {
+        assertEquals(Arrays.asList("27", "113 q"), decode(utf8("\u001bq")));
+        assertEquals(Arrays.asList("27", "91 [", "7"), decode(bytes(27, '[', 7)));
+    }
+
+    @Test
+    void keepsAPasteWholeAcrossReads() throws IOException {
+        assertEquals(Arrays.asList("paste one\ntwo\nthree\u00e9", "120 x"),
+                decode(utf8("\u001b[200~one\r\ntw"), utf8("o\rthree\u00e9\u001b[20"), utf8("1~x")));
+        assertEquals(Arrays.asList("paste a\nb"), decode(utf8("\u001b[200~a\r"), utf8("\nb\u001b[201~")));
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.texteditor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InputQueueTest {
+
+    @Test
+    void takesKeysInOrderWithTheirText() {
+        InputQueue queue = new InputQueue();
+        char[] chars = "xab".toCharArray();
+        queue.put('a', chars, 1, 2, null);
+        queue.put(TextEditor.ARROW_UP, chars, 0, 0, null);
+        queue.put(TextEditor.PASTE, chars, 0, 0, new byte[] {'p'});
+        StringBuilder text = new StringBuilder();
+        assertTrue(queue.isReady());
+        assertEquals('a', queue.take(text));
+        assertEquals("ab", text.toString());
+        assertEquals(TextEditor.ARROW_UP, queue.take(text));
+        assertEquals(TextEditor.PASTE, queue.take(text));
+        assertEquals('p', queue.getPasted()[0]);
+        assertFalse(queue.isReady());
+    }
+
+    @Test
+    void endsWithTheKeysLeftWhenClosed() {
+        InputQueue queue = new InputQueue();
+        queue.put('q', "q".toCharArray(), 0, 1, null);
+        queue.close();
+        StringBuilder text = new StringBuilder();
+        assertEquals('q', queue.take(text));
+        assertEquals("q", text.toString());
+        // Once the input has ended no typed text is left to be inserted again
+        for (int i = 0; i < 2; i++) {
+            assertTrue(queue.await(0));
+            assertEquals(TextEditor.END_OF_INPUT, queue.take(text));
+            assertEquals("", text.toString());
+            assertNull(queue.getPasted());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.texteditor;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LineMetricsTest {
+
+    private static final int COLUMNS = 10;
+
+    private final Terminal terminal = new HeadlessTerminal(24, COLUMNS);
+
+    private static byte[] text(int lines, Random random) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            if (i > 0) {
+                text.append('\n');
+            }
+            appendLine(text, random);
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendLine(StringBuilder text, Random random) {
+        for (int i = random.nextInt(35); i > 0; i--) {
+            text.append(random.nextInt(8) == 0 ? '\u4e2d' : 'a');
+        }
+    }
+
+    private void assertWraps(Document content, LineMetrics metrics) {
+        int sum = 0;
+        for (int line = 0; line < content.getLineCount(); line++) {
+            int wrap = LineMetrics.measure(content.getLine(line), COLUMNS, terminal);
+            assertEquals(wrap, metrics.getWrap(line, COLUMNS, terminal), "line " + line);
+            assertEquals(sum, metrics.getWrapsBefore(line, COLUMNS, terminal), "before line " + line);
+            sum += wrap;
+        }
+        assertEquals(sum, metrics.getWrapsBefore(content.getLineCount(), COLUMNS, terminal));
+    }
+
+    @Test
+    void measuresWrapsOfEachLine() {
+        PieceTable content = new PieceTable("short\n0123456789abc\n\u4e2d\u4e2d\u4e2d\u4e2d\u4e2d\u4e2d".getBytes(StandardCharsets.UTF_8));
+        LineMetrics metrics = new LineMetrics(content);
+        assertEquals(0, metrics.getWrap(0, COLUMNS, terminal));
+        assertEquals(1, metrics.getWrap(1, COLUMNS, terminal));
+        assertEquals(1, metrics.getWrap(2, COLUMNS, terminal));
+        assertEquals(0, metrics.getWrap(2, 12, terminal));
+        assertEquals(1, metrics.getWrapsBefore(3, 12, terminal));
+    }
+
+    @Test
+    void findsTheLineOnARow() {
+        PieceTable content = new PieceTable("0123456789abc\nb\n0123456789012345678901\nd".getBytes(StandardCharsets.UTF_8));
+        LineMetrics metrics = new LineMetrics(content);
+        metrics.reflow(0, content.getLineCount(), COLUMNS, terminal);
+        int[] lines = {0, 0, 1, 2, 2, 2, 3};
+        for (int row = 0; row < lines.length; row++) {
+            assertEquals(lines[row], metrics.getLineAtRow(row, COLUMNS, terminal), "row " + row);
+        }
+        assertEquals(4, metrics.getLineAtRow(7, COLUMNS, terminal));
+    }
+
+    @Test
+    void followsEditsThatAddAndRemoveLines() {
+        Random random = new Random(3);
+        PieceTable content = new PieceTable(text(3000, random));
+        LineMetrics metrics = new LineMetrics(content);
+        assertWraps(content, metrics);
+        for (int step = 0; step < 300; step++) {
+            int line = random.nextInt(content.getLineCount());
+            switch (random.nextInt(4)) {
+                case 0:
+                    content.splitLine(line, random.nextInt(content.getLineLength(line) + 1));
+                    break;
+                case 1:
+                    content.joinLines(line);
+                    break;
+                case 2:
+                    StringBuilder text = new StringBuilder();
+                    for (int i = random.nextInt(4); i >= 0; i--) {
+                        appendLine(text, random);
+                        text.append('\n');
+                    }
+                    content.insert(line, 0, text.toString());
+                    break;
+                default:
+                    int end = Math.min(content.getLineCount() - 1, line + random.nextInt(5));
+                    long start = content.getLineStart(line);
+                    content.delete(start, content.getLineStart(end) - start);
+                    break;
+            }
+            // Only lines near the edit are looked at between edits, as when typing
+            metrics.getWrap(line, COLUMNS, terminal);
+            metrics.getWrapsBefore(Math.min(line + 20, content.getLineCount()), COLUMNS, terminal);
+        }
+        assertWraps(content, metrics);
+    }
+
+    @Test
+    void jumpsFarWithoutMeasuringTheLinesBefore() {
+        int[] decoded = new int[1];
+        PieceTable content = new PieceTable(text(100000, new Random(5))) {
+            @Override
+            public String getLine(int line) {
+                decoded[0]++;
+                return super.getLine(line);
+            }
+        };
+        LineMetrics metrics = new LineMetrics(content);
+        assertEquals(0, metrics.getWrapsBefore(90000, COLUMNS, terminal));
+        assertEquals(90000, metrics.getLineAtRow(90000, COLUMNS, terminal));
+        assertEquals(0, decoded[0]);
+        // Lines are measured when drawn, and the sums follow
+        assertTrue(metrics.reflow(0, 90000, COLUMNS, terminal));
+        assertEquals(90000, decoded[0]);
+        assertWraps(content, metrics);
+    }
+}
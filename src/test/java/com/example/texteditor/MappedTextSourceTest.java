@@ -0,0 +1,74 @@
+package com.example.texteditor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedTextSourceTest {
+
+    private final Path directory;
+    private final Path file;
+    private final Path copy;
+
+    MappedTextSourceTest() throws IOException {
+        directory = Files.createTempDirectory("mapped-test");
+        file = directory.resolve("text.txt");
+        copy = directory.resolve("copy.txt");
+    }
+
+    @AfterEach
+    void deleteFiles() throws IOException {
+        Files.deleteIfExists(copy);
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    private static byte[] text(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i % 64 == 63 ? '\n' : 'a' + i % 26);
+        }
+        return bytes;
+    }
+
+    @Test
+    void copiesARangeIntoAFile() throws IOException {
+        byte[] bytes = text(10000);
+        Files.write(file, bytes);
+        try (MappedTextSource source = new MappedTextSource(file);
+             FileChannel target = FileChannel.open(copy, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(16);
+            buffer.put((byte) '>');
+            source.transferTo(100, 5000, target, buffer);
+        }
+        byte[] expected = new byte[5001];
+        expected[0] = '>';
+        System.arraycopy(bytes, 100, expected, 1, 5000);
+        assertArrayEquals(expected, Files.readAllBytes(copy));
+    }
+
+    @Test
+    @Timeout(10)
+    void failsOnceTheFileIsShortened() throws IOException {
+        Files.write(file, text(10000));
+        try (MappedTextSource source = new MappedTextSource(file);
+             FileChannel target = FileChannel.open(copy, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            try (FileChannel truncate = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                truncate.truncate(1000);
+            }
+            assertThrows(IOException.class, () -> source.transferTo(0, 10000, target, ByteBuffer.allocate(16)));
+        }
+        assertArrayEquals(Arrays.copyOf(text(10000), 1000), Files.readAllBytes(copy));
+    }
+}
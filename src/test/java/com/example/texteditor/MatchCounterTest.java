@@ -0,0 +1,85 @@
+package com.example.texteditor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MatchCounterTest {
+
+    private static final int LENGTH = 10 << 20;     // Three chunks
+
+    /**
+     * A document whose reads are slowed down and counted while they run.
+     */
+    private static final class WatchedTable extends PieceTable {
+        final AtomicInteger reading = new AtomicInteger();
+
+        WatchedTable(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public void read(long offset, byte[] dst, int dstPos, int length) {
+            reading.incrementAndGet();
+            LockSupport.parkNanos(100_000);
+            super.read(offset, dst, dstPos, length);
+            reading.decrementAndGet();
+        }
+    }
+
+    /**
+     * Builds a document with "needle" every 1000 bytes.
+     */
+    private static WatchedTable document() {
+        byte[] bytes = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            bytes[i] = (byte) (i % 80 == 79 ? '\n' : 'x');
+        }
+        byte[] needle = "needle".getBytes();
+        for (int i = 0; i + needle.length <= LENGTH; i += 1000) {
+            System.arraycopy(needle, 0, bytes, i, needle.length);
+        }
+        return new WatchedTable(bytes);
+    }
+
+    @Test
+    void countsAndNumbersEveryMatch() throws InterruptedException {
+        PieceTable content = document();
+        MatchCounter counter = new MatchCounter(() -> { });
+        counter.start(content, "needle", false, false, null);
+        while (!counter.isDone()) {
+            Thread.sleep(1);
+        }
+        int expected = (LENGTH - 6) / 1000 + 1;
+        assertEquals(expected, counter.getTotal());
+        assertEquals(0, counter.getIndex(0));
+        assertEquals(expected - 1, counter.getIndex((long) (expected - 1) * 1000));
+        assertEquals(-1, counter.getIndex(1));
+        assertEquals(5_000_000, counter.getMatch(5000));
+    }
+
+    @Test
+    void stopsReadingBeforeCancelReturns() throws InterruptedException {
+        WatchedTable content = document();
+        MatchCounter counter = new MatchCounter(() -> { });
+        for (int i = 0; i < 20; i++) {
+            counter.start(content, "needle", i % 2 == 0, false, null);
+            Thread.sleep(i % 4);
+            counter.cancel();
+            assertFalse(counter.isRunning());
+            // The document may be changed as soon as the count is cancelled
+            assertEquals(0, content.reading.get());
+            content.insert(0, "needle".getBytes());
+        }
+        counter.start(content, "needle", false, false, null);
+        while (!counter.isDone()) {
+            Thread.sleep(1);
+        }
+        assertEquals((LENGTH - 6) / 1000 + 21, counter.getTotal());
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.texteditor;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PieceTableTest {
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(Document document) {
+        byte[] bytes = new byte[(int) document.length()];
+        document.read(0, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void assertLines(String expected, Document document) {
+        String[] lines = expected.split("\r?\n", -1);
+        assertEquals(lines.length, document.getLineCount());
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals(lines[i], document.getLine(i), "line " + i);
+        }
+    }
+
+    @Test
+    void readsLinesOfOriginalText() {
+        PieceTable document = new PieceTable(utf8("first\r\nsecond\n\nlast"));
+        assertLines("first\nsecond\n\nlast", document);
+        assertEquals(0, document.getLineStart(0));
+        assertEquals(7, document.getLineStart(1));
+        assertEquals(15, document.getLineStart(3));
+        assertEquals(1, document.getLineAt(7));
+        assertEquals(0, document.getLineAt(6));
+    }
+
+    @Test
+    void emptyDocumentHasOneLine() {
+        PieceTable document = new PieceTable();
+        assertEquals(1, document.getLineCount());
+        assertEquals("", document.getLine(0));
+        document.insert(0, 0, "a");
+        assertLines("a", document);
+    }
+
+    @Test
+    void insertsAndDeletesByColumn() {
+        PieceTable document = new PieceTable(utf8("h\u00e9llo\nw\u00f6rld"));
+        document.insert(0, 2, "XY");
+        document.insert(1, 5, "!");
+        document.delete(1, 1, 1);
+        assertLines("h\u00e9XYllo\nwrld!", document);
+        document.splitLine(0, 3);
+        document.joinLines(0);
+        assertLines("h\u00e9XYllo\nwrld!", document);
+        document.joinLines(0);
+        assertLines("h\u00e9XYllowrld!", document);
+    }
+
+    @Test
+    void columnsCountSurrogatePairsAsTwoChars() {
+        PieceTable document = new PieceTable(utf8("a\ud83d\ude00b"));
+        assertEquals(5, document.getOffset(0, 3));
+        document.delete(0, 1, 2);
+        assertLines("ab", document);
+    }
+
+    @Test
+    void columnsFollowTheDecodedLineOverMalformedBytes() {
+        // A stray continuation byte, a truncated sequence and an encoded surrogate
+        byte[] bytes = {'a', (byte) 0x80, 'b', (byte) 0xE2, (byte) 0x82, 'c', (byte) 0xED, (byte) 0xA0, (byte) 0x80, 'd'};
+        PieceTable document = new PieceTable(bytes);
+        String line = document.getLine(0);
+        for (int col = 0; col <= line.length(); col++) {
+            long offset = document.getOffset(0, col);
+            String prefix = new String(bytes, 0, (int) offset, StandardCharsets.UTF_8);
+            assertEquals(line.substring(0, col), prefix, "column " + col);
+        }
+        document.insert(0, line.indexOf('d'), "X");
+        assertEquals(line.replace("d", "Xd"), document.getLine(0));
+    }
+
+    @Test
+    void columnsPastTheLineEndStopAtTheLineTerminator() {
+        PieceTable document = new PieceTable(utf8("ab\r\ncd"));
+        assertEquals(2, document.getOffset(0, 10));
+        document.delete(0, 1, 10);
+        assertLines("a\ncd", document);
+    }
+
+    @Test
+    void columnsOfLongLinesStepAcrossReads() {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            line.append(i % 3 == 0 ? "\u00e9" : i % 3 == 1 ? "\u4e2d" : "\ud83d\ude00");
+        }
+        PieceTable document = new PieceTable(utf8(line.toString()));
+        for (int col = 0; col <= line.length(); col += Character.charCount(line.codePointAt(Math.min(col, line.length() - 1)))) {
+            assertEquals(Utf8.encodedLength(line, 0, col), document.getOffset(0, col), "column " + col);
+        }
+    }
+
+    @Test
+    void typesAndDeletesAlongALineFromTheLastEdit() {
+        PieceTable document = new PieceTable(utf8("x\u00e9y\nz"));
+        document.insert(0, 1, "a");
+        document.insert(0, 2, "\u00e9");
+        document.insert(0, 3, "b");
+        assertLines("xa\u00e9b\u00e9y\nz", document);
+        document.delete(0, 3, 1);
+        document.delete(0, 2, 1);
+        document.delete(0, 1, 1);
+        assertLines("x\u00e9y\nz", document);
+        document.delete(1, 0, 1);
+        document.insert(0, 3, "!");
+        assertLines("x\u00e9y!\n", document);
+    }
+
+    @Test
+    void replacesRangesInOnePass() {
+        PieceTable document = new PieceTable(utf8("one two\nthree two\ntwo"));
+        long[] offsets = {4, 14, 18};
+        int[] lengths = {3, 3, 3};
+        byte[] replacement = utf8("2\n");
+        document.replace(offsets, lengths, 3, new byte[][] {replacement, replacement, replacement});
+        assertEquals("one 2\n\nthree 2\n\n2\n", text(document));
+    }
+
+    @Test
+    void snapshotIsNotChangedByLaterEdits() throws IOException {
+        PieceTable document = new PieceTable(utf8("one\ntwo"));
+        document.insert(0, 3, " more");
+        Document.Snapshot snapshot = document.snapshot();
+        document.insert(1, 0, "zero ");
+        document.delete(0, 0, 4);
+        for (int i = 0; i < 300; i++) {
+            document.insert(0, 0, "x");     // Grows the add buffer into a new array
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshot.writeTo(Channels.newChannel(out), ByteBuffer.allocate(4));
+        assertEquals("one more\ntwo", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(out.size(), snapshot.length());
+    }
+
+    @Test
+    void randomEditsMatchAByteModel() {
+        Random random = new Random(42);
+        byte[] model = utf8("start\nof the\ndocument");
+        PieceTable document = new PieceTable(model);
+        String alphabet = "abc\n\u00e9\u4e2d ";
+        for (int step = 0; step < 2000; step++) {
+            int offset = boundary(model, random.nextInt(model.length + 1));
+            if (random.nextInt(3) > 0) {
+                StringBuilder inserted = new StringBuilder();
+                for (int i = random.nextInt(4) + 1; i > 0; i--) {
+                    inserted.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                document.insert(offset, utf8(inserted.toString()));
+                model = insert(model, offset, utf8(inserted.toString()));
+            } else {
+                int end = boundary(model, Math.min(model.length, offset + random.nextInt(6)));
+                document.delete(offset, end - offset);
+                model = delete(model, offset, end);
+            }
+            assertEquals(new String(model, StandardCharsets.UTF_8), text(document));
+        }
+        assertLines(new String(model, StandardCharsets.UTF_8), document);
+        for (int line = 0; line < document.getLineCount(); line++) {
+            assertEquals(line, document.getLineAt(document.getLineStart(line)));
+        }
+    }
+
+    /**
+     * Moves an offset forward to the start of a char.
+     */
+    private static int boundary(byte[] bytes, int offset) {
+        while (offset < bytes.length && (bytes[offset] & 0xC0) == 0x80) {
+            offset++;
+        }
+        return offset;
+    }
+
+    private static byte[] insert(byte[] bytes, int offset, byte[] inserted) {
+        byte[] result = new byte[bytes.length + inserted.length];
+        System.arraycopy(bytes, 0, result, 0, offset);
+        System.arraycopy(inserted, 0, result, offset, inserted.length);
+        System.arraycopy(bytes, offset, result, offset + inserted.length, bytes.length - offset);
+        return result;
+    }
+
+    private static byte[] delete(byte[] bytes, int from, int to) {
+        byte[] result = new byte[bytes.length - (to - from)];
+        System.arraycopy(bytes, 0, result, 0, from);
+        System.arraycopy(bytes, to, result, from, bytes.length - to);
+        return result;
+    }
+}
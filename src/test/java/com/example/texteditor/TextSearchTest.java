@@ -0,0 +1,121 @@
+package com.example.texteditor;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TextSearchTest {
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Finds every match by comparing the query at each offset.
+     */
+    private static List<Long> naiveMatches(byte[] text, byte[] query, boolean ignoreCase, boolean wholeWord) {
+        List<Long> matches = new ArrayList<>();
+        for (int i = 0; i + query.length <= text.length; i++) {
+            boolean match = true;
+            for (int k = 0; k < query.length && match; k++) {
+                match = ignoreCase ? lower(text[i + k]) == lower(query[k]) : text[i + k] == query[k];
+            }
+            if (match && wholeWord) {
+                match = (i == 0 || !isWordByte(text[i - 1]))
+                        && (i + query.length == text.length || !isWordByte(text[i + query.length]));
+            }
+            if (match) {
+                matches.add((long) i);
+            }
+        }
+        return matches;
+    }
+
+    private static byte lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static boolean isWordByte(byte b) {
+        return b < 0 || b == '_' || Character.isLetterOrDigit(b);
+    }
+
+    @Test
+    void findsMatchesInBothDirections() {
+        PieceTable content = new PieceTable(utf8("abc abcabc xabc"));
+        TextSearch search = new TextSearch();
+        search.setQuery("abc", false, false);
+        assertEquals(0, search.findForward(content, 0));
+        assertEquals(4, search.findForward(content, 1));
+        assertEquals(12, search.findForward(content, 8));
+        assertEquals(-1, search.findForward(content, 13));
+        assertEquals(12, search.findBackward(content, content.length()));
+        assertEquals(7, search.findBackward(content, 12));
+        assertEquals(-1, search.findBackward(content, 0));
+    }
+
+    @Test
+    void ignoresCaseAndMatchesWholeWords() {
+        PieceTable content = new PieceTable(utf8("Word sword WORD_ word, words"));
+        TextSearch search = new TextSearch();
+        search.setQuery("word", true, true);
+        long[] matches = new long[8];
+        assertEquals(2, search.findAll(content, 0, Long.MAX_VALUE, matches, 0, 8));
+        assertEquals(0, matches[0]);
+        assertEquals(17, matches[1]);
+        assertEquals(17, search.findBackward(content, content.length()));
+    }
+
+    @Test
+    void matchesTheSameOffsetsAsANaiveSearch() {
+        Random random = new Random(11);
+        String alphabet = "abAB _\u00e9";
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        byte[] bytes = utf8(text.toString());
+        PieceTable content = new PieceTable(bytes);
+        // Edits split the text into pieces that matches span
+        content.insert(70000, utf8("abab"));
+        content.delete(140000, 4);
+        bytes = new byte[(int) content.length()];
+        content.read(0, bytes, 0, bytes.length);
+        TextSearch search = new TextSearch();
+        long[] found = new long[bytes.length];
+        for (int round = 0; round < 40; round++) {
+            StringBuilder query = new StringBuilder();
+            for (int i = random.nextInt(5) + 1; i > 0; i--) {
+                query.append(alphabet.charAt(random.nextInt(alphabet.length() - 1)));
+            }
+            boolean ignoreCase = random.nextBoolean();
+            boolean wholeWord = random.nextInt(4) == 0;
+            List<Long> expected = naiveMatches(bytes, utf8(query.toString()), ignoreCase, wholeWord);
+            search.setQuery(query.toString(), ignoreCase, wholeWord);
+            int count = search.findAll(content, 0, Long.MAX_VALUE, found, 0, found.length);
+            assertEquals(expected.size(), count, "matches of '" + query + "'");
+            for (int i = 0; i < count; i++) {
+                assertEquals((long) expected.get(i), found[i]);
+            }
+            if (!expected.isEmpty()) {
+                long last = expected.get(expected.size() - 1);
+                assertEquals(last, search.findBackward(content, content.length()));
+                assertEquals(expected.get(0), (Long) search.findForward(content, 0));
+            }
+        }
+    }
+
+    @Test
+    void convertsOffsetsToColumns() {
+        PieceTable content = new PieceTable(utf8("x\na\u00e9\u4e2d\ud83d\ude00b"));
+        TextSearch search = new TextSearch();
+        assertEquals(0, search.getColumn(content, 1, 2));
+        assertEquals(2, search.getColumn(content, 1, 5));
+        assertEquals(3, search.getColumn(content, 1, 8));
+        assertEquals(5, search.getColumn(content, 1, 12));
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.texteditor;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UndoLogTest {
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(Document document) {
+        byte[] bytes = new byte[(int) document.length()];
+        document.read(0, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Types text a char at a time, each as its own key.
+     */
+    private static void type(UndoLog log, Document content, long offset, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            log.mark();
+            content.insert(offset + i, utf8(text.substring(i, i + 1)));
+        }
+    }
+
+    @Test
+    void mergesTypedCharsIntoOneStep() {
+        PieceTable content = new PieceTable(utf8("start"));
+        UndoLog log = new UndoLog(content, 1 << 20, true);
+        type(log, content, 5, " word");
+        log.mark();
+        content.insert(0, utf8(">"));
+        assertEquals(">start word", text(content));
+        assertEquals(0, log.undo());
+        assertEquals("start word", text(content));
+        assertEquals(5, log.undo());
+        assertEquals("start", text(content));
+        assertEquals(-1, log.undo());
+        assertEquals(5, log.redo());
+        assertEquals("start word", text(content));
+    }
+
+    @Test
+    void typingElsewhereStartsANewStep() {
+        PieceTable content = new PieceTable(utf8("ab"));
+        UndoLog log = new UndoLog(content, 1 << 20, true);
+        type(log, content, 1, "xy");
+        type(log, content, 0, "z");
+        assertEquals("zaxyb", text(content));
+        log.undo();
+        assertEquals("axyb", text(content));
+        log.undo();
+        assertEquals("ab", text(content));
+    }
+
+    @Test
+    void undoesAStepOfManyChangesAtOnce() {
+        PieceTable content = new PieceTable(utf8("a-b-c-d"));
+        UndoLog log = new UndoLog(content, 1 << 20, true);
+        log.mark();
+        byte[] plus = utf8("+\n");
+        content.replace(new long[] {1, 3, 5}, new int[] {1, 1, 1}, 3, new byte[][] {plus, plus, plus});
+        assertEquals("a+\nb+\nc+\nd", text(content));
+        log.undo();
+        assertEquals("a-b-c-d", text(content));
+        log.redo();
+        assertEquals("a+\nb+\nc+\nd", text(content));
+    }
+
+    @Test
+    void editAfterUndoDropsTheRedoHistory() {
+        PieceTable content = new PieceTable(utf8("x"));
+        UndoLog log = new UndoLog(content, 1 << 20, true);
+        type(log, content, 1, "yz");
+        log.undo();
+        type(log, content, 1, "w");
+        assertEquals(-1, log.redo());
+        assertEquals("xw", text(content));
+    }
+
+    @Test
+    void tellsWhenUndoReturnsToTheSavedState() {
+        PieceTable content = new PieceTable(utf8("text"));
+        UndoLog log = new UndoLog(content, 1 << 20, true);
+        assertTrue(log.isSaved());
+        type(log, content, 4, "ab");
+        log.markSaving();
+        log.markSaved();
+        assertTrue(log.isSaved());
+        // Typing on after a save starts a step of its own
+        type(log, content, 6, "cd");
+        assertFalse(log.isSaved());
+        log.undo();
+        assertEquals("textab", text(content));
+        assertTrue(log.isSaved());
+        log.undo();
+        assertFalse(log.isSaved());
+    }
+
+    @Test
+    void savedStateIsTheOneTheSaveStartedFrom() {
+        PieceTable content = new PieceTable(utf8("text"));
+        UndoLog log = new UndoLog(content, 1 << 20, false);
+        type(log, content, 4, "ab");
+        log.markSaving();
+        type(log, content, 6, "cd");
+        log.markSaved();
+        assertFalse(log.isSaved());
+        log.undo();
+        assertEquals("textab", text(content));
+        assertTrue(log.isSaved());
+    }
+
+    @Test
+    void dropsTheOldestStepsOverTheMemoryBudget() {
+        PieceTable content = new PieceTable();
+        UndoLog log = new UndoLog(content, 400, true);
+        for (int i = 0; i < 20; i++) {
+            log.mark();
+            content.insert(content.length(), utf8("line " + i + "\n"));
+        }
+        int undone = 0;
+        while (log.undo() >= 0) {
+            undone++;
+        }
+        assertTrue(undone > 0 && undone < 20, "undone " + undone);
+        assertFalse(log.isSaved());
+    }
+}
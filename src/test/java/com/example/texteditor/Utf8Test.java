@@ -0,0 +1,56 @@
+package com.example.texteditor;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class Utf8Test {
+
+    @Test
+    void measuresEncodedLength() {
+        String text = "a\u00e9\u4e2d\ud83d\ude00";
+        assertEquals(text.getBytes(StandardCharsets.UTF_8).length, Utf8.encodedLength(text, 0, text.length()));
+        assertEquals(3, Utf8.encodedLength(text, 1, 3) - 2);
+    }
+
+    @Test
+    void countsCharsOfWellFormedBytes() {
+        String text = "a\u00e9\u4e2d\ud83d\ude00b";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        assertEquals(text.length(), Utf8.charCount(bytes, 0, bytes.length));
+    }
+
+    @Test
+    void stepsOverSequences() {
+        byte[] bytes = "a\u00e9\u4e2d\ud83d\ude00".getBytes(StandardCharsets.UTF_8);
+        assertEquals(1, Utf8.sequenceLength(bytes, 0, bytes.length));
+        assertEquals(2, Utf8.sequenceLength(bytes, 1, bytes.length));
+        assertEquals(3, Utf8.sequenceLength(bytes, 3, bytes.length));
+        assertEquals(4, Utf8.sequenceLength(bytes, 6, bytes.length));
+        assertEquals(2, Utf8.sequenceLength(bytes, 6, 8));
+    }
+
+    @Test
+    void stepsOverMalformedBytesAsTheDecoderReplacesThem() {
+        Random random = new Random(7);
+        byte[] bytes = new byte[64];
+        for (int round = 0; round < 5000; round++) {
+            for (int i = 0; i < bytes.length; i++) {
+                // Mostly lead and continuation bytes, where malformed sequences come from
+                bytes[i] = (byte) (random.nextInt(4) == 0 ? random.nextInt(0x80) : 0x80 + random.nextInt(0x80));
+            }
+            String decoded = new String(bytes, StandardCharsets.UTF_8);
+            int chars = 0;
+            for (int i = 0; i < bytes.length; ) {
+                int length = Utf8.sequenceLength(bytes, i, bytes.length);
+                chars += length == 4 ? 2 : 1;
+                i += length;
+                assertEquals(decoded.substring(0, chars), new String(bytes, 0, i, StandardCharsets.UTF_8));
+            }
+            assertEquals(decoded.length(), chars);
+        }
+    }
+}